@@ -0,0 +1,124 @@
+package com.example.android.marvelnews;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.ActionBar;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+/**
+ * Shows a news from the body prefetched by {@link ArticlePrefetcher}, without any request.
+ * <p>
+ * Links of the article open in the browser, as does the "Open in browser" menu item. If the
+ * body is no longer stored by the time the reader opens, the news is opened in the browser
+ * instead.
+ */
+public class ArticleReaderActivity extends AppCompatActivity {
+
+    /**
+     * Intent extra holding the website URL of the news
+     */
+    private static final String EXTRA_URL = "url";
+
+    /**
+     * Intent extra holding the title of the news
+     */
+    private static final String EXTRA_TITLE = "title";
+
+    /**
+     * Style of the article, its images and embeds fitting the width of the screen
+     */
+    private static final String ARTICLE_STYLE = "body{font-family:sans-serif;line-height:1.5;"
+            + "color:#2B3D4D;margin:16px;}img,figure,iframe,video{max-width:100%;height:auto;}"
+            + "figure{margin:0;}";
+
+    /**
+     * Website URL of the news
+     */
+    private String mUrl;
+
+    /**
+     * Returns an intent opening the reader on a news, or null if its body isn't stored.
+     */
+    public static Intent newIntent(Context context, MarvelNews marvelNews) {
+        DiskResponseCache articleStore =
+                ((MarvelNewsApplication) context.getApplicationContext()).getArticleStore();
+        if (marvelNews.getUrl() == null || articleStore.get(marvelNews.getUrl()) == null) {
+            return null;
+        }
+        Intent intent = new Intent(context, ArticleReaderActivity.class);
+        intent.putExtra(EXTRA_URL, marvelNews.getUrl());
+        intent.putExtra(EXTRA_TITLE, marvelNews.getTitle());
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        mUrl = getIntent().getStringExtra(EXTRA_URL);
+        String title = getIntent().getStringExtra(EXTRA_TITLE);
+
+        // The body is a small file, read it right away so the article shows on the first frame
+        String body = ArticlePrefetcher.getBody(
+                ((MarvelNewsApplication) getApplication()).getArticleStore(), mUrl);
+        if (body == null) {
+            openInBrowser();
+            finish();
+            return;
+        }
+
+        setContentView(R.layout.article_reader_activity);
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+
+        WebView webView = (WebView) findViewById(R.id.article_body);
+        webView.setWebViewClient(new WebViewClient() {
+            @Override
+            public boolean shouldOverrideUrlLoading(WebView view, String url) {
+                // Links of the article leave the reader
+                startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(url)));
+                return true;
+            }
+        });
+        String html = "<html><head>"
+                + "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">"
+                + "<style>" + ARTICLE_STYLE + "</style></head><body>"
+                + "<h1>" + TextUtils.htmlEncode(title != null ? title : "") + "</h1>"
+                + body + "</body></html>";
+        // Relative links and images of the body resolve against the website of the news
+        webView.loadDataWithBaseURL(mUrl, html, "text/html", "UTF-8", null);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.article_reader, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            openInBrowser();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Opens the news on the Guardian website.
+     */
+    private void openInBrowser() {
+        if (mUrl != null) {
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mUrl)));
+        }
+    }
+}
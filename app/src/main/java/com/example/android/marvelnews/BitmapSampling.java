@@ -0,0 +1,36 @@
+package com.example.android.marvelnews;
+
+/**
+ * Works out how much an image can be downsampled while it is decoded for a view.
+ * <p>
+ * Decoding only every n-th pixel of every n-th row divides the memory of the bitmap by n * n,
+ * so a thumbnail is decoded at the largest power of two that still fills its view. The view
+ * scales the bitmap the rest of the way.
+ */
+public final class BitmapSampling {
+
+    private BitmapSampling() {
+    }
+
+    /**
+     * Returns the largest power of two by which the image can be downsampled while both of its
+     * sides stay at least as large as the view, or 1 if the size of either is unknown.
+     *
+     * @param width        width of the image in pixels
+     * @param height       height of the image in pixels
+     * @param targetWidth  width of the view in pixels
+     * @param targetHeight height of the view in pixels
+     */
+    public static int calculateInSampleSize(int width, int height, int targetWidth,
+                                            int targetHeight) {
+        if (width <= 0 || height <= 0 || targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= targetWidth
+                && height / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
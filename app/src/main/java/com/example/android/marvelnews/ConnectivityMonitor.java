@@ -0,0 +1,55 @@
+package com.example.android.marvelnews;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+/**
+ * Keeps the network of a {@link FetchPolicy} up to date with the connectivity of the device.
+ */
+public final class ConnectivityMonitor extends BroadcastReceiver {
+
+    private final FetchPolicy mFetchPolicy;
+
+    private ConnectivityMonitor(FetchPolicy fetchPolicy) {
+        mFetchPolicy = fetchPolicy;
+    }
+
+    /**
+     * Updates the network of the policy on every change of connectivity, for as long as the
+     * process lives.
+     *
+     * @param context     of the application
+     * @param fetchPolicy to update
+     */
+    public static void register(Context context, FetchPolicy fetchPolicy) {
+        context.registerReceiver(new ConnectivityMonitor(fetchPolicy),
+                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    /**
+     * Returns the network the device is on.
+     */
+    public static FetchPolicy.Link currentLink(Context context) {
+        // Get a reference to the ConnectivityManager to check state of network connectivity
+        ConnectivityManager connMgr = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        // Get details on the currently active default data network
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return FetchPolicy.Link.OFFLINE;
+        }
+        return ConnectivityManagerCompat.isActiveNetworkMetered(connMgr)
+                ? FetchPolicy.Link.METERED : FetchPolicy.Link.UNMETERED;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        mFetchPolicy.setLink(currentLink(context));
+    }
+}
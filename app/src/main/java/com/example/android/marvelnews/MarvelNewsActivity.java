@@ -6,30 +6,56 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class MarvelNewsActivity extends AppCompatActivity
-        implements LoaderCallbacks<List<MarvelNews>> {
+        implements LoaderCallbacks<List<MarvelNews>>,
+        SharedPreferences.OnSharedPreferenceChangeListener {
 
     /**
-     * URL for marvelNews data from the Guardian dataset
+     * Tag for the log messages
      */
-    private static final String GUARDIAN_REQUEST_URL =
-            "https://content.guardianapis.com/search";
+    private static final String LOG_TAG = MarvelNewsActivity.class.getSimpleName();
+
+    /**
+     * Name of the file, in the files directory, the pipeline metrics are exported to
+     */
+    private static final String METRICS_FILE = "pipeline-metrics.txt";
+
+    /**
+     * Name of the file, in the files directory, of the snapshot of the last list shown
+     */
+    private static final String SNAPSHOT_FILE = "last-list.snapshot";
+
+    /**
+     * Number of news, from the top of the list, kept in the snapshot
+     */
+    private static final int SNAPSHOT_MAX_NEWS = 100;
 
     /**
      * Constant value for the marvelNews loader ID. We can choose any integer.
@@ -37,6 +63,26 @@ public class MarvelNewsActivity extends AppCompatActivity
      */
     private static final int MARVELNEWS_LOADER_ID = 1;
 
+    /**
+     * Loader argument telling whether the device is offline
+     */
+    private static final String ARG_OFFLINE = "offline";
+
+    /**
+     * True if the news are loaded without network connection
+     */
+    private boolean mOffline;
+
+    /**
+     * Decides how much is fetched on the network the device is on
+     */
+    private FetchPolicy mFetchPolicy;
+
+    /**
+     * Resumes the fetches deferred while offline or on a metered network
+     */
+    private FetchPolicy.Listener mFetchPolicyListener;
+
     /**
      * Context
      */
@@ -52,6 +98,42 @@ public class MarvelNewsActivity extends AppCompatActivity
      */
     private TextView mEmptyStateTextView;
 
+    /**
+     * Last list of news delivered by the loader, or null
+     */
+    private List<MarvelNews> mMarvelNewss;
+
+    /**
+     * Search index of {@link #mMarvelNewss}, or null
+     */
+    private MarvelNewsSearchIndex mSearchIndex;
+
+    /**
+     * News of {@link #mMarvelNewss} when they were answered from the indexed news, which still
+     * hold the others, or null when the index holds just them
+     */
+    private Set<MarvelNews> mSearchable;
+
+    /**
+     * Text typed in the search box, empty to show every news
+     */
+    private String mSearchQuery = "";
+
+    /**
+     * Minimum date (yyyy-MM-dd) of the search {@link #mMarvelNewss} answer
+     */
+    private String mLoadedMinDate;
+
+    /**
+     * Order of the search {@link #mMarvelNewss} answer
+     */
+    private String mLoadedOrderBy;
+
+    /**
+     * Token aborting the running prefetch of the article bodies, or null
+     */
+    private FetchCancellation mArticlePrefetchCancellation;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -60,26 +142,23 @@ public class MarvelNewsActivity extends AppCompatActivity
         //Set context
         currentContext = this;
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView marvelNewsListView = (ListView) findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        RecyclerView marvelNewsListView = (RecyclerView) findViewById(R.id.list);
 
         mEmptyStateTextView = (TextView) findViewById(R.id.empty_view);
-        marvelNewsListView.setEmptyView(mEmptyStateTextView);
-
-        // Create a new adapter that takes an empty list of marvelNews as input
-        mAdapter = new MarvelNewsAdapter(this, new ArrayList<MarvelNews>());
-
-        // Set the adapter on the {@link ListView}
-        // so the list can be populated in the user interface
-        marvelNewsListView.setAdapter(mAdapter);
 
-        // Set an item click listener on the ListView, which sends an intent to a web browser
+        // Create a new adapter that sends an intent to a web browser when a marvelNews is clicked,
         // to open a website with more information about the selected marvelNews.
-        marvelNewsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        mAdapter = new MarvelNewsAdapter(new MarvelNewsAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current marvelNews that was clicked on
-                MarvelNews currentMarvelNews = mAdapter.getItem(position);
+            public void onItemClick(MarvelNews currentMarvelNews) {
+                // Open the news in the reader right away if its body has been prefetched
+                Intent readerIntent =
+                        ArticleReaderActivity.newIntent(MarvelNewsActivity.this, currentMarvelNews);
+                if (readerIntent != null) {
+                    startActivity(readerIntent);
+                    return;
+                }
 
                 // Convert the String URL into a URI object (to pass into the Intent constructor)
                 Uri marvelNewsUri = Uri.parse(currentMarvelNews.getUrl());
@@ -90,32 +169,183 @@ public class MarvelNewsActivity extends AppCompatActivity
                 // Send the intent to launch a new activity
                 startActivity(websiteIntent);
             }
+        }, ThumbnailLoader.getInstance(this));
+
+        // Set the adapter on the {@link RecyclerView}
+        // so the list can be populated in the user interface
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        marvelNewsListView.setLayoutManager(layoutManager);
+        marvelNewsListView.setAdapter(mAdapter);
+
+        // Prefetch the thumbnails of the next screen of news in the direction of the scroll
+        marvelNewsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (first == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                // As many screens as the network affords
+                int count = (last - first + 1)
+                        * mFetchPolicy.getLimits().thumbnailPrefetchScreens;
+                if (count > 0) {
+                    mAdapter.prefetchThumbnails(dy < 0 ? first - count : last + 1, count);
+                }
+            }
         });
 
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager connMgr = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
+        // On a cold start, show the list as it was last left right away, before the archive or
+        // the network answer. The loader then brings it up to date.
+        if (savedInstanceState == null) {
+            showSnapshot();
+        }
 
-        // Get details on the currently active default data network
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        // If there is a network connection, fetch data. Otherwise only show the stored news,
+        // until the network comes back.
+        mFetchPolicy = ((MarvelNewsApplication) getApplication()).getFetchPolicy();
+        mOffline = mFetchPolicy.getLink() == FetchPolicy.Link.OFFLINE;
+        mFetchPolicyListener = new FetchPolicy.Listener() {
+            @Override
+            public void onPolicyChanged(final FetchPolicy.Link previousLink,
+                                        final FetchPolicy.Link link, FetchPolicy.Limits limits) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLinkChanged(previousLink, link);
+                    }
+                });
+            }
+        };
+        mFetchPolicy.addListener(mFetchPolicyListener);
+        Bundle loaderArgs = new Bundle();
+        loaderArgs.putBoolean(ARG_OFFLINE, mOffline);
+
+        // Get a reference to the LoaderManager, in order to interact with loaders.
+        LoaderManager loaderManager = getLoaderManager();
+
+        // Initialize the loader. Pass in the int ID constant defined above and pass in the
+        // bundle telling whether the device is offline. Pass in this activity for the
+        // LoaderCallbacks parameter (which is valid because this activity implements the
+        // LoaderCallbacks interface).
+        loaderManager.initLoader(MARVELNEWS_LOADER_ID, loaderArgs, this);
+
+        // Apply the settings as soon as they change, without waiting for the activity to be
+        // recreated
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .registerOnSharedPreferenceChangeListener(this);
+    }
 
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mFetchPolicy.removeListener(mFetchPolicyListener);
+        if (mArticlePrefetchCancellation != null) {
+            mArticlePrefetchCancellation.cancel();
+        }
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+    }
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(MARVELNEWS_LOADER_ID, null, this);
-        } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible
-            View loadingIndicator = findViewById(R.id.loading_indicator);
-            loadingIndicator.setVisibility(View.GONE);
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPrefs, String key) {
+        if (!key.equals(getString(R.string.settings_min_date_key))
+                && !key.equals(getString(R.string.settings_order_by_key))
+                && !key.equals(getString(R.string.settings_page_size_key))
+                && !key.equals(getString(R.string.settings_topics_key))) {
+            return;
+        }
+        // The shown news only hold the topics they were loaded for
+        boolean sameTopics = !key.equals(getString(R.string.settings_topics_key));
 
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        // Answer the new search from the news already shown when they hold it, so the list is
+        // updated right away: a re-sort between newest and oldest or a later minimum date only
+        // needs the shown news to be filtered and sorted again.
+        String minDate = sharedPrefs.getString(
+                getString(R.string.settings_min_date_key),
+                getString(R.string.settings_min_date_default));
+        String orderBy = sharedPrefs.getString(
+                getString(R.string.settings_order_by_key),
+                getString(R.string.settings_order_by_default));
+        QuerySubsumption.Plan plan = QuerySubsumption.plan(
+                mMarvelNewss != null && sameTopics ? mLoadedMinDate : null, mLoadedOrderBy,
+                minDate, orderBy);
+        List<MarvelNews> answer = QuerySubsumption.answer(plan, mMarvelNewss);
+        if (answer != null) {
+            mMarvelNewss = answer;
+            // The index is the loader's, it keeps the wider list until the loader delivers
+            mSearchable = Collections.newSetFromMap(new IdentityHashMap<MarvelNews, Boolean>());
+            mSearchable.addAll(answer);
+            // The news held before a gap don't cover it, and are still those of the held date
+            if (plan.isComplete()) {
+                mLoadedMinDate = minDate;
+            }
+            mLoadedOrderBy = orderBy;
+            showNews();
+        }
+
+        // The loader brings the news up to date, and only requests what the stored news miss.
+        restartLoader();
+    }
+
+    /**
+     * Resumes the fetches the previous network deferred: the news once the device is back
+     * online, the article bodies once it is on an unmetered network.
+     */
+    private void onLinkChanged(FetchPolicy.Link previousLink, FetchPolicy.Link link) {
+        if (isFinishing()) {
+            return;
+        }
+        if (link == FetchPolicy.Link.OFFLINE) {
+            mOffline = true;
+            return;
+        }
+        if (mOffline) {
+            mOffline = false;
+            restartLoader();
+            return;
+        }
+        Loader<List<MarvelNews>> loader = getLoaderManager().getLoader(MARVELNEWS_LOADER_ID);
+        if (previousLink != FetchPolicy.Link.UNMETERED && link == FetchPolicy.Link.UNMETERED
+                && mMarvelNewss != null && loader != null
+                && !((MarvelNewsLoader) loader).isPartial()) {
+            prefetchArticles(mMarvelNewss);
+        }
+    }
+
+    /**
+     * Loads the news again, with the settings and the network of now.
+     */
+    private void restartLoader() {
+        Bundle loaderArgs = new Bundle();
+        loaderArgs.putBoolean(ARG_OFFLINE, mOffline);
+        getLoaderManager().restartLoader(MARVELNEWS_LOADER_ID, loaderArgs, this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        // Export the pipeline metrics to logcat and to a file whenever the list is left
+        if (PipelineMetrics.isEnabled()) {
+            String metrics = PipelineMetrics.dump()
+                    + "quota " + MarvelNewsApplication.getRateLimiter().getQuota() + "\n";
+            Log.i(LOG_TAG, "Pipeline metrics:\n" + metrics);
+            Writer writer = null;
+            try {
+                writer = new FileWriter(new File(getFilesDir(), METRICS_FILE));
+                writer.write(metrics);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem exporting the pipeline metrics.", e);
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        Log.e(LOG_TAG, "Problem exporting the pipeline metrics.", e);
+                    }
+                }
+            }
         }
     }
 
@@ -132,48 +362,199 @@ public class MarvelNewsActivity extends AppCompatActivity
                 getString(R.string.settings_order_by_key),
                 getString(R.string.settings_order_by_default));
 
-        // parse breaks apart the URI string that's passed into its parameter
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
-
-        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-
-        // Append query parameter and its value. For example, the `order-by=relevance`
-        uriBuilder.appendQueryParameter("order-by", orderBy);
-        uriBuilder.appendQueryParameter("section", "film");
-        uriBuilder.appendQueryParameter("from-date", minDate);
-        uriBuilder.appendQueryParameter("show-tags", "contributor");
-        uriBuilder.appendQueryParameter("show-elements", "all");
-        uriBuilder.appendQueryParameter("q", "Marvel");
-        uriBuilder.appendQueryParameter("api-key", "5369aa36-6009-4195-86b5-8dc3d98e9915");
-
-
-        // Return the completed uri `https://content.guardianapis.com/search?order-by=relevance&section=film&from-date=2010-01-01&show-tags=contributor&show-elements=all&q=Marvel&api-key=5369aa36-6009-4195-86b5-8dc3d98e9915
-        return new MarvelNewsLoader(this, uriBuilder.toString());
+        String pageSize = sharedPrefs.getString(
+                getString(R.string.settings_page_size_key),
+                getString(R.string.settings_page_size_default));
+
+        Set<String> topics = sharedPrefs.getStringSet(
+                getString(R.string.settings_topics_key),
+                new HashSet<>(Arrays.asList(getResources().getStringArray(
+                        R.array.settings_topics_default))));
+
+        // There is one query per topic. Each only asks for what the list actually displays, and
+        // is shared with the background sync. The loader adds `order-by` and `from-date` itself,
+        // to only sync the news it doesn't store.
+        List<String> requestUrls = MarvelNewsSync.searchUrls(topics);
+
+        // The loader appends `page-size` and `page` itself to fetch every page of the results.
+        // Metered and slow networks get smaller pages and fewer requests in flight.
+        FetchPolicy.Limits limits = mFetchPolicy.getLimits();
+        boolean offline = bundle != null && bundle.getBoolean(ARG_OFFLINE);
+        return new MarvelNewsLoader(this, requestUrls, minDate, orderBy,
+                limits.pageSize(Integer.parseInt(pageSize)), limits.concurrency, offline);
     }
 
     @Override
     public void onLoadFinished(Loader<List<MarvelNews>> loader, List<MarvelNews> marvelNewss) {
+        MarvelNewsLoader marvelNewsLoader = (MarvelNewsLoader) loader;
+        // Keep the snapshot on screen rather than blanking it with an empty first delivery
+        if (marvelNewsLoader.isPartial() && marvelNewss != null && marvelNewss.isEmpty()
+                && mMarvelNewss != null && !mMarvelNewss.isEmpty()) {
+            return;
+        }
+
         // Hide loading indicator because the data has been loaded
         View loadingIndicator = findViewById(R.id.loading_indicator);
         loadingIndicator.setVisibility(View.GONE);
-        // Set empty state text to display "No marvelNewss found."
-        mEmptyStateTextView.setText(R.string.no_news);
+        mMarvelNewss = marvelNewss;
+        mSearchIndex = marvelNewsLoader.getSearchIndex();
+        mSearchable = null;
+        // Remember which search the news answer, to answer the next one from them
+        mLoadedMinDate = marvelNewsLoader.getMinDate();
+        mLoadedOrderBy = marvelNewsLoader.getOrderBy();
+        showNews();
+
+        // Tell the user when the list couldn't be refreshed, for example because the API
+        // throttled the requests, rather than showing it as new
+        if (!marvelNewsLoader.isPartial() && marvelNewsLoader.isStale()) {
+            Toast.makeText(this, R.string.news_stale, Toast.LENGTH_LONG).show();
+        }
+
+        // Once the list is complete, keep it for the next cold start, and download the bodies
+        // of its first news for the reader
+        if (!marvelNewsLoader.isPartial() && marvelNewss != null) {
+            writeSnapshot(marvelNewss, searchKey(mLoadedMinDate, mLoadedOrderBy));
+            if (!mOffline) {
+                prefetchArticles(marvelNewss);
+            }
+        }
+    }
+
+    /**
+     * Shows the snapshot of the last list, if it answers the current settings.
+     */
+    private void showSnapshot() {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String minDate = sharedPrefs.getString(
+                getString(R.string.settings_min_date_key),
+                getString(R.string.settings_min_date_default));
+        String orderBy = sharedPrefs.getString(
+                getString(R.string.settings_order_by_key),
+                getString(R.string.settings_order_by_default));
+
+        // The snapshot is small and memory-mapped, read it right away for the first frame
+        List<MarvelNews> snapshot = MarvelNewsSnapshot.read(
+                new File(getFilesDir(), SNAPSHOT_FILE), searchKey(minDate, orderBy));
+        if (snapshot == null || snapshot.isEmpty()) {
+            return;
+        }
+        findViewById(R.id.loading_indicator).setVisibility(View.GONE);
+        mMarvelNewss = snapshot;
+        // The snapshot only holds the first news, they are indexed in no time
+        mSearchIndex = new MarvelNewsSearchIndex();
+        mSearchIndex.update(snapshot);
+        mSearchable = null;
+        mLoadedMinDate = minDate;
+        mLoadedOrderBy = orderBy;
+        showNews();
+    }
+
+    /**
+     * Replaces the snapshot with the first news of the list, in the background.
+     */
+    private void writeSnapshot(List<MarvelNews> marvelNewss, final String searchKey) {
+        final List<MarvelNews> snapshot = new ArrayList<>(
+                marvelNewss.subList(0, Math.min(SNAPSHOT_MAX_NEWS, marvelNewss.size())));
+        final File file = new File(getFilesDir(), SNAPSHOT_FILE);
+        // The sync lane runs one task at a time, so the snapshots are written in order
+        MarvelNewsApplication.getScheduler().submit(PriorityScheduler.Lane.SYNC, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MarvelNewsSnapshot.write(file, searchKey, snapshot);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing the snapshot of the list.", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the key of the search with the given minimum date and order, and the topics of
+     * the settings, that a snapshot must match to be shown.
+     */
+    private String searchKey(String minDate, String orderBy) {
+        Set<String> topics = PreferenceManager.getDefaultSharedPreferences(this).getStringSet(
+                getString(R.string.settings_topics_key),
+                new HashSet<>(Arrays.asList(getResources().getStringArray(
+                        R.array.settings_topics_default))));
+        return minDate + "|" + orderBy + "|" + new TreeSet<>(topics);
+    }
+
+    /**
+     * Downloads the bodies of the first news of the list in the prefetch lane, within the budget
+     * of the {@link ArticlePrefetcher} and of the network. A prefetch still
+     * running is aborted.
+     */
+    private void prefetchArticles(final List<MarvelNews> marvelNewss) {
+        final int count = mFetchPolicy.getLimits().articlePrefetchCount;
+        if (count == 0) {
+            return;
+        }
+        if (mArticlePrefetchCancellation != null) {
+            mArticlePrefetchCancellation.cancel();
+        }
+        final FetchCancellation cancellation = new FetchCancellation();
+        mArticlePrefetchCancellation = cancellation;
+        final ArticlePrefetcher prefetcher =
+                ((MarvelNewsApplication) getApplication()).getArticlePrefetcher();
+        Runnable prefetch = new Runnable() {
+            @Override
+            public void run() {
+                prefetcher.prefetch(marvelNewss, count, cancellation);
+            }
+        };
+        // The prefetch lane leaves the CPU and the network to loading and scrolling the list
+        MarvelNewsApplication.getScheduler().submit(PriorityScheduler.Lane.PREFETCH, prefetch);
+    }
 
-        // Clear the adapter of previous marvelNews data
-        mAdapter.clear();
+    /**
+     * Shows the loaded news, filtered by the search box.
+     */
+    private void showNews() {
+        List<MarvelNews> marvelNewss = mMarvelNewss;
+        if (marvelNewss == null) {
+            marvelNewss = Collections.emptyList();
+        }
+        boolean searching = !mSearchQuery.trim().isEmpty();
+        if (searching && mSearchIndex != null) {
+            // Query the on-device index of the shown news, it's fast enough to do per keystroke.
+            marvelNewss = mSearchIndex.search(mSearchQuery);
+            if (mSearchable != null) {
+                // Drop the hits the list answered from the shown news left out
+                List<MarvelNews> hits = new ArrayList<>(marvelNewss.size());
+                for (int i = 0; i < marvelNewss.size(); i++) {
+                    if (mSearchable.contains(marvelNewss.get(i))) {
+                        hits.add(marvelNewss.get(i));
+                    }
+                }
+                marvelNewss = hits;
+            }
+        }
 
-        // If there is a valid list of {@link MarvelNews}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (marvelNewss != null && !marvelNewss.isEmpty()) {
-            mAdapter.addAll(marvelNewss);
+        // Set empty state text to display "No marvelNewss found.", or the connection error if
+        // only the stored news could be shown
+        if (searching) {
+            mEmptyStateTextView.setText(R.string.no_search_results);
+        } else {
+            mEmptyStateTextView.setText(mOffline ? R.string.no_internet_connection : R.string.no_news);
         }
+
+        // Hand the new list of {@link MarvelNews}s to the adapter. It is compared with the
+        // displayed list on a background thread, and only the rows that changed are updated.
+        mAdapter.submitList(marvelNewss);
+
+        // The empty state text is only visible when the list has no items.
+        mEmptyStateTextView.setVisibility(marvelNewss.isEmpty() ? View.VISIBLE : View.GONE);
     }
 
     @Override
     public void onLoaderReset(Loader<List<MarvelNews>> loader) {
         // Loader reset, so we can clear out our existing data.
-        mAdapter.clear();
+        mMarvelNewss = null;
+        mSearchIndex = null;
+        mSearchable = null;
+        mAdapter.submitList(null);
     }
 
     @Override
@@ -181,6 +562,23 @@ public class MarvelNewsActivity extends AppCompatActivity
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the Options Menu we specified in XML
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // Filter the list as the user types
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return onQueryTextChange(query);
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mSearchQuery = newText;
+                showNews();
+                return true;
+            }
+        });
         return true;
     }
 
@@ -1,120 +1,245 @@
 package com.example.android.marvelnews;
 
-import android.content.Context;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 /**
  * An {@link MarvelNewsAdapter} knows how to create a list item layout for each marvelNews
  * in the data source (a list of {@link MarvelNews} objects).
  * <p>
- * These list item layouts will be provided to an adapter view like ListView
- * to be displayed to the user.
+ * These list item layouts will be provided to a RecyclerView to be displayed to the user.
+ * A new list of marvelNews is compared with the current one on a background thread, keyed by
+ * website URL, and only the inserted, moved, removed or changed rows are updated.
+ * <p>
+ * Thumbnails are loaded by a {@link ThumbnailLoader}. A recycled row gives up on the thumbnail
+ * it was waiting for, and the thumbnails of the rows about to be shown can be prefetched with
+ * {@link #prefetchThumbnails(int, int)}.
  */
-public class MarvelNewsAdapter extends ArrayAdapter<MarvelNews> {
+public class MarvelNewsAdapter extends ListAdapter<MarvelNews, MarvelNewsAdapter.ViewHolder> {
+
+    /**
+     * Interface definition for a callback to be invoked when a marvelNews is clicked.
+     */
+    public interface OnItemClickListener {
+        void onItemClick(MarvelNews marvelNews);
+    }
+
+    /**
+     * Fields of a marvelNews displayed by a list item. Only these are requested from the API,
+     * so a field displayed by the list item must be added here.
+     */
+    public static final Set<GuardianQuery.Field> BOUND_FIELDS = GuardianQuery.fields(
+            GuardianQuery.Field.TITLE,
+            GuardianQuery.Field.AUTHOR,
+            GuardianQuery.Field.SECTION,
+            GuardianQuery.Field.DATE,
+            GuardianQuery.Field.URL,
+            GuardianQuery.Field.THUMBNAIL);
+
+    /**
+     * Tells how two lists of marvelNews differ: the same article has the same website URL. Rows
+     * of a {@link MarvelNewsStore} are compared on their columns, without decoding them.
+     */
+    private static final DiffUtil.ItemCallback<MarvelNews> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<MarvelNews>() {
+                @Override
+                public boolean areItemsTheSame(MarvelNews oldItem, MarvelNews newItem) {
+                    return MarvelNewsStore.sameUrl(oldItem, newItem);
+                }
+
+                @Override
+                public boolean areContentsTheSame(MarvelNews oldItem, MarvelNews newItem) {
+                    return MarvelNewsStore.sameContents(oldItem, newItem);
+                }
+            };
+
+    /**
+     * Listener notified when a marvelNews is clicked
+     */
+    private final OnItemClickListener mOnItemClickListener;
+
+    /**
+     * Loads the thumbnails of the list items
+     */
+    private final ThumbnailLoader mThumbnailLoader;
+
+    /**
+     * Size of the thumbnail of a list item in pixels, known once an item has been inflated
+     */
+    private int mThumbnailWidth;
+    private int mThumbnailHeight;
+
+    /**
+     * Time the last list was submitted, until a list item is bound, or 0
+     */
+    private long mSubmittedNanos;
 
     /**
      * Constructs a new {@link MarvelNewsAdapter}.
      *
-     * @param context     of the app
-     * @param marvelNewss is the list of marvelNews, which is the data source of the adapter
+     * @param onItemClickListener notified when a marvelNews is clicked
+     * @param thumbnailLoader     loads the thumbnails of the list items
+     */
+    public MarvelNewsAdapter(OnItemClickListener onItemClickListener,
+                             ThumbnailLoader thumbnailLoader) {
+        super(DIFF_CALLBACK);
+        mOnItemClickListener = onItemClickListener;
+        mThumbnailLoader = thumbnailLoader;
+    }
+
+    /**
+     * Inflates a new list item layout. The views of the item are looked up once and kept in
+     * its {@link ViewHolder}.
+     */
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (mThumbnailWidth == 0) {
+            mThumbnailWidth = parent.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+            mThumbnailHeight =
+                    parent.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+        }
+        View listItemView = LayoutInflater.from(parent.getContext()).inflate(
+                R.layout.news_list_item, parent, false);
+        return new ViewHolder(listItemView);
+    }
+
+    /**
+     * Shows a new list, measuring the time to its first bound list item.
      */
-    public MarvelNewsAdapter(Context context, List<MarvelNews> marvelNewss) {
-        super(context, 0, marvelNewss);
+    @Override
+    public void submitList(List<MarvelNews> list) {
+        mSubmittedNanos = list == null || list.isEmpty() ? 0 : PipelineMetrics.start();
+        super.submitList(list);
     }
 
     /**
-     * Returns a list item view that displays information about the marvelNews at the given position
-     * in the list of marvelNewss.
+     * Displays information about the marvelNews at the given position in the list of marvelNewss.
+     * <p>
+     * Every displayed String is prepared by {@link MarvelNews} while loading, so binding a
+     * recycled row doesn't allocate anything, but for the title and thumbnail URL of a row of
+     * a {@link MarvelNewsStore}, which are decoded when they are bound.
      */
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        // Check if there is an existing list item view (called convertView) that we can reuse,
-        // otherwise, if convertView is null, then inflate a new list item layout.
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.news_list_item, parent, false);
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        if (mSubmittedNanos != 0) {
+            PipelineMetrics.stop(PipelineMetrics.Stage.FIRST_BIND, mSubmittedNanos);
+            mSubmittedNanos = 0;
         }
 
         // Find the marvelNews at the given position in the list of marvelNewss
         MarvelNews currentMarvelNews = getItem(position);
 
-        // Find the TextView with view ID news title
-        TextView titleView = (TextView) listItemView.findViewById(R.id.news_title);
-        String title = currentMarvelNews.getTitle();
-        // Display the title of the current marvelNews in that TextView
-        titleView.setText(title);
+        // Display the title of the current marvelNews
+        holder.titleView.setText(currentMarvelNews.getTitle());
 
-        // Find the TextView with view ID author_name
-        TextView authorView = listItemView.findViewById(R.id.author_name);
-        // Display the author name of the current news in that TextView
-        if (currentMarvelNews.getAuthor() != "") {
-            authorView.setText(currentMarvelNews.getAuthor());
+        // Display the author name of the current news, if there is one
+        String author = currentMarvelNews.getAuthor();
+        if (author != null && !author.isEmpty()) {
+            holder.authorView.setText(author);
 
             //Set author name view as visible
-            authorView.setVisibility(View.VISIBLE);
+            holder.authorView.setVisibility(View.VISIBLE);
         } else {
             //Set author name view as gone
-            authorView.setVisibility(View.GONE);
+            holder.authorView.setVisibility(View.GONE);
         }
 
-        // Find the TextView with view ID section name
-        TextView sectionView = (TextView) listItemView.findViewById(R.id.section_name);
-        String sectionName = currentMarvelNews.getSectionName();
-        // Display the section name of the current marvelNews in that TextView
-        sectionView.setText(sectionName);
-
-        TextView dateView = null;
-        TextView timeView = null;
-        if (currentMarvelNews.getTime() != null) {
-            // Find the TextView with view ID date
-            dateView = listItemView.findViewById(R.id.date);
-            // Format the date string (i.e. "May 3, 1987")
-            String formattedDate = formatDate(currentMarvelNews.getTime()).concat(",");
-            // Display the date of the current MarvelNews in that TextView
-            dateView.setText(formattedDate);
-
-            // Find the TextView with view ID time
-            timeView = listItemView.findViewById(R.id.time);
-            // Format the time string (i.e. "6:45 PM")
-            String formattedTime = formatTime(currentMarvelNews.getTime());
-            // Display the time of the current MarvelNews in that TextView
-            timeView.setText(formattedTime);
+        // Display the section name of the current marvelNews
+        holder.sectionView.setText(currentMarvelNews.getSectionName());
+
+        if (currentMarvelNews.getDisplayDate() != null) {
+            // Display the date (i.e. "May 3, 1987,") and time (i.e. "6:45 PM") of the current MarvelNews
+            holder.dateView.setText(currentMarvelNews.getDisplayDate());
+            holder.timeView.setText(currentMarvelNews.getDisplayTime());
 
             //Set date & time views as visible
-            dateView.setVisibility(View.VISIBLE);
-            timeView.setVisibility(View.VISIBLE);
+            holder.dateView.setVisibility(View.VISIBLE);
+            holder.timeView.setVisibility(View.VISIBLE);
         } else {
             //Set date & time views as gone
-            dateView.setVisibility(View.GONE);
-            timeView.setVisibility(View.GONE);
+            holder.dateView.setVisibility(View.GONE);
+            holder.timeView.setVisibility(View.GONE);
+        }
+
+        // Display the thumbnail of the current news, if it has one
+        String thumbnailUrl = currentMarvelNews.getThumbnailUrl();
+        if (thumbnailUrl != null) {
+            mThumbnailLoader.load(thumbnailUrl, holder.thumbnailView, mThumbnailWidth,
+                    mThumbnailHeight);
+            holder.thumbnailView.setVisibility(View.VISIBLE);
+        } else {
+            mThumbnailLoader.cancel(holder.thumbnailView);
+            holder.thumbnailView.setVisibility(View.GONE);
         }
+    }
 
-        // Return the list item view that is now showing the appropriate data
-        return listItemView;
+    /**
+     * Gives up on the thumbnail of a row scrolled out of the list, unless another row waits
+     * for it too.
+     */
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        mThumbnailLoader.cancel(holder.thumbnailView);
     }
 
     /**
-     * Return the formatted date string (i.e. "May 3, 1987") from a Date object.
+     * Prefetches the thumbnails of the marvelNewss at the given positions, the ones past the end
+     * of the list are ignored.
+     *
+     * @param first position of the first marvelNews
+     * @param count number of marvelNewss
      */
-    private String formatDate(Date dateObject) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("LLL dd, yyyy");
-        return dateFormat.format(dateObject);
+    public void prefetchThumbnails(int first, int count) {
+        if (mThumbnailWidth == 0) {
+            // No list item has been inflated yet
+            return;
+        }
+        int end = Math.min(getItemCount(), first + count);
+        for (int position = Math.max(0, first); position < end; position++) {
+            String thumbnailUrl = getItem(position).getThumbnailUrl();
+            if (thumbnailUrl != null) {
+                mThumbnailLoader.prefetch(thumbnailUrl, mThumbnailWidth, mThumbnailHeight);
+            }
+        }
     }
 
     /**
-     * Return the formatted date string (i.e. "6:45 PM") from a Date object.
+     * Keeps the views of a list item, so they are only looked up when the item is inflated.
      */
-    private String formatTime(Date dateObject) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a");
-        return timeFormat.format(dateObject);
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        final TextView titleView;
+        final TextView authorView;
+        final TextView sectionView;
+        final TextView dateView;
+        final TextView timeView;
+        final ImageView thumbnailView;
+
+        ViewHolder(View listItemView) {
+            super(listItemView);
+            titleView = (TextView) listItemView.findViewById(R.id.news_title);
+            authorView = (TextView) listItemView.findViewById(R.id.author_name);
+            sectionView = (TextView) listItemView.findViewById(R.id.section_name);
+            dateView = (TextView) listItemView.findViewById(R.id.date);
+            timeView = (TextView) listItemView.findViewById(R.id.time);
+            thumbnailView = (ImageView) listItemView.findViewById(R.id.thumbnail);
+            listItemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && mOnItemClickListener != null) {
+                mOnItemClickListener.onItemClick(getItem(position));
+            }
+        }
     }
-}
\ No newline at end of file
+}
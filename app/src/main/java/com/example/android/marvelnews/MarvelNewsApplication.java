@@ -0,0 +1,222 @@
+package com.example.android.marvelnews;
+
+import android.app.Application;
+import android.os.Build;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sets up the state shared by every screen of the app.
+ */
+public class MarvelNewsApplication extends Application {
+
+    /**
+     * Name of the directory, inside the cache directory, holding the Guardian responses
+     */
+    private static final String RESPONSE_CACHE_DIRECTORY = "guardian-responses";
+
+    /**
+     * Maximum size of the response cache
+     */
+    private static final long RESPONSE_CACHE_MAX_BYTES = 10 * 1024 * 1024;
+
+    /**
+     * Time a cached response is used without asking the server
+     */
+    private static final long RESPONSE_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Time after expiry a cached response is shown while it is being revalidated
+     */
+    private static final long RESPONSE_STALE_WHILE_REVALIDATE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Name of the directory, inside the files directory, holding the prefetched article bodies
+     */
+    private static final String ARTICLE_STORE_DIRECTORY = "articles";
+
+    /**
+     * Maximum size of the prefetched article bodies
+     */
+    private static final long ARTICLE_STORE_MAX_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * Time a prefetched article body is kept before it is downloaded again, to pick up
+     * corrections. An older body is still shown by the reader.
+     */
+    private static final long ARTICLE_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Number of news, from the top of the list, whose body is prefetched
+     */
+    private static final int ARTICLE_PREFETCH_COUNT = 10;
+
+    /**
+     * Bytes a prefetch of article bodies may download
+     */
+    private static final long ARTICLE_PREFETCH_MAX_BYTES = 1024 * 1024;
+
+    /**
+     * Time a prefetch of article bodies may take
+     */
+    private static final long ARTICLE_PREFETCH_MAX_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Number of threads running the background work of the app
+     */
+    private static final int SCHEDULER_THREAD_COUNT = 4;
+
+    /**
+     * Wait after which a background task ranks one lane higher
+     */
+    private static final long SCHEDULER_AGING_MILLIS = 1000;
+
+    /**
+     * Steady rate of the requests to the Guardian API, the limit of a developer key
+     */
+    private static final double API_REQUESTS_PER_SECOND = 1;
+
+    /**
+     * Number of requests to the Guardian API that may be sent at once, enough for the first
+     * page of every topic
+     */
+    private static final int API_REQUEST_BURST = 6;
+
+    /**
+     * Longest time a request to the Guardian API waits for its turn before giving up
+     */
+    private static final long API_MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
+    /**
+     * Keeps the requests of every client within the quota of the API key
+     */
+    private static GuardianRateLimiter sRateLimiter;
+
+    /**
+     * Runs the background work of the app, the work on screen first
+     */
+    private static PriorityScheduler sScheduler;
+
+    /**
+     * Decides how much is fetched on the network the device is on
+     */
+    private FetchPolicy mFetchPolicy;
+
+    /**
+     * Prefetched article bodies, by website URL
+     */
+    private DiskResponseCache mArticleStore;
+
+    /**
+     * Prefetches the article bodies into {@link #mArticleStore}
+     */
+    private ArticlePrefetcher mArticlePrefetcher;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Keep-alive is the platform default, make sure the pool is big enough for paging
+        GuardianHttpClient.configureConnectionPool();
+
+        // Time each stage of loading the news in debug builds, release builds skip it
+        PipelineMetrics.setEnabled(BuildConfig.DEBUG);
+
+        // Visible work may take every thread, prefetches and syncs leave room for it. A fling
+        // prefetches many screens it doesn't stop on, only the latest prefetches are kept.
+        sScheduler = new PriorityScheduler("worker", SCHEDULER_THREAD_COUNT,
+                SCHEDULER_AGING_MILLIS);
+        sScheduler.setLaneLimits(PriorityScheduler.Lane.VISIBLE, SCHEDULER_THREAD_COUNT, 64);
+        sScheduler.setLaneLimits(PriorityScheduler.Lane.PREFETCH, 2, 24);
+        sScheduler.setLaneLimits(PriorityScheduler.Lane.SYNC, 1, 16);
+
+        // Every request with the API key, news and article bodies, shares the quota of the key
+        sRateLimiter = new GuardianRateLimiter(API_REQUESTS_PER_SECOND, API_REQUEST_BURST,
+                API_MAX_WAIT_MILLIS);
+        QueryUtils.getHttpClient().setRateLimiter(sRateLimiter);
+
+        // Cache the Guardian responses on disk, so unchanged results aren't downloaded again
+        QueryUtils.setResponseCache(new DiskResponseCache(
+                new File(getCacheDir(), RESPONSE_CACHE_DIRECTORY),
+                RESPONSE_CACHE_MAX_BYTES,
+                RESPONSE_MAX_AGE_MILLIS,
+                RESPONSE_STALE_WHILE_REVALIDATE_MILLIS));
+
+        // Keep the bodies of the first news on disk, so they can be read offline. They have their
+        // own client, so their requests don't count in the timing of the news requests.
+        mArticleStore = new DiskResponseCache(
+                new File(getFilesDir(), ARTICLE_STORE_DIRECTORY),
+                ARTICLE_STORE_MAX_BYTES,
+                ARTICLE_MAX_AGE_MILLIS,
+                0);
+        final GuardianHttpClient articleHttpClient = new GuardianHttpClient();
+        articleHttpClient.setRateLimiter(sRateLimiter);
+        mArticlePrefetcher = new ArticlePrefetcher(MarvelNewsSearch.articlesUrl(), mArticleStore,
+                articleHttpClient, ARTICLE_PREFETCH_COUNT, ARTICLE_PREFETCH_MAX_BYTES,
+                ARTICLE_PREFETCH_MAX_MILLIS);
+
+        // Follow the network the device is on, and the speed the news requests measure on it
+        mFetchPolicy = new FetchPolicy(ConnectivityMonitor.currentLink(this));
+        ConnectivityMonitor.register(this, mFetchPolicy);
+        QueryUtils.setFetchPolicy(mFetchPolicy);
+        applyTimeouts(mFetchPolicy.getLimits(), articleHttpClient);
+        mFetchPolicy.addListener(new FetchPolicy.Listener() {
+            @Override
+            public void onPolicyChanged(FetchPolicy.Link previousLink, FetchPolicy.Link link,
+                                        FetchPolicy.Limits limits) {
+                applyTimeouts(limits, articleHttpClient);
+            }
+        });
+
+        // Keep the stored news up to date in the background, so the app opens on them
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            MarvelNewsSyncJobService.schedule(this);
+        }
+    }
+
+    /**
+     * Sets the timeouts of the network the device is on to the news and article requests.
+     */
+    private static void applyTimeouts(FetchPolicy.Limits limits,
+                                      GuardianHttpClient articleHttpClient) {
+        QueryUtils.getHttpClient().setTimeouts(limits.connectTimeoutMillis,
+                limits.readTimeoutMillis);
+        articleHttpClient.setTimeouts(limits.connectTimeoutMillis, limits.readTimeoutMillis);
+    }
+
+    /**
+     * Returns the scheduler running the background work of the app.
+     */
+    public static PriorityScheduler getScheduler() {
+        return sScheduler;
+    }
+
+    /**
+     * Returns the limiter keeping the requests within the quota of the API key.
+     */
+    public static GuardianRateLimiter getRateLimiter() {
+        return sRateLimiter;
+    }
+
+    /**
+     * Returns the policy deciding how much is fetched on the network the device is on.
+     */
+    public FetchPolicy getFetchPolicy() {
+        return mFetchPolicy;
+    }
+
+    /**
+     * Returns the prefetched article bodies, by website URL.
+     */
+    public DiskResponseCache getArticleStore() {
+        return mArticleStore;
+    }
+
+    /**
+     * Returns the prefetcher of the article bodies.
+     */
+    public ArticlePrefetcher getArticlePrefetcher() {
+        return mArticlePrefetcher;
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.android.marvelnews;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.marvelnews.MarvelNewsContract.NewsEntry;
+import com.example.android.marvelnews.MarvelNewsContract.NewsQueryEntry;
+import com.example.android.marvelnews.MarvelNewsContract.SyncEntry;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Persistent store of every {@link MarvelNews} received from the Guardian API, keyed by the
+ * website URL of the article.
+ * <p>
+ * Next to the news, the archive remembers for each query the earliest "from-date" it holds every
+ * result of, and the newest publication date it received. That watermark lets a sync ask the API
+ * only for the news published since the last sync instead of the whole result set.
+ */
+public final class MarvelNewsArchive {
+
+    /**
+     * Number of news written per transaction
+     */
+    private static final int UPSERT_BATCH_SIZE = 100;
+
+    /**
+     * Query parameters that don't change which articles a query matches
+     */
+    private static final String[] NON_IDENTIFYING_PARAMETERS =
+            {"api-key=", "from-date=", "order-by=", "page=", "page-size=", "show-"};
+
+    private static MarvelNewsArchive sInstance;
+
+    /**
+     * Database helper that will provide us access to the database
+     */
+    private final MarvelNewsDbHelper mDbHelper;
+
+    private MarvelNewsArchive(Context context) {
+        mDbHelper = new MarvelNewsDbHelper(context.getApplicationContext());
+    }
+
+    /**
+     * Returns the archive of the app.
+     */
+    public static synchronized MarvelNewsArchive getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MarvelNewsArchive(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the stored news published on or after the given date that are results of any of
+     * the given queries.
+     *
+     * @param minDate     earliest publication date (yyyy-MM-dd)
+     * @param oldestFirst true to sort the news from oldest to newest, false for newest first
+     * @param queryKeys   keys of the queries, see {@link #queryKey(String)}
+     */
+    public List<MarvelNews> query(String minDate, boolean oldestFirst,
+                                  Collection<String> queryKeys) {
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+
+        String[] projection = {
+                NewsEntry.COLUMN_URL,
+                NewsEntry.COLUMN_TITLE,
+                NewsEntry.COLUMN_AUTHOR,
+                NewsEntry.COLUMN_SECTION,
+                NewsEntry.COLUMN_PUBLISHED,
+                NewsEntry.COLUMN_THUMBNAIL};
+        StringBuilder selection = new StringBuilder(NewsEntry.COLUMN_PUBLISHED + " >= ? AND "
+                + NewsEntry.COLUMN_URL + " IN (SELECT " + NewsQueryEntry.COLUMN_URL + " FROM "
+                + NewsQueryEntry.TABLE_NAME + " WHERE " + NewsQueryEntry.COLUMN_QUERY + " IN (");
+        String[] selectionArgs = new String[queryKeys.size() + 1];
+        selectionArgs[0] = String.valueOf(parseDay(minDate));
+        int argument = 1;
+        for (String queryKey : queryKeys) {
+            selection.append(argument > 1 ? ", ?" : "?");
+            selectionArgs[argument++] = queryKey;
+        }
+        selection.append("))");
+        String sortOrder = NewsEntry.COLUMN_PUBLISHED + (oldestFirst ? " ASC" : " DESC");
+
+        Cursor cursor = database.query(NewsEntry.TABLE_NAME, projection, selection.toString(),
+                selectionArgs, null, null, sortOrder);
+        try {
+            // The archive can hold years of news, keep them in columns rather than objects.
+            MarvelNewsStore marvelNewss = new MarvelNewsStore(cursor.getCount());
+            int urlColumnIndex = cursor.getColumnIndex(NewsEntry.COLUMN_URL);
+            int titleColumnIndex = cursor.getColumnIndex(NewsEntry.COLUMN_TITLE);
+            int authorColumnIndex = cursor.getColumnIndex(NewsEntry.COLUMN_AUTHOR);
+            int sectionColumnIndex = cursor.getColumnIndex(NewsEntry.COLUMN_SECTION);
+            int publishedColumnIndex = cursor.getColumnIndex(NewsEntry.COLUMN_PUBLISHED);
+            int thumbnailColumnIndex = cursor.getColumnIndex(NewsEntry.COLUMN_THUMBNAIL);
+            while (cursor.moveToNext()) {
+                long published = cursor.isNull(publishedColumnIndex)
+                        ? Long.MIN_VALUE : cursor.getLong(publishedColumnIndex);
+                marvelNewss.add(
+                        cursor.getString(authorColumnIndex),
+                        cursor.getString(titleColumnIndex),
+                        cursor.getString(sectionColumnIndex),
+                        published,
+                        cursor.getString(urlColumnIndex),
+                        cursor.getString(thumbnailColumnIndex));
+            }
+            return marvelNewss.asList();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Inserts the news, or replaces the stored ones with the same URL, in batched transactions,
+     * and records them as results of the given query.
+     *
+     * @param queryKey key of the query the news are results of, see {@link #queryKey(String)}
+     */
+    public void upsert(List<MarvelNews> marvelNewss, String queryKey) {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        SQLiteStatement resultStatement = database.compileStatement("INSERT OR IGNORE INTO "
+                + NewsQueryEntry.TABLE_NAME + " ("
+                + NewsQueryEntry.COLUMN_URL + ", "
+                + NewsQueryEntry.COLUMN_QUERY + ") VALUES (?, ?)");
+        SQLiteStatement statement = database.compileStatement("INSERT OR REPLACE INTO "
+                + NewsEntry.TABLE_NAME + " ("
+                + NewsEntry.COLUMN_URL + ", "
+                + NewsEntry.COLUMN_TITLE + ", "
+                + NewsEntry.COLUMN_AUTHOR + ", "
+                + NewsEntry.COLUMN_SECTION + ", "
+                + NewsEntry.COLUMN_PUBLISHED + ", "
+                + NewsEntry.COLUMN_THUMBNAIL + ") VALUES (?, ?, ?, ?, ?, ?)");
+        try {
+            for (int start = 0; start < marvelNewss.size(); start += UPSERT_BATCH_SIZE) {
+                int end = Math.min(marvelNewss.size(), start + UPSERT_BATCH_SIZE);
+                database.beginTransaction();
+                try {
+                    for (int i = start; i < end; i++) {
+                        MarvelNews marvelNews = marvelNewss.get(i);
+                        if (marvelNews.getUrl() == null) {
+                            continue;
+                        }
+                        statement.clearBindings();
+                        statement.bindString(1, marvelNews.getUrl());
+                        bindStringOrNull(statement, 2, marvelNews.getTitle());
+                        statement.bindString(3, marvelNews.getAuthor() != null ? marvelNews.getAuthor() : "");
+                        bindStringOrNull(statement, 4, marvelNews.getSectionName());
+                        if (marvelNews.getTime() != null) {
+                            statement.bindLong(5, marvelNews.getTime().getTime());
+                        } else {
+                            statement.bindNull(5);
+                        }
+                        bindStringOrNull(statement, 6, marvelNews.getThumbnailUrl());
+                        statement.executeInsert();
+
+                        resultStatement.bindString(1, marvelNews.getUrl());
+                        resultStatement.bindString(2, queryKey);
+                        resultStatement.executeInsert();
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+            }
+        } finally {
+            statement.close();
+            resultStatement.close();
+        }
+    }
+
+    /**
+     * Returns the "from-date" (yyyy-MM-dd) a sync of the query has to start from so that every
+     * result published since {@code minDate} is stored afterwards: the day of the watermark if
+     * the archive already covers {@code minDate}, otherwise {@code minDate} itself.
+     */
+    public String syncFromDate(String queryKey, String minDate) {
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+        Cursor cursor = database.query(SyncEntry.TABLE_NAME,
+                new String[]{SyncEntry.COLUMN_COVERED_FROM, SyncEntry.COLUMN_WATERMARK},
+                SyncEntry.COLUMN_QUERY + " = ?", new String[]{queryKey}, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return minDate;
+            }
+            String coveredFrom = cursor.getString(0);
+            long watermark = cursor.getLong(1);
+            if (watermark <= 0 || coveredFrom.compareTo(minDate) > 0) {
+                return minDate;
+            }
+            // The watermark day is fetched again, news published later that day may be missing.
+            String watermarkDay = new SimpleDateFormat("yyyy-MM-dd").format(new Date(watermark));
+            return watermarkDay.compareTo(minDate) > 0 ? watermarkDay : minDate;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Records a completed sync of the query, which stored every result published since
+     * {@code fromDate}.
+     */
+    public void recordSync(String queryKey, String fromDate, List<MarvelNews> marvelNewss) {
+        long watermark = 0;
+        for (MarvelNews marvelNews : marvelNewss) {
+            if (marvelNews.getTime() != null && marvelNews.getTime().getTime() > watermark) {
+                watermark = marvelNews.getTime().getTime();
+            }
+        }
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            Cursor cursor = database.query(SyncEntry.TABLE_NAME,
+                    new String[]{SyncEntry.COLUMN_COVERED_FROM, SyncEntry.COLUMN_WATERMARK},
+                    SyncEntry.COLUMN_QUERY + " = ?", new String[]{queryKey}, null, null, null);
+            String coveredFrom = fromDate;
+            try {
+                if (cursor.moveToFirst()) {
+                    String previousCoveredFrom = cursor.getString(0);
+                    // The sync only extends the coverage if it reached back into it.
+                    if (fromDate.compareTo(previousCoveredFrom) >= 0) {
+                        coveredFrom = previousCoveredFrom;
+                    }
+                    watermark = Math.max(watermark, cursor.getLong(1));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            ContentValues values = new ContentValues();
+            values.put(SyncEntry.COLUMN_QUERY, queryKey);
+            values.put(SyncEntry.COLUMN_COVERED_FROM, coveredFrom);
+            values.put(SyncEntry.COLUMN_WATERMARK, watermark);
+            values.put(SyncEntry.COLUMN_SYNCED_AT, System.currentTimeMillis());
+            database.insertWithOnConflict(SyncEntry.TABLE_NAME, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the earliest "from-date" (yyyy-MM-dd) of the query the archive holds every
+     * result of, or null if it was never synced.
+     */
+    public String getCoveredFrom(String queryKey) {
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+        Cursor cursor = database.query(SyncEntry.TABLE_NAME,
+                new String[]{SyncEntry.COLUMN_COVERED_FROM},
+                SyncEntry.COLUMN_QUERY + " = ?", new String[]{queryKey}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the newest publication date, in milliseconds, received for the query, or 0 if it
+     * was never synced.
+     */
+    public long getWatermark(String queryKey) {
+        return readSyncState(queryKey, SyncEntry.COLUMN_WATERMARK);
+    }
+
+    /**
+     * Returns the time, in milliseconds, of the last completed sync of the query, or 0 if it was
+     * never synced.
+     */
+    public long getLastSyncTime(String queryKey) {
+        return readSyncState(queryKey, SyncEntry.COLUMN_SYNCED_AT);
+    }
+
+    private long readSyncState(String queryKey, String column) {
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+        Cursor cursor = database.query(SyncEntry.TABLE_NAME, new String[]{column},
+                SyncEntry.COLUMN_QUERY + " = ?", new String[]{queryKey}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the key identifying the set of articles a Guardian search URL matches, ignoring
+     * its date range, order, paging, requested fields and api-key.
+     */
+    public static String queryKey(String url) {
+        String normalized = DiskResponseCache.normalize(url);
+        int queryStart = normalized.indexOf('?');
+        if (queryStart < 0) {
+            return normalized;
+        }
+        StringBuilder key = new StringBuilder(normalized.substring(0, queryStart));
+        char separator = '?';
+        for (String parameter : normalized.substring(queryStart + 1).split("&")) {
+            if (!isNonIdentifying(parameter)) {
+                key.append(separator).append(parameter);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean isNonIdentifying(String parameter) {
+        for (String prefix : NON_IDENTIFYING_PARAMETERS) {
+            if (parameter.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the start of the given day (yyyy-MM-dd) in milliseconds, or 0 if it is malformed.
+     */
+    private static long parseDay(String day) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").parse(day).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+}
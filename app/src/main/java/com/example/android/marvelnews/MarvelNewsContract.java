@@ -0,0 +1,129 @@
+package com.example.android.marvelnews;
+
+import android.provider.BaseColumns;
+
+/**
+ * API Contract for the Marvel News database.
+ */
+public final class MarvelNewsContract {
+
+    /**
+     * To prevent someone from accidentally instantiating the contract class,
+     * give it an empty constructor.
+     */
+    private MarvelNewsContract() {
+    }
+
+    /**
+     * Inner class that defines constant values for the stored news.
+     * Each entry in the table represents a single MarvelNews.
+     */
+    public static final class NewsEntry implements BaseColumns {
+
+        /**
+         * Name of database table for news
+         */
+        public static final String TABLE_NAME = "news";
+
+        /**
+         * Unique ID number for the news (only for use in the database table).
+         * Type: INTEGER
+         */
+        public static final String _ID = BaseColumns._ID;
+
+        /**
+         * Website URL of the news, which identifies the Guardian article.
+         * Type: TEXT
+         */
+        public static final String COLUMN_URL = "url";
+
+        /**
+         * Title of the news.
+         * Type: TEXT
+         */
+        public static final String COLUMN_TITLE = "title";
+
+        /**
+         * Author line of the news, empty if there is no contributor.
+         * Type: TEXT
+         */
+        public static final String COLUMN_AUTHOR = "author";
+
+        /**
+         * Section name of the news.
+         * Type: TEXT
+         */
+        public static final String COLUMN_SECTION = "section";
+
+        /**
+         * Publication date of the news in milliseconds, or null if it is unknown.
+         * Type: INTEGER
+         */
+        public static final String COLUMN_PUBLISHED = "published";
+
+        /**
+         * URL of the thumbnail image of the news, or null if it has none.
+         * Type: TEXT
+         */
+        public static final String COLUMN_THUMBNAIL = "thumbnail";
+    }
+
+    /**
+     * Inner class that defines constant values for the queries each stored news was received
+     * for. Each entry in the table tells that a news is a result of a query.
+     */
+    public static final class NewsQueryEntry {
+
+        /**
+         * Name of database table for the results of each query
+         */
+        public static final String TABLE_NAME = "news_query";
+
+        /**
+         * Website URL of the news, see {@link NewsEntry#COLUMN_URL}.
+         * Type: TEXT
+         */
+        public static final String COLUMN_URL = "url";
+
+        /**
+         * Key of the query, see {@link MarvelNewsArchive#queryKey(String)}.
+         * Type: TEXT
+         */
+        public static final String COLUMN_QUERY = "query";
+    }
+
+    /**
+     * Inner class that defines constant values for the synchronization state of each query.
+     */
+    public static final class SyncEntry implements BaseColumns {
+
+        /**
+         * Name of database table for the synchronization state
+         */
+        public static final String TABLE_NAME = "sync_state";
+
+        /**
+         * Key of the synchronized query, see {@link MarvelNewsArchive#queryKey(String)}.
+         * Type: TEXT
+         */
+        public static final String COLUMN_QUERY = "query";
+
+        /**
+         * Earliest "from-date" (yyyy-MM-dd) from which every result of the query is stored.
+         * Type: TEXT
+         */
+        public static final String COLUMN_COVERED_FROM = "covered_from";
+
+        /**
+         * Newest publication date, in milliseconds, received for the query.
+         * Type: INTEGER
+         */
+        public static final String COLUMN_WATERMARK = "watermark";
+
+        /**
+         * Time of the last completed sync of the query, in milliseconds.
+         * Type: INTEGER
+         */
+        public static final String COLUMN_SYNCED_AT = "synced_at";
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.marvelnews;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.marvelnews.MarvelNewsContract.NewsEntry;
+import com.example.android.marvelnews.MarvelNewsContract.NewsQueryEntry;
+import com.example.android.marvelnews.MarvelNewsContract.SyncEntry;
+
+/**
+ * Database helper for the Marvel News app. Manages database creation and version management.
+ */
+public class MarvelNewsDbHelper extends SQLiteOpenHelper {
+
+    /**
+     * Name of the database file
+     */
+    private static final String DATABASE_NAME = "marvelnews.db";
+
+    /**
+     * Database version. If you change the database schema, you must increment the database version.
+     */
+    private static final int DATABASE_VERSION = 4;
+
+    /**
+     * Constructs a new instance of {@link MarvelNewsDbHelper}.
+     *
+     * @param context of the app
+     */
+    public MarvelNewsDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * This is called when the database is created for the first time.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // Create a String that contains the SQL statement to create the news table
+        String SQL_CREATE_NEWS_TABLE = "CREATE TABLE " + NewsEntry.TABLE_NAME + " ("
+                + NewsEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + NewsEntry.COLUMN_URL + " TEXT NOT NULL UNIQUE, "
+                + NewsEntry.COLUMN_TITLE + " TEXT, "
+                + NewsEntry.COLUMN_AUTHOR + " TEXT NOT NULL DEFAULT '', "
+                + NewsEntry.COLUMN_SECTION + " TEXT, "
+                + NewsEntry.COLUMN_PUBLISHED + " INTEGER, "
+                + NewsEntry.COLUMN_THUMBNAIL + " TEXT);";
+
+        // Index the publication date, the news are always read in date order
+        String SQL_CREATE_PUBLISHED_INDEX = "CREATE INDEX news_published ON "
+                + NewsEntry.TABLE_NAME + " (" + NewsEntry.COLUMN_PUBLISHED + ");";
+
+        // Create a String that contains the SQL statement to create the sync state table
+        String SQL_CREATE_SYNC_TABLE = "CREATE TABLE " + SyncEntry.TABLE_NAME + " ("
+                + SyncEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SyncEntry.COLUMN_QUERY + " TEXT NOT NULL UNIQUE, "
+                + SyncEntry.COLUMN_COVERED_FROM + " TEXT NOT NULL, "
+                + SyncEntry.COLUMN_WATERMARK + " INTEGER NOT NULL DEFAULT 0, "
+                + SyncEntry.COLUMN_SYNCED_AT + " INTEGER NOT NULL DEFAULT 0);";
+
+        // Execute the SQL statements
+        db.execSQL(SQL_CREATE_NEWS_TABLE);
+        db.execSQL(SQL_CREATE_PUBLISHED_INDEX);
+        db.execSQL(SQL_CREATE_SYNC_TABLE);
+        createNewsQueryTable(db);
+    }
+
+    /**
+     * This is called when the database needs to be upgraded.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Version 2 remembers when each query was last synced
+            db.execSQL("ALTER TABLE " + SyncEntry.TABLE_NAME + " ADD COLUMN "
+                    + SyncEntry.COLUMN_SYNCED_AT + " INTEGER NOT NULL DEFAULT 0;");
+        }
+        if (oldVersion < 3) {
+            // Version 3 remembers which queries each news is a result of. Until then the only
+            // query was the default topic, so every stored news is one of its results.
+            createNewsQueryTable(db);
+            db.execSQL("INSERT INTO " + NewsQueryEntry.TABLE_NAME + " ("
+                            + NewsQueryEntry.COLUMN_URL + ", " + NewsQueryEntry.COLUMN_QUERY + ") "
+                            + "SELECT " + NewsEntry.COLUMN_URL + ", ? FROM " + NewsEntry.TABLE_NAME,
+                    new Object[]{MarvelNewsArchive.queryKey(MarvelNewsSync.searchUrl())});
+        }
+        if (oldVersion < 4) {
+            // Version 4 keeps the thumbnail of each news. The stored news were received without
+            // one, so forget the sync state: the next sync receives them again with thumbnails.
+            db.execSQL("ALTER TABLE " + NewsEntry.TABLE_NAME + " ADD COLUMN "
+                    + NewsEntry.COLUMN_THUMBNAIL + " TEXT;");
+            db.execSQL("DELETE FROM " + SyncEntry.TABLE_NAME + ";");
+        }
+    }
+
+    /**
+     * Creates the table of the queries each news is a result of, indexed by query.
+     */
+    private static void createNewsQueryTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + NewsQueryEntry.TABLE_NAME + " ("
+                + NewsQueryEntry.COLUMN_URL + " TEXT NOT NULL, "
+                + NewsQueryEntry.COLUMN_QUERY + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + NewsQueryEntry.COLUMN_QUERY + ", "
+                + NewsQueryEntry.COLUMN_URL + "));");
+    }
+}
@@ -2,34 +2,216 @@ package com.example.android.marvelnews;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 /**
  * Loads a list of marvelNews by using an AsyncTask to perform the
  * network request to the given URL.
+ * <p>
+ * The news stored in the {@link MarvelNewsArchive} are delivered first. A sync then asks the API
+ * only for the news published since the newest stored one, stores them, and delivers the updated
+ * list. News ordered by relevance can't be sorted locally, so that order is always fetched whole.
+ * If the news have been synced recently, usually by {@link MarvelNewsSyncJobService}, the stored
+ * news are the result and no request is made.
+ * <p>
+ * The list shows the news of several topics, each synced by its own search. The searches run at
+ * the same time and are merged into one list by a {@link MarvelNewsFanOut}.
  */
 public class MarvelNewsLoader extends AsyncTaskLoader<List<MarvelNews>> {
 
     /**
-     * Query URL
+     * Query URL of each topic, without "from-date" and "order-by" parameters
      */
-    private String mUrl;
+    private List<String> mUrls;
+
+    /**
+     * Earliest publication date of the news (yyyy-MM-dd)
+     */
+    private String mMinDate;
+
+    /**
+     * Order of the news, "newest", "oldest" or "relevance"
+     */
+    private String mOrderBy;
+
+    /**
+     * Number of results requested per page
+     */
+    private int mPageSize;
+
+    /**
+     * Number of requests in flight at the same time, all topics included
+     */
+    private int mConcurrency;
+
+    /**
+     * True to only read the stored news, without any network request
+     */
+    private boolean mOffline;
+
+    /**
+     * Last delivered list of news, delivered again when the loader restarts
+     */
+    private List<MarvelNews> mMarvelNewss;
+
+    /**
+     * Search index of the delivered news, updated before each delivery
+     */
+    private final MarvelNewsSearchIndex mSearchIndex = new MarvelNewsSearchIndex();
+
+    /**
+     * True if {@link #mMarvelNewss} is a partial result of a load still running
+     */
+    private boolean mPartial;
+
+    /**
+     * True if the last load couldn't bring the news up to date, for example because the API
+     * throttled the requests, and delivered the local news instead
+     */
+    private volatile boolean mStale;
+
+    /**
+     * Token aborting the requests of the running load
+     */
+    private FetchCancellation mCancellation;
+
+    /**
+     * Time the last background load ended, or 0 if it was delivered or metrics are off
+     */
+    private volatile long mLoadedNanos;
+
+    /**
+     * Handler used to deliver partial results on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     /**
      * Constructs a new {@link MarvelNewsLoader}.
      *
-     * @param context of the activity
-     * @param url     to load data from
+     * @param context     of the activity
+     * @param urls        of the topics to load data from, without "from-date" and "order-by"
+     *                    parameters
+     * @param minDate     earliest publication date of the news (yyyy-MM-dd)
+     * @param orderBy     order of the news, "newest", "oldest" or "relevance"
+     * @param pageSize    number of results requested per page
+     * @param concurrency number of requests in flight at the same time, all topics included
+     * @param offline     true to only read the stored news
      */
-    public MarvelNewsLoader(Context context, String url) {
+    public MarvelNewsLoader(Context context, List<String> urls, String minDate, String orderBy,
+                            int pageSize, int concurrency, boolean offline) {
         super(context);
-        mUrl = url;
+        mUrls = urls;
+        mMinDate = minDate;
+        mOrderBy = orderBy;
+        mPageSize = pageSize;
+        mConcurrency = concurrency;
+        mOffline = offline;
+    }
+
+    /**
+     * Returns the earliest publication date (yyyy-MM-dd) of the loaded news.
+     */
+    public String getMinDate() {
+        return mMinDate;
+    }
+
+    /**
+     * Returns the order of the loaded news, "newest", "oldest" or "relevance".
+     */
+    public String getOrderBy() {
+        return mOrderBy;
+    }
+
+    /**
+     * Returns the search index of the delivered news.
+     */
+    public MarvelNewsSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
+    /**
+     * Returns true if the delivered news are a partial result, shown while the load is still
+     * running.
+     */
+    public boolean isPartial() {
+        return mPartial;
+    }
+
+    /**
+     * Returns true if the delivered news are the local ones, the last load having failed to
+     * bring them up to date.
+     */
+    public boolean isStale() {
+        return mStale;
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        // Deliver the retained news right away, for example after a configuration change.
+        if (mMarvelNewss != null) {
+            deliverResult(mMarvelNewss, mPartial);
+        }
+
+        // Only load again if there are no news yet or they have been marked stale.
+        if (takeContentChanged() || mMarvelNewss == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // Abort the running load. Its news are incomplete, so load them again on restart.
+        if (cancelLoad()) {
+            onContentChanged();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        mMarvelNewss = null;
+    }
+
+    @Override
+    public void deliverResult(List<MarvelNews> marvelNewss) {
+        deliverResult(marvelNewss, false);
+    }
+
+    /**
+     * Delivers news, partial while the load is still running.
+     */
+    private void deliverResult(List<MarvelNews> marvelNewss, boolean partial) {
+        if (isReset()) {
+            // The loader has been reset, ignore the result.
+            return;
+        }
+        mMarvelNewss = marvelNewss;
+        mPartial = partial;
+        long loadedNanos = mLoadedNanos;
+        if (loadedNanos != 0) {
+            mLoadedNanos = 0;
+            PipelineMetrics.stop(PipelineMetrics.Stage.DELIVERY, loadedNanos);
+        }
+        if (isStarted()) {
+            super.deliverResult(marvelNewss);
+        }
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        // Disconnect the in-flight requests, which aborts their reads.
+        synchronized (this) {
+            if (mCancellation != null) {
+                mCancellation.cancel();
+            }
+        }
     }
 
     /**
@@ -37,12 +219,130 @@ public class MarvelNewsLoader extends AsyncTaskLoader<List<MarvelNews>> {
      */
     @Override
     public List<MarvelNews> loadInBackground() {
-        if (mUrl == null) {
+        long loadStart = PipelineMetrics.start();
+        List<MarvelNews> marvelNewss = loadNews();
+        // Index the news here, off the main thread, so the search box only has to query.
+        mSearchIndex.update(marvelNewss != null
+                ? marvelNewss : Collections.<MarvelNews>emptyList());
+        PipelineMetrics.stop(PipelineMetrics.Stage.LOAD, loadStart);
+        // The handoff to onLoadFinished is measured from here
+        mLoadedNanos = PipelineMetrics.start();
+        return marvelNewss;
+    }
+
+    private List<MarvelNews> loadNews() {
+        mStale = false;
+        if (mUrls == null || mUrls.isEmpty()) {
             return null;
         }
 
-        // Perform the network request, parse the response, and extract a list of marvelNews.
-        List<MarvelNews> marvelNewss = QueryUtils.fetchMarvelNewsData(mUrl);
-        return marvelNewss;
+        FetchCancellation cancellation = new FetchCancellation();
+        synchronized (this) {
+            mCancellation = cancellation;
+        }
+
+        MarvelNewsArchive archive = MarvelNewsArchive.getInstance(getContext());
+        boolean oldestFirst = "oldest".equals(mOrderBy);
+        boolean byRelevance = !MarvelNewsSync.isLocallySortable(mOrderBy);
+
+        // One sync per topic. They share a bounded number of requests in flight.
+        Semaphore requestPermits = new Semaphore(mConcurrency);
+        List<MarvelNewsSync> syncs = new ArrayList<>(mUrls.size());
+        List<String> queryKeys = new ArrayList<>(mUrls.size());
+        boolean recent = true;
+        for (String url : mUrls) {
+            MarvelNewsSync sync = new MarvelNewsSync(archive, url, mMinDate, mOrderBy, mPageSize,
+                    cancellation, requestPermits);
+            syncs.add(sync);
+            queryKeys.add(sync.getQueryKey());
+            recent &= sync.isRecent();
+        }
+
+        // Show the stored news right away, they are replaced once the sync is done.
+        List<MarvelNews> stored = archive.query(mMinDate, oldestFirst, queryKeys);
+        if (mOffline) {
+            return stored;
+        }
+
+        if (!stored.isEmpty() && recent) {
+            // The news have just been synced, most likely in the background, don't ask again.
+            return stored;
+        }
+        boolean showingStored = !stored.isEmpty();
+        // Most recent news on the device, shown if the sync fails
+        List<MarvelNews> local = stored;
+        if (showingStored) {
+            deliverPartialResult(stored);
+        }
+
+        // Without stored news, show the cached pages right away, even if they are being
+        // revalidated.
+        if (!showingStored) {
+            List<List<MarvelNews>> cachedTopics = new ArrayList<>(syncs.size());
+            for (MarvelNewsSync sync : syncs) {
+                List<MarvelNews> cachedTopic = sync.loadCached();
+                if (cachedTopic != null) {
+                    cachedTopics.add(cachedTopic);
+                }
+            }
+            List<MarvelNews> cached = MarvelNewsFanOut.merge(cachedTopics, mOrderBy);
+            showingStored = !cached.isEmpty();
+            if (showingStored) {
+                local = cached;
+                deliverPartialResult(cached);
+            }
+        }
+
+        // Sync every topic at the same time, showing the merged news while the others load.
+        // If news are already shown, keep them until the sync is complete.
+        final boolean deliverPages = !showingStored;
+        List<MarvelNewsFanOut.Source> sources = new ArrayList<>(syncs.size());
+        for (final MarvelNewsSync sync : syncs) {
+            sources.add(new MarvelNewsFanOut.Source() {
+                @Override
+                public List<MarvelNews> load(MarvelNewsPager.Listener listener) {
+                    return sync.run(listener);
+                }
+            });
+        }
+        List<MarvelNews> fetched = new MarvelNewsFanOut(sources, mOrderBy).load(
+                new MarvelNewsFanOut.Listener() {
+                    @Override
+                    public void onMerged(List<MarvelNews> marvelNewss) {
+                        if (deliverPages) {
+                            deliverPartialResult(marvelNewss);
+                        }
+                    }
+                });
+        if (cancellation.isCanceled()) {
+            // The load was canceled, its result is dropped anyway.
+            return null;
+        }
+        if (fetched == null) {
+            // The sync failed, most likely throttled or cut off: keep showing the local news,
+            // marked as stale, rather than nothing.
+            if (local.isEmpty()) {
+                return null;
+            }
+            mStale = true;
+            return local;
+        }
+        return byRelevance ? fetched : archive.query(mMinDate, oldestFirst, queryKeys);
+    }
+
+    /**
+     * Indexes results and delivers them on the main thread while the load is still running.
+     */
+    private void deliverPartialResult(final List<MarvelNews> marvelNewss) {
+        mSearchIndex.update(marvelNewss);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isStarted() && !isAbandoned()) {
+                    // The retained news are updated as well, they are shown again on restart.
+                    deliverResult(marvelNewss, true);
+                }
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,536 @@
+package com.example.android.marvelnews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * On-device inverted index over the titles, authors and sections of a list of news, so the
+ * list can be filtered as the user types without any network request.
+ * <p>
+ * Every word of a news points to the news it appears in. The words are kept sorted, so all the
+ * words starting with a typed prefix are one range of the index. A query matches the news
+ * containing a word starting with each of its words. Results are ranked by where the words
+ * were found (title first, then author, then section), whole words before prefixes, and then
+ * newest first.
+ * <p>
+ * The index holds the news of one list, the last one given to {@link #update(List)}. News are
+ * identified by their website URL, so indexing a list again is cheap: only the news new to
+ * the list, or whose words changed, are indexed, and the news that left it are no longer
+ * returned. Once more news have left than are left, the index is rebuilt from the list.
+ * <p>
+ * Searching never waits for indexing. The news indexed by an update are posted to a new
+ * segment of postings, which is never modified once published, and every update ends by
+ * publishing an immutable {@link Snapshot} of the news and segments, which searches read.
+ * Segments of similar sizes are merged, so there are only a few of them to look words up in.
+ */
+public final class MarvelNewsSearchIndex {
+
+    /**
+     * Weight of a word found in the title. The weights are distinct bits, so the fields a word
+     * was found in add up to their total weight.
+     */
+    private static final int TITLE_WEIGHT = 4;
+
+    /**
+     * Weight of a word found in the author line
+     */
+    private static final int AUTHOR_WEIGHT = 2;
+
+    /**
+     * Weight of a word found in the section name
+     */
+    private static final int SECTION_WEIGHT = 1;
+
+    /**
+     * Prefix of the author lines built by the parser, which isn't worth indexing
+     */
+    private static final String AUTHOR_PREFIX = "Author: ";
+
+    /**
+     * Layout of the ranking keys: score, publication date in seconds, then news ID
+     */
+    private static final int ID_BITS = 22;
+    private static final int SECONDS_BITS = 32;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final long MAX_SCORE = (1L << (63 - SECONDS_BITS - ID_BITS)) - 1;
+
+    /**
+     * Indexed news, their position is their ID in the postings. The news that left the list
+     * are null.
+     */
+    private final List<MarvelNews> mNews = new ArrayList<>();
+
+    /**
+     * Publication date of each news in seconds, as an unsigned int, used to rank the newest first
+     */
+    private int[] mSeconds = new int[64];
+
+    /**
+     * ID of each news of the list, by website URL
+     */
+    private UrlTable mIdsByUrl = new UrlTable(0);
+
+    /**
+     * IDs of the news of the list, the other IDs are left in the postings until the next
+     * rebuild
+     */
+    private BitSet mLive = new BitSet();
+
+    /**
+     * Published segments, the oldest and largest first
+     */
+    private final List<Segment> mSegments = new ArrayList<>();
+
+    /**
+     * Postings of the news indexed by the running update, published as a new segment
+     */
+    private TreeMap<String, Postings> mPending = new TreeMap<>();
+
+    /**
+     * Number of news in {@link #mPending}
+     */
+    private int mPendingCount;
+
+    /**
+     * State searched, replaced by every update
+     */
+    private volatile Snapshot mSnapshot = new Snapshot(new MarvelNews[0], new int[0],
+            new BitSet(), new Segment[0], 0);
+
+    /**
+     * Guards the scratch arrays below, so searches only ever wait for other searches
+     */
+    private final Object mSearchLock = new Object();
+
+    /**
+     * Number of query words matched by each news during a search, reused across searches
+     */
+    private int[] mMatchedWords = new int[64];
+
+    /**
+     * Score of each news during a search, reused across searches
+     */
+    private int[] mScores = new int[64];
+
+    /**
+     * Constructs an empty index. Each {@link MarvelNewsLoader} keeps the index of the list it
+     * delivers.
+     */
+    MarvelNewsSearchIndex() {
+    }
+
+    /**
+     * Makes the index hold the given news, and only them. Updates run one at a time, searches
+     * keep reading the previous news until the update is published.
+     */
+    public synchronized void update(List<MarvelNews> marvelNewss) {
+        BitSet live = new BitSet(mNews.size());
+        UrlTable idsByUrl = new UrlTable(marvelNewss.size());
+        for (MarvelNews marvelNews : marvelNewss) {
+            String url = marvelNews.getUrl();
+            if (url == null) {
+                continue;
+            }
+            int hash = url.hashCode();
+            if (idsByUrl.get(mNews, marvelNews, hash) >= 0) {
+                // A news repeated in the list is indexed once
+                continue;
+            }
+            int id = mIdsByUrl.get(mNews, marvelNews, hash);
+            // Rows of a store are compared on their columns, without decoding their titles
+            if (id >= 0 && MarvelNewsStore.sameWords(mNews.get(id), marvelNews)) {
+                // Keep the latest copy, the stored news may be replaced by fresher ones
+                mNews.set(id, marvelNews);
+            } else {
+                // A news whose words changed is indexed again, its previous ID is dropped below
+                id = add(marvelNews);
+            }
+            idsByUrl.put(hash, id);
+            live.set(id);
+        }
+
+        // Forget the news that left the list, so they don't hold on to their lists
+        mIdsByUrl = idsByUrl;
+        for (int id = live.nextClearBit(0); id < mNews.size(); id = live.nextClearBit(id + 1)) {
+            mNews.set(id, null);
+        }
+        mLive = live;
+
+        int liveCount = live.cardinality();
+        if (mNews.size() - liveCount > liveCount) {
+            rebuild();
+        } else {
+            seal();
+        }
+        publish();
+    }
+
+    /**
+     * Indexes the news of the list again from scratch, dropping the postings of the others.
+     */
+    private void rebuild() {
+        List<MarvelNews> marvelNewss = new ArrayList<>(mIdsByUrl.mSize);
+        for (int id = mLive.nextSetBit(0); id >= 0; id = mLive.nextSetBit(id + 1)) {
+            marvelNewss.add(mNews.get(id));
+        }
+        mNews.clear();
+        mIdsByUrl = new UrlTable(marvelNewss.size());
+        mSegments.clear();
+        mPending = new TreeMap<>();
+        mPendingCount = 0;
+        mLive = new BitSet(marvelNewss.size());
+        for (MarvelNews marvelNews : marvelNewss) {
+            int id = add(marvelNews);
+            mIdsByUrl.put(marvelNews.getUrl().hashCode(), id);
+            mLive.set(id);
+        }
+        seal();
+    }
+
+    /**
+     * Turns the pending postings into a segment, and merges the last segments while they have
+     * similar sizes, so each one is at least twice as large as the next.
+     */
+    private void seal() {
+        if (mPendingCount == 0) {
+            return;
+        }
+        mSegments.add(new Segment(mPending, mPendingCount));
+        mPending = new TreeMap<>();
+        mPendingCount = 0;
+        int count = mSegments.size();
+        while (count >= 2
+                && mSegments.get(count - 1).mCount * 2 >= mSegments.get(count - 2).mCount) {
+            Segment merged = Segment.merge(mSegments.get(count - 2), mSegments.get(count - 1));
+            mSegments.remove(--count);
+            mSegments.set(count - 1, merged);
+        }
+    }
+
+    /**
+     * Publishes a copy of the news and of the segments for the searches.
+     */
+    private void publish() {
+        mSnapshot = new Snapshot(
+                mNews.toArray(new MarvelNews[mNews.size()]),
+                Arrays.copyOf(mSeconds, mNews.size()),
+                (BitSet) mLive.clone(),
+                mSegments.toArray(new Segment[mSegments.size()]),
+                mIdsByUrl.mSize);
+    }
+
+    /**
+     * Posts the words of a news under a new ID, to the pending segment.
+     *
+     * @return the ID of the news
+     */
+    private int add(MarvelNews marvelNews) {
+        int id = mNews.size();
+        mNews.add(marvelNews);
+        if (id == mSeconds.length) {
+            mSeconds = Arrays.copyOf(mSeconds, id * 2);
+        }
+        // An unknown date is Long.MIN_VALUE, ranked as the oldest
+        mSeconds[id] = (int) Math.max(0, MarvelNewsStore.timeMillis(marvelNews) / 1000);
+
+        // A word found in several fields is posted once, with the weight of every field.
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        addWords(weights, marvelNews.getTitle(), TITLE_WEIGHT);
+        String author = marvelNews.getAuthor();
+        if (author != null && author.startsWith(AUTHOR_PREFIX)) {
+            author = author.substring(AUTHOR_PREFIX.length());
+        }
+        addWords(weights, author, AUTHOR_WEIGHT);
+        addWords(weights, marvelNews.getSectionName(), SECTION_WEIGHT);
+        for (Map.Entry<String, Integer> word : weights.entrySet()) {
+            Postings postings = mPending.get(word.getKey());
+            if (postings == null) {
+                postings = new Postings(2);
+                mPending.put(word.getKey(), postings);
+            }
+            postings.add(id, word.getValue());
+        }
+        mPendingCount++;
+        return id;
+    }
+
+    private static void addWords(Map<String, Integer> weights, String text, int weight) {
+        for (String word : tokenize(text)) {
+            Integer previous = weights.get(word);
+            weights.put(word, previous == null ? weight : previous | weight);
+        }
+    }
+
+    /**
+     * Returns the number of indexed news.
+     */
+    public int size() {
+        return mSnapshot.mSize;
+    }
+
+    /**
+     * Returns the indexed news matching every word of the query, best match first. The last
+     * word may be incomplete, every word matches the words it is a prefix of.
+     */
+    public List<MarvelNews> search(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Snapshot snapshot = mSnapshot;
+        synchronized (mSearchLock) {
+            return search(snapshot, words);
+        }
+    }
+
+    private List<MarvelNews> search(Snapshot snapshot, List<String> words) {
+        int count = snapshot.mNews.length;
+        if (mMatchedWords.length < count) {
+            mMatchedWords = new int[Math.max(count, mMatchedWords.length * 2)];
+            mScores = new int[mMatchedWords.length];
+        }
+
+        // News matching the first word are candidates, the next words can only keep them. The
+        // words of a news are all in the same segment.
+        int[] candidates = new int[0];
+        int candidateCount = 0;
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            for (Segment segment : snapshot.mSegments) {
+                SortedMap<String, Postings> range =
+                        segment.mPostings.subMap(word, word + Character.MAX_VALUE);
+                for (Map.Entry<String, Postings> entry : range.entrySet()) {
+                    // A whole word counts twice as much as a prefix
+                    int factor = entry.getKey().length() == word.length() ? 2 : 1;
+                    Postings postings = entry.getValue();
+                    for (int i = 0; i < postings.mSize; i++) {
+                        int id = postings.mIds[i];
+                        if (mMatchedWords[id] != w) {
+                            // Missed a previous word, or already matched this one by another word
+                            continue;
+                        }
+                        mMatchedWords[id] = w + 1;
+                        mScores[id] += postings.mFields[i] * factor;
+                        if (w == 0) {
+                            if (candidateCount == candidates.length) {
+                                candidates = Arrays.copyOf(candidates,
+                                        Math.max(16, candidateCount * 2));
+                            }
+                            candidates[candidateCount++] = id;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Rank with one primitive sort: each match is a key made of its score, publication
+        // date and ID, from the most to the least significant bits.
+        long[] keys = new long[candidateCount];
+        int matchCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates[i];
+            if (mMatchedWords[id] == words.size() && snapshot.mLive.get(id)) {
+                long score = Math.min(mScores[id], MAX_SCORE);
+                keys[matchCount++] = score << (SECONDS_BITS + ID_BITS)
+                        | (snapshot.mSeconds[id] & 0xFFFFFFFFL) << ID_BITS
+                        | id;
+            }
+        }
+        Arrays.sort(keys, 0, matchCount);
+
+        List<MarvelNews> results = new ArrayList<>(matchCount);
+        for (int i = matchCount - 1; i >= 0; i--) {
+            results.add(snapshot.mNews[(int) (keys[i] & ID_MASK)]);
+        }
+
+        // Reset the state of the touched news for the next search
+        for (int i = 0; i < candidateCount; i++) {
+            mMatchedWords[candidates[i]] = 0;
+            mScores[candidates[i]] = 0;
+        }
+        return results;
+    }
+    /**
+     * Splits a text into lower case words of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordChar = i < lowerCase.length()
+                    && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Immutable state of the index read by the searches.
+     */
+    private static final class Snapshot {
+        /**
+         * News by ID, null for the ones that left the list
+         */
+        final MarvelNews[] mNews;
+        final int[] mSeconds;
+        final BitSet mLive;
+        final Segment[] mSegments;
+
+        /**
+         * Number of news of the list
+         */
+        final int mSize;
+
+        Snapshot(MarvelNews[] news, int[] seconds, BitSet live, Segment[] segments, int size) {
+            mNews = news;
+            mSeconds = seconds;
+            mLive = live;
+            mSegments = segments;
+            mSize = size;
+        }
+    }
+
+    /**
+     * IDs of news by website URL, in an open addressing table. Only the hash of each URL is kept,
+     * a URL is compared with the one of the indexed news, so the index doesn't keep a copy of
+     * the URL of every row of a {@link MarvelNewsStore}.
+     */
+    private static final class UrlTable {
+        /**
+         * ID in each slot, -1 for an empty one, and the hash of its URL
+         */
+        final int[] mIds;
+        final int[] mHashes;
+        int mSize;
+
+        /**
+         * Constructs a table holding up to the given number of IDs.
+         */
+        UrlTable(int capacity) {
+            // Keep the table at most half full
+            int slots = Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) << 1;
+            mIds = new int[slots];
+            mHashes = new int[slots];
+            Arrays.fill(mIds, -1);
+        }
+
+        /**
+         * Returns the ID of the news of {@code news} with the same URL as the given one, whose
+         * URL has the given hash, or -1 if there is none.
+         */
+        int get(List<MarvelNews> news, MarvelNews marvelNews, int hash) {
+            int mask = mIds.length - 1;
+            for (int slot = mix(hash) & mask; mIds[slot] >= 0; slot = (slot + 1) & mask) {
+                if (mHashes[slot] == hash
+                        && MarvelNewsStore.sameUrl(news.get(mIds[slot]), marvelNews)) {
+                    return mIds[slot];
+                }
+            }
+            return -1;
+        }
+
+        void put(int hash, int id) {
+            int mask = mIds.length - 1;
+            int slot = mix(hash) & mask;
+            while (mIds[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            mIds[slot] = id;
+            mHashes[slot] = hash;
+            mSize++;
+        }
+
+        /**
+         * Spreads the high bits of a String hash over the low bits picking the slot
+         */
+        private static int mix(int hash) {
+            return (hash ^ (hash >>> 16)) * 0x45d9f3b;
+        }
+    }
+
+    /**
+     * Postings of the words of a range of news IDs, never modified once created.
+     */
+    private static final class Segment {
+        /**
+         * Postings of every word, sorted by word for prefix lookups
+         */
+        final TreeMap<String, Postings> mPostings;
+
+        /**
+         * Number of news posted
+         */
+        final int mCount;
+
+        Segment(TreeMap<String, Postings> postings, int count) {
+            mPostings = postings;
+            mCount = count;
+        }
+
+        /**
+         * Returns a segment with the postings of both, the IDs of the second following those
+         * of the first. The postings of the given segments are shared, not modified.
+         */
+        static Segment merge(Segment first, Segment second) {
+            TreeMap<String, Postings> postings = new TreeMap<>(first.mPostings);
+            for (Map.Entry<String, Postings> entry : second.mPostings.entrySet()) {
+                Postings previous = postings.get(entry.getKey());
+                postings.put(entry.getKey(), previous == null
+                        ? entry.getValue() : Postings.concat(previous, entry.getValue()));
+            }
+            return new Segment(postings, first.mCount + second.mCount);
+        }
+    }
+
+    /**
+     * IDs of the news containing a word, in the order they were added, with the fields the
+     * word was found in.
+     */
+    private static final class Postings {
+        int[] mIds;
+        byte[] mFields;
+        int mSize;
+
+        Postings(int capacity) {
+            mIds = new int[capacity];
+            mFields = new byte[capacity];
+        }
+
+        static Postings concat(Postings first, Postings second) {
+            Postings postings = new Postings(first.mSize + second.mSize);
+            System.arraycopy(first.mIds, 0, postings.mIds, 0, first.mSize);
+            System.arraycopy(second.mIds, 0, postings.mIds, first.mSize, second.mSize);
+            System.arraycopy(first.mFields, 0, postings.mFields, 0, first.mSize);
+            System.arraycopy(second.mFields, 0, postings.mFields, first.mSize, second.mSize);
+            postings.mSize = postings.mIds.length;
+            return postings;
+        }
+
+        void add(int id, int fields) {
+            if (mSize == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+                mFields = Arrays.copyOf(mFields, mSize * 2);
+            }
+            mIds[mSize] = id;
+            mFields[mSize] = (byte) fields;
+            mSize++;
+        }
+    }
+}
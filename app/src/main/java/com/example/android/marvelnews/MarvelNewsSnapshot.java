@@ -0,0 +1,178 @@
+package com.example.android.marvelnews;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Binary snapshot of the last list shown, read back on a cold start so the list shows in the
+ * first frame, before the archive or the network have answered.
+ * <p>
+ * The file starts with a magic number and a format version, followed by the key of the search
+ * the list answers and the number of news. Each news is then its publication date in
+ * milliseconds and its author, title, section, website URL and thumbnail URL, each string as
+ * its UTF-8 length followed by its bytes, -1 standing for null.
+ * <p>
+ * The snapshot is written to a temporary file which is then renamed over the previous one, so a
+ * reader only ever sees a complete snapshot. It is read through a memory-mapped buffer, without
+ * any copy into a stream buffer, into a {@link MarvelNewsStore}. A snapshot of another format
+ * version, of another search, or that doesn't parse is ignored.
+ */
+public final class MarvelNewsSnapshot {
+
+    /**
+     * "MNSS"
+     */
+    private static final int MAGIC = 0x4D4E5353;
+
+    /**
+     * Version of the file format, to increment whenever it changes
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Value of a publication date that is unknown
+     */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * Bytes taken by a news whose strings are all null
+     */
+    private static final int MIN_RECORD_BYTES = 8 + 5 * 4;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private MarvelNewsSnapshot() {
+    }
+
+    /**
+     * Replaces the snapshot in the file with the given news.
+     *
+     * @param file        of the snapshot
+     * @param searchKey   identifies the search the news answer
+     * @param marvelNewss to write, in the order of the list
+     * @throws IOException if the snapshot can't be written, the previous one is then kept
+     */
+    public static void write(File file, String searchKey, List<MarvelNews> marvelNewss)
+            throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, searchKey);
+            out.writeInt(marvelNewss.size());
+            for (int i = 0; i < marvelNewss.size(); i++) {
+                MarvelNews marvelNews = marvelNewss.get(i);
+                Date time = marvelNews.getTime();
+                out.writeLong(time != null ? time.getTime() : NO_TIME);
+                writeString(out, marvelNews.getAuthor());
+                writeString(out, marvelNews.getTitle());
+                writeString(out, marvelNews.getSectionName());
+                writeString(out, marvelNews.getUrl());
+                writeString(out, marvelNews.getThumbnailUrl());
+            }
+            out.flush();
+            // Make sure the bytes are on disk before the rename makes them the snapshot
+            fileOut.getFD().sync();
+            written = true;
+        } finally {
+            fileOut.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Can't rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads the news of the snapshot in the file.
+     *
+     * @param file      of the snapshot
+     * @param searchKey identifies the search the news must answer
+     * @return the news, or null if there is no readable snapshot of the search
+     */
+    public static List<MarvelNews> read(File file, String searchKey) {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !searchKey.equals(readString(buffer))) {
+                return null;
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / MIN_RECORD_BYTES) {
+                return null;
+            }
+            MarvelNewsStore store = new MarvelNewsStore(count);
+            for (int i = 0; i < count; i++) {
+                long time = buffer.getLong();
+                String author = readString(buffer);
+                String title = readString(buffer);
+                String sectionName = readString(buffer);
+                String url = readString(buffer);
+                String thumbnailUrl = readString(buffer);
+                store.add(author, title, sectionName, time, url, thumbnailUrl);
+            }
+            return store.asList();
+        } catch (IOException e) {
+            return null;
+        } catch (BufferUnderflowException e) {
+            // Truncated or written by a broken version
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    // The snapshot has been read already
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.android.marvelnews;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Compact, append-only store of many {@link MarvelNews}, kept in columns instead of one object
+ * per news.
+ * <p>
+ * A handful of sections and authors is shared by thousands of news, so they are kept once in
+ * dictionaries and each row only holds their index. The same goes for the display date and
+ * time, which only take a few thousand distinct values. Publication dates are kept as
+ * milliseconds in a {@code long[]}, and titles, URLs and thumbnail URLs as UTF-8 bytes packed
+ * in one array per column. Rows are read through {@link Row} accessors, which are
+ * {@link MarvelNews} themselves so the rest of the app doesn't have to know about the store.
+ * <p>
+ * A row is created the first time it is read and then kept, so reading it again doesn't
+ * allocate, but it holds nothing but its position: its strings are decoded from the columns
+ * each time they are read. Comparing every news of a list, as the adapter and the search index
+ * do on each new list, goes through {@link #sameUrl} and {@link #sameContents}, which compare
+ * two rows on their columns without decoding anything.
+ */
+public final class MarvelNewsStore {
+
+    /**
+     * Value of a publication date that is unknown
+     */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final StringDictionary mSections = new StringDictionary();
+    private final StringDictionary mAuthors = new StringDictionary();
+    private final StringDictionary mDisplayDates = new StringDictionary();
+    private final StringDictionary mDisplayTimes = new StringDictionary();
+    private final PackedStrings mTitles;
+    private final PackedStrings mUrls;
+    private final PackedStrings mThumbnailUrls;
+
+    private int[] mSectionIds;
+    private int[] mAuthorIds;
+    private int[] mDisplayDateIds;
+    private int[] mDisplayTimeIds;
+    private long[] mTimes;
+
+    /**
+     * Rows read so far, null for the others
+     */
+    private Row[] mRows;
+
+    private int mSize;
+
+    /**
+     * Constructs a new empty {@link MarvelNewsStore}.
+     *
+     * @param initialCapacity number of news the store holds before growing
+     */
+    public MarvelNewsStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        mSectionIds = new int[capacity];
+        mAuthorIds = new int[capacity];
+        mDisplayDateIds = new int[capacity];
+        mDisplayTimeIds = new int[capacity];
+        mTimes = new long[capacity];
+        mRows = new Row[capacity];
+        mTitles = new PackedStrings(capacity);
+        mUrls = new PackedStrings(capacity);
+        mThumbnailUrls = new PackedStrings(capacity);
+    }
+
+    /**
+     * Returns a store holding the given news, in the same order.
+     */
+    public static MarvelNewsStore of(List<MarvelNews> marvelNewss) {
+        MarvelNewsStore store = new MarvelNewsStore(marvelNewss.size());
+        for (MarvelNews marvelNews : marvelNewss) {
+            store.add(marvelNews);
+        }
+        return store;
+    }
+
+    /**
+     * Appends a news to the store.
+     */
+    public void add(MarvelNews marvelNews) {
+        Date time = marvelNews.getTime();
+        add(marvelNews.getAuthor(), marvelNews.getTitle(), marvelNews.getSectionName(),
+                time != null ? time.getTime() : NO_TIME, marvelNews.getDisplayDate(),
+                marvelNews.getDisplayTime(), marvelNews.getUrl(), marvelNews.getThumbnailUrl());
+    }
+
+    /**
+     * Appends a news to the store, formatting its publication date for display.
+     *
+     * @param time publication date in milliseconds, or {@link Long#MIN_VALUE} if unknown
+     */
+    public void add(String author, String title, String sectionName, long time, String url) {
+        add(author, title, sectionName, time, url, null);
+    }
+
+    /**
+     * Appends a news with a thumbnail to the store, formatting its publication date for display.
+     *
+     * @param time         publication date in milliseconds, or {@link Long#MIN_VALUE} if unknown
+     * @param thumbnailUrl URL of the thumbnail image, or null if the news has none
+     */
+    public void add(String author, String title, String sectionName, long time, String url,
+                    String thumbnailUrl) {
+        String displayDate = null;
+        String displayTime = null;
+        if (time != NO_TIME) {
+            Date date = new Date(time);
+            displayDate = MarvelNewsFormatter.formatDate(date);
+            displayTime = MarvelNewsFormatter.formatTime(date);
+        }
+        add(author, title, sectionName, time, displayDate, displayTime, url, thumbnailUrl);
+    }
+
+    private void add(String author, String title, String sectionName, long time,
+                     String displayDate, String displayTime, String url, String thumbnailUrl) {
+        if (mSize == mTimes.length) {
+            int capacity = mSize + (mSize >> 1);
+            mSectionIds = Arrays.copyOf(mSectionIds, capacity);
+            mAuthorIds = Arrays.copyOf(mAuthorIds, capacity);
+            mDisplayDateIds = Arrays.copyOf(mDisplayDateIds, capacity);
+            mDisplayTimeIds = Arrays.copyOf(mDisplayTimeIds, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mRows = Arrays.copyOf(mRows, capacity);
+        }
+        mSectionIds[mSize] = mSections.idOf(sectionName);
+        mAuthorIds[mSize] = mAuthors.idOf(author);
+        mDisplayDateIds[mSize] = mDisplayDates.idOf(displayDate);
+        mDisplayTimeIds[mSize] = mDisplayTimes.idOf(displayTime);
+        mTimes[mSize] = time;
+        mTitles.add(title);
+        mUrls.add(url);
+        mThumbnailUrls.add(thumbnailUrl);
+        mSize++;
+    }
+
+    /**
+     * Returns the number of news in the store.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the accessor of the news at the given position, the same one every time.
+     */
+    public Row get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+        }
+        // The list is compared on a background thread and bound on the main one, two threads
+        // creating the same row only waste one of them
+        Row row = mRows[index];
+        if (row == null) {
+            row = new Row(index);
+            mRows[index] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Returns the publication date of the news at the given position in milliseconds, or
+     * {@link Long#MIN_VALUE} if it is unknown. Unlike {@link Row#getTime()}, this doesn't
+     * create the row.
+     */
+    public long getTimeMillis(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * Returns the publication date of a news in milliseconds, or {@link Long#MIN_VALUE} if it is
+     * unknown. The date of a row is read from its column, without creating a {@link Date}.
+     */
+    public static long timeMillis(MarvelNews marvelNews) {
+        if (marvelNews instanceof Row) {
+            Row row = (Row) marvelNews;
+            return row.store().mTimes[row.mIndex];
+        }
+        Date time = marvelNews.getTime();
+        return time != null ? time.getTime() : NO_TIME;
+    }
+
+    /**
+     * Returns true if two news have the same website URL. Two rows are compared on their
+     * bytes, without decoding them.
+     */
+    public static boolean sameUrl(MarvelNews first, MarvelNews second) {
+        if (first instanceof Row && second instanceof Row) {
+            Row firstRow = (Row) first;
+            Row secondRow = (Row) second;
+            return firstRow.store().mUrls.equals(firstRow.mIndex,
+                    secondRow.store().mUrls, secondRow.mIndex);
+        }
+        return equal(first.getUrl(), second.getUrl());
+    }
+
+    /**
+     * Returns true if two news have the same title, author, section and publication date, the
+     * words of a news.
+     */
+    public static boolean sameWords(MarvelNews first, MarvelNews second) {
+        if (first instanceof Row && second instanceof Row) {
+            Row firstRow = (Row) first;
+            Row secondRow = (Row) second;
+            MarvelNewsStore firstStore = firstRow.store();
+            MarvelNewsStore secondStore = secondRow.store();
+            int i = firstRow.mIndex;
+            int j = secondRow.mIndex;
+            // Sections and authors are shared strings, comparing them doesn't decode anything
+            return firstStore.mTimes[i] == secondStore.mTimes[j]
+                    && equal(firstRow.getSectionName(), secondRow.getSectionName())
+                    && equal(firstRow.getAuthor(), secondRow.getAuthor())
+                    && firstStore.mTitles.equals(i, secondStore.mTitles, j);
+        }
+        return timeMillis(first) == timeMillis(second)
+                && equal(first.getSectionName(), second.getSectionName())
+                && equal(first.getAuthor(), second.getAuthor())
+                && equal(first.getTitle(), second.getTitle());
+    }
+
+    /**
+     * Returns true if two news show the same in the list: the same words and thumbnail.
+     */
+    public static boolean sameContents(MarvelNews first, MarvelNews second) {
+        if (!sameWords(first, second)) {
+            return false;
+        }
+        if (first instanceof Row && second instanceof Row) {
+            Row firstRow = (Row) first;
+            Row secondRow = (Row) second;
+            return firstRow.store().mThumbnailUrls.equals(firstRow.mIndex,
+                    secondRow.store().mThumbnailUrls, secondRow.mIndex);
+        }
+        return equal(first.getThumbnailUrl(), second.getThumbnailUrl());
+    }
+
+    private static boolean equal(Object first, Object second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Returns a read-only view of the store as a list of news. Its elements are created the
+     * first time they are read, so they are only as many as the rows actually read.
+     */
+    public List<MarvelNews> asList() {
+        return new RowList();
+    }
+
+    /**
+     * Read-only {@link MarvelNews} backed by a row of the store. Sections, authors and display
+     * dates are read from the shared dictionaries, the other values are decoded from their
+     * columns every time they are read.
+     */
+    public final class Row extends MarvelNews {
+
+        private final int mIndex;
+
+        Row(int index) {
+            mIndex = index;
+        }
+
+        private MarvelNewsStore store() {
+            return MarvelNewsStore.this;
+        }
+
+        @Override
+        public String getAuthor() {
+            return mAuthors.get(mAuthorIds[mIndex]);
+        }
+
+        @Override
+        public String getTitle() {
+            return mTitles.get(mIndex);
+        }
+
+        @Override
+        public String getSectionName() {
+            return mSections.get(mSectionIds[mIndex]);
+        }
+
+        /**
+         * Returns the publication date, or null if it is unknown.
+         */
+        @Override
+        public Date getTime() {
+            long time = mTimes[mIndex];
+            return time != NO_TIME ? new Date(time) : null;
+        }
+
+        @Override
+        public String getUrl() {
+            return mUrls.get(mIndex);
+        }
+
+        @Override
+        public String getThumbnailUrl() {
+            return mThumbnailUrls.get(mIndex);
+        }
+
+        @Override
+        public String getDisplayDate() {
+            return mDisplayDates.get(mDisplayDateIds[mIndex]);
+        }
+
+        @Override
+        public String getDisplayTime() {
+            return mDisplayTimes.get(mDisplayTimeIds[mIndex]);
+        }
+    }
+
+    private final class RowList extends AbstractList<MarvelNews> implements RandomAccess {
+
+        @Override
+        public MarvelNews get(int index) {
+            return MarvelNewsStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+    /**
+     * Keeps each distinct value once and identifies it by its index. Null is -1.
+     */
+    private static final class StringDictionary {
+        private final List<String> mValues = new ArrayList<>();
+        private final Map<String, Integer> mIds = new HashMap<>();
+
+        int idOf(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = mIds.get(value);
+            if (id == null) {
+                id = mValues.size();
+                mValues.add(value);
+                mIds.put(value, id);
+            }
+            return id;
+        }
+
+        String get(int id) {
+            return id >= 0 ? mValues.get(id) : null;
+        }
+    }
+
+    /**
+     * Keeps strings as UTF-8 bytes one after the other in a single array.
+     */
+    private static final class PackedStrings {
+        private byte[] mBytes;
+        private int[] mEnds;
+        private final BitSet mNulls = new BitSet();
+        private int mSize;
+        private int mLength;
+
+        PackedStrings(int capacity) {
+            mBytes = new byte[capacity * 32];
+            mEnds = new int[capacity];
+        }
+
+        void add(String value) {
+            if (mSize == mEnds.length) {
+                mEnds = Arrays.copyOf(mEnds, mSize + (mSize >> 1));
+            }
+            if (value == null) {
+                mNulls.set(mSize);
+            } else {
+                byte[] bytes = value.getBytes(UTF_8);
+                if (mLength + bytes.length > mBytes.length) {
+                    mBytes = Arrays.copyOf(mBytes,
+                            Math.max(mLength + bytes.length, mBytes.length + (mBytes.length >> 1)));
+                }
+                System.arraycopy(bytes, 0, mBytes, mLength, bytes.length);
+                mLength += bytes.length;
+            }
+            mEnds[mSize++] = mLength;
+        }
+
+        String get(int index) {
+            if (mNulls.get(index)) {
+                return null;
+            }
+            int start = index > 0 ? mEnds[index - 1] : 0;
+            return new String(mBytes, start, mEnds[index] - start, UTF_8);
+        }
+
+        /**
+         * Returns true if the string at the given position is the same as the one at
+         * {@code otherIndex} in {@code other}, comparing their bytes.
+         */
+        boolean equals(int index, PackedStrings other, int otherIndex) {
+            boolean isNull = mNulls.get(index);
+            if (isNull || other.mNulls.get(otherIndex)) {
+                return isNull && other.mNulls.get(otherIndex);
+            }
+            int start = index > 0 ? mEnds[index - 1] : 0;
+            int otherStart = otherIndex > 0 ? other.mEnds[otherIndex - 1] : 0;
+            int length = mEnds[index] - start;
+            if (length != other.mEnds[otherIndex] - otherStart) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (mBytes[start + i] != other.mBytes[otherStart + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.android.marvelnews;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the {@link MarvelNewsArchive} up to date with one Guardian search.
+ * <p>
+ * Only the news published since the watermark of the search are requested, then they are
+ * stored and the watermark moves forward. If the minimum date is earlier than the first day the
+ * archive covers, only the days before it are requested on top of that, see
+ * {@link QuerySubsumption}. News ordered by relevance can't be sorted locally, so that order
+ * always requests every news since the minimum date.
+ */
+public final class MarvelNewsSync {
+
+    /**
+     * Time after a completed sync during which the stored news are shown without any request.
+     * It matches the period of {@link MarvelNewsSyncJobService}, so opening the app usually
+     * finds news synced in the background.
+     */
+    public static final long FRESH_MILLIS = TimeUnit.HOURS.toMillis(3);
+
+    private final MarvelNewsArchive mArchive;
+    private final String mOrderBy;
+    private final String mQueryKey;
+    private final String mFromDate;
+    private final MarvelNewsPager mPager;
+
+    /**
+     * Pager requesting the days before the ones the archive covers, or null if it covers them
+     */
+    private final MarvelNewsPager mGapPager;
+
+    /**
+     * First day the archive covers once the sync is complete
+     */
+    private final String mCoveredFrom;
+
+    /**
+     * Constructs a new {@link MarvelNewsSync}.
+     *
+     * @param archive      to bring up to date
+     * @param url          of the search, without "from-date" and "order-by" parameters
+     * @param minDate      earliest publication date of the news (yyyy-MM-dd)
+     * @param orderBy      order of the news, "newest", "oldest" or "relevance"
+     * @param pageSize     number of results requested per page
+     * @param cancellation token aborting the requests, may be null
+     */
+    public MarvelNewsSync(MarvelNewsArchive archive, String url, String minDate, String orderBy,
+                          int pageSize, FetchCancellation cancellation) {
+        this(archive, url, minDate, orderBy, pageSize, cancellation, null);
+    }
+
+    /**
+     * Constructs a new {@link MarvelNewsSync} whose requests hold permits shared with other
+     * syncs, so that syncs of several topics have a bounded number of requests in flight.
+     *
+     * @param archive        to bring up to date
+     * @param url            of the search, without "from-date" and "order-by" parameters
+     * @param minDate        earliest publication date of the news (yyyy-MM-dd)
+     * @param orderBy        order of the news, "newest", "oldest" or "relevance"
+     * @param pageSize       number of results requested per page
+     * @param cancellation   token aborting the requests, may be null
+     * @param requestPermits permits shared with other syncs, may be null
+     */
+    public MarvelNewsSync(MarvelNewsArchive archive, String url, String minDate, String orderBy,
+                          int pageSize, FetchCancellation cancellation, Semaphore requestPermits) {
+        mArchive = archive;
+        mOrderBy = orderBy;
+        mQueryKey = MarvelNewsArchive.queryKey(url);
+
+        // If the archive covers the later days of the search, only the earlier ones are missing
+        QuerySubsumption.Plan plan = QuerySubsumption.plan(archive.getCoveredFrom(mQueryKey),
+                orderBy, minDate, orderBy);
+        if (plan.gapFromDate != null) {
+            mGapPager = new MarvelNewsPager(requestUrl(url, orderBy, plan.gapFromDate)
+                    + "&to-date=" + plan.gapToDate, pageSize, MarvelNewsPager.DEFAULT_CONCURRENCY,
+                    cancellation, requestPermits);
+            mFromDate = archive.syncFromDate(mQueryKey, plan.gapToDate);
+            mCoveredFrom = plan.gapFromDate;
+        } else {
+            mGapPager = null;
+            mFromDate = isLocallySortable(orderBy)
+                    ? archive.syncFromDate(mQueryKey, minDate) : minDate;
+            mCoveredFrom = mFromDate;
+        }
+        mPager = new MarvelNewsPager(requestUrl(url, orderBy, mFromDate), pageSize,
+                MarvelNewsPager.DEFAULT_CONCURRENCY, cancellation, requestPermits);
+    }
+
+    /**
+     * Returns the URL of the search of the default topic, without "from-date" and "order-by"
+     * parameters.
+     */
+    public static String searchUrl() {
+        return searchUrl(MarvelNewsSearch.DEFAULT_TOPIC);
+    }
+
+    /**
+     * Returns the URLs of the searches of the given topics, in a stable order, or of the default
+     * topic if none is given. Only the fields displayed by the list are requested.
+     */
+    public static List<String> searchUrls(Collection<String> topics) {
+        return MarvelNewsSearch.searchUrls(topics, MarvelNewsAdapter.BOUND_FIELDS);
+    }
+
+    /**
+     * Returns the URL of the search of a topic, without "from-date" and "order-by" parameters.
+     * Only the fields displayed by the list are requested.
+     *
+     * @param topic "section" and "q" parameters of the search, i.e. "section=film&q=Marvel"
+     */
+    public static String searchUrl(String topic) {
+        return MarvelNewsSearch.searchUrl(topic, MarvelNewsAdapter.BOUND_FIELDS);
+    }
+
+    /**
+     * Returns true if news in the given order can be sorted from the archive.
+     */
+    public static boolean isLocallySortable(String orderBy) {
+        return QuerySubsumption.isDateOrder(orderBy);
+    }
+
+    private static String requestUrl(String url, String orderBy, String fromDate) {
+        return url + (url.indexOf('?') >= 0 ? "&" : "?")
+                + "order-by=" + orderBy + "&from-date=" + fromDate;
+    }
+
+    /**
+     * Reads the pages of the sync request from the response cache, without any network request.
+     *
+     * @return the cached results, or null if the first page isn't cached
+     */
+    public List<MarvelNews> loadCached() {
+        return mPager.loadCached();
+    }
+
+    /**
+     * Requests the news of the sync and stores them. This blocks, so call it on a background
+     * thread.
+     *
+     * @param listener receives the requested news in query order as their pages arrive, may be
+     *                 null
+     * @return the requested news in query order, or null if the request failed or was canceled
+     */
+    public List<MarvelNews> run(final MarvelNewsPager.Listener listener) {
+        final List<MarvelNews> gap = new ArrayList<>();
+        if (mGapPager != null) {
+            List<MarvelNews> gapNews = mGapPager.load(null);
+            if (gapNews == null) {
+                return null;
+            }
+            mArchive.upsert(gapNews, mQueryKey);
+            gap.addAll(gapNews);
+        }
+
+        // The days before the ones the archive covers come first from oldest to newest
+        final boolean gapFirst = "oldest".equals(mOrderBy);
+        MarvelNewsPager.Listener recentListener = listener;
+        if (listener != null && gapFirst && !gap.isEmpty()) {
+            recentListener = new MarvelNewsPager.Listener() {
+                @Override
+                public void onPagesLoaded(List<MarvelNews> marvelNewss, int loadedPages,
+                                          int totalPages) {
+                    listener.onPagesLoaded(concat(gap, marvelNewss), loadedPages, totalPages);
+                }
+            };
+        }
+        List<MarvelNews> recent = mPager.load(recentListener);
+        if (recent == null) {
+            return null;
+        }
+        mArchive.upsert(recent, mQueryKey);
+        List<MarvelNews> fetched = gapFirst ? concat(gap, recent) : concat(recent, gap);
+
+        // Only a sync that received every page moves the watermark forward.
+        if (mPager.isComplete() && (mGapPager == null || mGapPager.isComplete())) {
+            mArchive.recordSync(mQueryKey, mCoveredFrom, fetched);
+        }
+        return fetched;
+    }
+
+    private static List<MarvelNews> concat(List<MarvelNews> first, List<MarvelNews> second) {
+        List<MarvelNews> joined = new ArrayList<>(first.size() + second.size());
+        joined.addAll(first);
+        joined.addAll(second);
+        return joined;
+    }
+
+    /**
+     * Returns true if the archive has been synced recently enough to be shown without any
+     * request. News ordered by relevance are never read from the archive, so they never are,
+     * and neither are news reaching further back than the archive covers.
+     */
+    public boolean isRecent() {
+        long age = System.currentTimeMillis() - mArchive.getLastSyncTime(mQueryKey);
+        return isLocallySortable(mOrderBy) && mGapPager == null && age >= 0 && age < FRESH_MILLIS;
+    }
+
+    /**
+     * Returns the key of the synchronized search in the archive.
+     */
+    public String getQueryKey() {
+        return mQueryKey;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.android.marvelnews;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Syncs the {@link MarvelNewsArchive} in the background, so opening the app is usually a read of
+ * the stored news instead of a network request.
+ * <p>
+ * The sync only runs on an unmetered network while the device is charging and idle. Each run
+ * schedules the next one: after {@link MarvelNewsSync#FRESH_MILLIS} if it received new news,
+ * otherwise twice as late as the previous run, up to a day. Triggers arriving while a sync is
+ * running are merged into it. A sync is skipped while little of the daily quota of the API key
+ * is left, see {@link GuardianRateLimiter.Quota}.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class MarvelNewsSyncJobService extends JobService {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = MarvelNewsSyncJobService.class.getSimpleName();
+
+    /**
+     * ID of the sync job. There's only ever one, scheduling it again replaces it.
+     */
+    private static final int SYNC_JOB_ID = 1;
+
+    /**
+     * Longest delay between two syncs
+     */
+    private static final long MAX_PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Requests to the Guardian API kept for the user each day: the background sync doesn't
+     * run once the quota left is lower
+     */
+    private static final int USER_QUOTA_RESERVE = 100;
+
+    /**
+     * Name of the preferences file holding the state of the background sync
+     */
+    private static final String SYNC_PREFERENCES = "sync";
+
+    /**
+     * Number of consecutive syncs that received no new news
+     */
+    private static final String KEY_UNCHANGED_RUNS = "unchanged_runs";
+
+    /**
+     * True while a sync is running, in this or in another job
+     */
+    private static final AtomicBoolean sRunning = new AtomicBoolean();
+
+    /**
+     * Token aborting the requests of the running sync
+     */
+    private volatile FetchCancellation mCancellation;
+
+    /**
+     * Schedules the sync, unless it is already pending. Call it whenever the app starts.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == SYNC_JOB_ID) {
+                return;
+            }
+        }
+        schedule(context, periodMillis(context));
+    }
+
+    private static void schedule(Context context, long delayMillis) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        JobInfo job = new JobInfo.Builder(SYNC_JOB_ID,
+                new ComponentName(context, MarvelNewsSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setMinimumLatency(delayMillis)
+                .setPersisted(true)
+                .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(LOG_TAG, "Problem scheduling the background sync.");
+        }
+    }
+
+    /**
+     * Returns the delay before the next sync: the freshness of the news, doubled for every
+     * previous sync that received nothing new.
+     */
+    private static long periodMillis(Context context) {
+        int unchangedRuns = context.getSharedPreferences(SYNC_PREFERENCES, MODE_PRIVATE)
+                .getInt(KEY_UNCHANGED_RUNS, 0);
+        return Math.min(MAX_PERIOD_MILLIS, MarvelNewsSync.FRESH_MILLIS << Math.min(unchangedRuns, 8));
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        if (!sRunning.compareAndSet(false, true)) {
+            // A sync is already running, it schedules the next one when it's done.
+            return false;
+        }
+
+        final FetchCancellation cancellation = new FetchCancellation();
+        mCancellation = cancellation;
+        PriorityScheduler.Droppable task = new PriorityScheduler.Droppable() {
+            @Override
+            public void onDropped() {
+                // The lane is full, retry later
+                sRunning.set(false);
+                jobFinished(params, true);
+            }
+
+            @Override
+            public void run() {
+                try {
+                    if (sync(cancellation)) {
+                        // Finish before scheduling, scheduling the running job would stop it.
+                        jobFinished(params, false);
+                        schedule(MarvelNewsSyncJobService.this,
+                                periodMillis(MarvelNewsSyncJobService.this));
+                    }
+                } catch (RuntimeException e) {
+                    // A broken preference or a database error, the scheduler would only log it:
+                    // finish the job all the same so the syncs go on at the next period.
+                    Log.e(LOG_TAG, "Problem running the background sync.", e);
+                    jobFinished(params, true);
+                    schedule(MarvelNewsSyncJobService.this,
+                            periodMillis(MarvelNewsSyncJobService.this));
+                } finally {
+                    sRunning.set(false);
+                }
+            }
+        };
+        // Run in the sync lane, after whatever the user is waiting for
+        MarvelNewsApplication.getScheduler().submit(PriorityScheduler.Lane.SYNC, task);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints aren't met anymore, abort and retry at the next opportunity.
+        FetchCancellation cancellation = mCancellation;
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Syncs the news shown by the app and updates the period of the next sync. This blocks.
+     *
+     * @return false if the sync was canceled, so the job must not be finished
+     */
+    private boolean sync(FetchCancellation cancellation) {
+        // Leave what is left of the daily quota to the user, sync again at the next period
+        GuardianRateLimiter.Quota quota = MarvelNewsApplication.getRateLimiter().getQuota();
+        if (quota.remainingToday >= 0 && quota.remainingToday < USER_QUOTA_RESERVE) {
+            Log.i(LOG_TAG, "Background sync skipped to save the API quota, " + quota);
+            return true;
+        }
+
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String minDate = sharedPrefs.getString(
+                getString(R.string.settings_min_date_key),
+                getString(R.string.settings_min_date_default));
+        String orderBy = sharedPrefs.getString(
+                getString(R.string.settings_order_by_key),
+                getString(R.string.settings_order_by_default));
+        String pageSize = sharedPrefs.getString(
+                getString(R.string.settings_page_size_key),
+                getString(R.string.settings_page_size_default));
+        Set<String> topics = sharedPrefs.getStringSet(
+                getString(R.string.settings_topics_key),
+                new HashSet<>(Arrays.asList(getResources().getStringArray(
+                        R.array.settings_topics_default))));
+
+        // Sync every topic at the same time, with a bounded number of requests in flight
+        MarvelNewsArchive archive = MarvelNewsArchive.getInstance(this);
+        Semaphore requestPermits = new Semaphore(MarvelNewsFanOut.DEFAULT_CONCURRENCY);
+        List<MarvelNewsFanOut.Source> sources = new ArrayList<>();
+        List<String> queryKeys = new ArrayList<>();
+        for (String url : MarvelNewsSync.searchUrls(topics)) {
+            final MarvelNewsSync sync = new MarvelNewsSync(archive, url, minDate, orderBy,
+                    Integer.parseInt(pageSize), cancellation, requestPermits);
+            queryKeys.add(sync.getQueryKey());
+            sources.add(new MarvelNewsFanOut.Source() {
+                @Override
+                public List<MarvelNews> load(MarvelNewsPager.Listener listener) {
+                    return sync.run(listener);
+                }
+            });
+        }
+        long watermarksBefore = sumOfWatermarks(archive, queryKeys);
+        List<MarvelNews> fetched = new MarvelNewsFanOut(sources, orderBy).load(null);
+        if (cancellation.isCanceled()) {
+            return false;
+        }
+
+        // Back off while nothing new is published, come back to the base period otherwise.
+        // A failed sync keeps the current period.
+        SharedPreferences syncState = getSharedPreferences(SYNC_PREFERENCES, MODE_PRIVATE);
+        if (fetched != null) {
+            boolean changed = sumOfWatermarks(archive, queryKeys) != watermarksBefore;
+            int unchangedRuns = changed ? 0 : syncState.getInt(KEY_UNCHANGED_RUNS, 0) + 1;
+            syncState.edit().putInt(KEY_UNCHANGED_RUNS, unchangedRuns).apply();
+        } else {
+            Log.e(LOG_TAG, "Problem syncing the news in the background.");
+        }
+        return true;
+    }
+
+    /**
+     * Returns the sum of the watermarks of the queries, which changes whenever one of them moves.
+     */
+    private static long sumOfWatermarks(MarvelNewsArchive archive, List<String> queryKeys) {
+        long sum = 0;
+        for (String queryKey : queryKeys) {
+            sum += archive.getWatermark(queryKey);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.android.marvelnews;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the background work of the app on a few shared threads, the work the user waits for
+ * first.
+ * <p>
+ * Each task is queued in a lane: {@link Lane#VISIBLE} for what is on screen,
+ * {@link Lane#PREFETCH} for what may be soon, {@link Lane#SYNC} for the rest. Each lane has a
+ * bounded queue and a limit of tasks running at the same time. A free thread takes the task
+ * that ranks best among the lanes under their limit: a task ranks by its lane, and climbs one
+ * lane for every aging period it has waited, so no task waits behind the others forever. Within
+ * a lane, tasks run in the order they were queued. When a lane is full, its oldest task is
+ * dropped. A queued task can be moved to another lane, for example when the row it loads for
+ * scrolls into view.
+ * <p>
+ * The depth of each lane at every submit and the wait of every task are recorded in the
+ * {@link PipelineMetrics}. The scheduler doesn't depend on Android, it logs through
+ * java.util.logging like the core module.
+ */
+public final class PriorityScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(PriorityScheduler.class.getName());
+
+    /**
+     * Lanes of the work, the most urgent first.
+     */
+    public enum Lane {
+        VISIBLE(Thread.NORM_PRIORITY - 1, PipelineMetrics.Stage.VISIBLE_WAIT,
+                PipelineMetrics.Stage.VISIBLE_DEPTH),
+        PREFETCH(Thread.MIN_PRIORITY + 1, PipelineMetrics.Stage.PREFETCH_WAIT,
+                PipelineMetrics.Stage.PREFETCH_DEPTH),
+        SYNC(Thread.MIN_PRIORITY, PipelineMetrics.Stage.SYNC_WAIT,
+                PipelineMetrics.Stage.SYNC_DEPTH);
+
+        /**
+         * Priority of the thread while it runs a task of the lane. Even visible work stays
+         * below the main thread, which draws the list.
+         */
+        final int mThreadPriority;
+
+        final PipelineMetrics.Stage mWaitStage;
+        final PipelineMetrics.Stage mDepthStage;
+
+        Lane(int threadPriority, PipelineMetrics.Stage waitStage,
+             PipelineMetrics.Stage depthStage) {
+            mThreadPriority = threadPriority;
+            mWaitStage = waitStage;
+            mDepthStage = depthStage;
+        }
+    }
+
+    /**
+     * Work that wants to know when it is dropped from a full lane before it ran.
+     */
+    public interface Droppable extends Runnable {
+        /**
+         * Called on the thread that submitted the task which took its place.
+         */
+        void onDropped();
+    }
+
+    /**
+     * Handle of a submitted task.
+     */
+    public final class Task implements Comparable<Task> {
+
+        private final Runnable mRunnable;
+        private final long mSequence;
+        private final long mQueuedNanos;
+        private Lane mLane;
+        private boolean mQueued = true;
+
+        Task(Runnable runnable, Lane lane, long sequence, long queuedNanos) {
+            mRunnable = runnable;
+            mLane = lane;
+            mSequence = sequence;
+            mQueuedNanos = queuedNanos;
+        }
+
+        /**
+         * Returns the lane of the task.
+         */
+        public Lane getLane() {
+            synchronized (PriorityScheduler.this) {
+                return mLane;
+            }
+        }
+
+        /**
+         * Moves the task to another lane if it is still queued, keeping the time it has
+         * waited.
+         */
+        public void setLane(Lane lane) {
+            synchronized (PriorityScheduler.this) {
+                if (!mQueued || lane == mLane) {
+                    return;
+                }
+                mQueues.get(mLane).remove(this);
+                mLane = lane;
+                mQueues.get(lane).add(this);
+                PriorityScheduler.this.notifyAll();
+            }
+        }
+
+        /**
+         * Removes the task from its lane if it hasn't started yet.
+         *
+         * @return true if the task won't run
+         */
+        public boolean cancel() {
+            synchronized (PriorityScheduler.this) {
+                if (!mQueued) {
+                    return false;
+                }
+                mQueued = false;
+                mQueues.get(mLane).remove(this);
+                return true;
+            }
+        }
+
+        /**
+         * Orders the tasks of a lane by submission.
+         */
+        @Override
+        public int compareTo(Task other) {
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+    private final String mName;
+    private final int mThreadCount;
+    private final long mAgingNanos;
+    private final Map<Lane, PriorityQueue<Task>> mQueues = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> mMaxRunning = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> mMaxQueued = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> mRunning = new EnumMap<>(Lane.class);
+
+    private long mSequence;
+    private boolean mStarted;
+    private boolean mShutdown;
+
+    /**
+     * Constructs a new {@link PriorityScheduler}. Every lane may use every thread and queue
+     * any number of tasks until {@link #setLaneLimits(Lane, int, int)} says otherwise.
+     *
+     * @param name        prefix of the names of the threads
+     * @param threadCount number of threads
+     * @param agingMillis wait after which a task ranks one lane higher
+     */
+    public PriorityScheduler(String name, int threadCount, long agingMillis) {
+        mName = name;
+        mThreadCount = threadCount;
+        mAgingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        for (Lane lane : Lane.values()) {
+            mQueues.put(lane, new PriorityQueue<Task>());
+            mMaxRunning.put(lane, threadCount);
+            mMaxQueued.put(lane, Integer.MAX_VALUE);
+            mRunning.put(lane, 0);
+        }
+    }
+
+    /**
+     * Sets how many tasks of a lane may run at the same time and wait in its queue.
+     */
+    public synchronized void setLaneLimits(Lane lane, int maxRunning, int maxQueued) {
+        mMaxRunning.put(lane, Math.max(1, maxRunning));
+        mMaxQueued.put(lane, Math.max(1, maxQueued));
+        notifyAll();
+    }
+
+    /**
+     * Queues a task in a lane. If the lane is full, its oldest task is dropped.
+     *
+     * @return the handle of the task
+     */
+    public Task submit(Lane lane, Runnable runnable) {
+        return submit(lane, runnable, System.nanoTime());
+    }
+
+    /**
+     * Queues a task in a lane as if it was queued at the given time.
+     *
+     * @param nowNanos time the task is queued, on the {@link System#nanoTime()} clock
+     */
+    Task submit(Lane lane, Runnable runnable, long nowNanos) {
+        Task task;
+        Task dropped = null;
+        synchronized (this) {
+            if (mShutdown) {
+                throw new IllegalStateException("The scheduler is shut down");
+            }
+            if (!mStarted) {
+                startThreads();
+            }
+            PriorityQueue<Task> queue = mQueues.get(lane);
+            if (queue.size() >= mMaxQueued.get(lane)) {
+                dropped = queue.poll();
+                dropped.mQueued = false;
+            }
+            task = new Task(runnable, lane, mSequence++, nowNanos);
+            queue.add(task);
+            PipelineMetrics.record(lane.mDepthStage, queue.size());
+            notifyAll();
+        }
+        if (dropped != null && dropped.mRunnable instanceof Droppable) {
+            ((Droppable) dropped.mRunnable).onDropped();
+        }
+        return task;
+    }
+
+    /**
+     * Returns the number of tasks waiting in a lane.
+     */
+    public synchronized int getQueueDepth(Lane lane) {
+        return mQueues.get(lane).size();
+    }
+
+    /**
+     * Returns the number of tasks of a lane running.
+     */
+    public synchronized int getRunningCount(Lane lane) {
+        return mRunning.get(lane);
+    }
+
+    /**
+     * Returns the task a free thread would take at the given time, or null if there is none,
+     * leaving it queued.
+     *
+     * @param nowNanos on the {@link System#nanoTime()} clock
+     */
+    synchronized Task peek(long nowNanos) {
+        return next(nowNanos);
+    }
+
+    /**
+     * Drops the queued tasks and stops the threads once their running tasks are done.
+     */
+    public synchronized void shutdown() {
+        mShutdown = true;
+        for (PriorityQueue<Task> queue : mQueues.values()) {
+            for (Task task : queue) {
+                task.mQueued = false;
+            }
+            queue.clear();
+        }
+        notifyAll();
+    }
+
+    private void startThreads() {
+        mStarted = true;
+        for (int i = 0; i < mThreadCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, mName + "-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Runs the tasks, the best ranked first, until the scheduler is shut down.
+     */
+    private void work() {
+        Thread thread = Thread.currentThread();
+        while (true) {
+            Task task;
+            synchronized (this) {
+                while (true) {
+                    if (mShutdown) {
+                        return;
+                    }
+                    task = next(System.nanoTime());
+                    if (task != null) {
+                        break;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                mQueues.get(task.mLane).remove(task);
+                task.mQueued = false;
+                mRunning.put(task.mLane, mRunning.get(task.mLane) + 1);
+            }
+
+            Lane lane = task.mLane;
+            long waitNanos = System.nanoTime() - task.mQueuedNanos;
+            PipelineMetrics.record(lane.mWaitStage, waitNanos / 1000);
+            thread.setPriority(lane.mThreadPriority);
+            try {
+                task.mRunnable.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Problem running a task of the " + lane + " lane.", e);
+            } finally {
+                synchronized (this) {
+                    mRunning.put(lane, mRunning.get(lane) - 1);
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the best ranked task of the lanes under their limit, or null if there is none.
+     */
+    private Task next(long nowNanos) {
+        Task best = null;
+        long bestRank = 0;
+        for (Lane lane : Lane.values()) {
+            Task head = mQueues.get(lane).peek();
+            if (head == null || mRunning.get(lane) >= mMaxRunning.get(lane)) {
+                continue;
+            }
+            // The head of a lane has waited the longest, no other task of the lane ranks better
+            long rank = lane.ordinal() * mAgingNanos - (nowNanos - head.mQueuedNanos);
+            if (best == null || rank < bestRank) {
+                best = head;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.android.marvelnews;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the thumbnails of the news into the rows of the list.
+ * <p>
+ * Thumbnails are downloaded and decoded on background threads, downsampled to the size of
+ * their view so a 500 pixels wide image doesn't take the memory of one. Decoded bitmaps are
+ * kept in a memory cache bounded by their size in bytes, and downloaded images in a disk cache,
+ * so scrolling back or reopening the app doesn't download them again.
+ * <p>
+ * Rows asking for the same thumbnail while it loads share one load. A row that is recycled
+ * before its thumbnail arrives gives up on it, and the load is canceled once no row waits for
+ * it. Thumbnails of the rows about to be shown can be prefetched; they load in the prefetch lane
+ * of the {@link PriorityScheduler}, after the thumbnails of the rows on screen, and move to the
+ * visible lane once a row waits for them.
+ * <p>
+ * Every method must be called on the main thread.
+ */
+public final class ThumbnailLoader {
+
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    /**
+     * Name of the directory, inside the cache directory, holding the downloaded thumbnails
+     */
+    private static final String DISK_CACHE_DIRECTORY = "thumbnails";
+
+    /**
+     * Maximum size of the downloaded thumbnails
+     */
+    private static final long DISK_CACHE_MAX_BYTES = 20 * 1024 * 1024;
+
+    /**
+     * Time a downloaded thumbnail is used before downloading it again. The Guardian never
+     * changes an image at the same URL.
+     */
+    private static final long DISK_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    /**
+     * Part of the memory of the app given to decoded thumbnails
+     */
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    private static ThumbnailLoader sInstance;
+
+    /**
+     * Decoded thumbnails by URL and view size, bounded by their size in bytes
+     */
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    /**
+     * Downloaded thumbnails by URL
+     */
+    private final DiskResponseCache mDiskCache;
+
+    /**
+     * Client of the image requests, apart from the Guardian API client so that the images
+     * aren't counted in the timing of the news requests
+     */
+    private final GuardianHttpClient mHttpClient = new GuardianHttpClient();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Loads in flight by URL and view size
+     */
+    private final Map<String, Load> mLoads = new HashMap<>();
+
+    /**
+     * Load each view waits for
+     */
+    private final Map<ImageView, Load> mTargets = new WeakHashMap<>();
+
+    private ThumbnailLoader(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryCacheBytes =
+                activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_FRACTION;
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        mDiskCache = new DiskResponseCache(
+                new File(context.getCacheDir(), DISK_CACHE_DIRECTORY),
+                DISK_CACHE_MAX_BYTES, DISK_MAX_AGE_MILLIS, 0);
+    }
+
+    /**
+     * Returns the loader shared by every screen of the app.
+     */
+    public static ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Shows a thumbnail in a view, loading it if needed. Until it has loaded the view is empty.
+     * Whatever the view was waiting for before is given up.
+     *
+     * @param url    of the thumbnail
+     * @param view   to show it in
+     * @param width  of the view in pixels
+     * @param height of the view in pixels
+     */
+    public void load(String url, ImageView view, int width, int height) {
+        String key = key(url, width, height);
+        Load waiting = mTargets.get(view);
+        if (waiting != null && waiting.mKey.equals(key)) {
+            // Bound again to the same news, keep waiting
+            return;
+        }
+        cancel(view);
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageDrawable(null);
+
+        Load load = mLoads.get(key);
+        if (load == null) {
+            load = start(key, url, width, height, false);
+        } else if (load.mPrefetch) {
+            // A row now waits for the prefetched thumbnail, move it ahead of the prefetches.
+            load.mPrefetch = false;
+            load.mTask.setLane(PriorityScheduler.Lane.VISIBLE);
+        }
+        load.mTargets.add(view);
+        mTargets.put(view, load);
+    }
+
+    /**
+     * Loads a thumbnail into the memory cache, after the thumbnails of the rows on screen. The
+     * oldest prefetches are dropped when too many wait.
+     *
+     * @param url    of the thumbnail
+     * @param width  of the view it will be shown in, in pixels
+     * @param height of the view it will be shown in, in pixels
+     */
+    public void prefetch(String url, int width, int height) {
+        String key = key(url, width, height);
+        if (mMemoryCache.get(key) != null || mLoads.containsKey(key)) {
+            return;
+        }
+        start(key, url, width, height, true);
+    }
+
+    /**
+     * Gives up on the thumbnail a view waits for, if any. The load is canceled if nothing else
+     * waits for it.
+     */
+    public void cancel(ImageView view) {
+        Load load = mTargets.remove(view);
+        if (load == null) {
+            return;
+        }
+        load.mTargets.remove(view);
+        if (load.mTargets.isEmpty() && !load.mPrefetch) {
+            mLoads.remove(load.mKey);
+            load.mTask.cancel();
+            load.mCancellation.cancel();
+        }
+    }
+
+    private Load start(String key, String url, int width, int height, boolean prefetch) {
+        Load load = new Load(key, url, width, height, prefetch);
+        mLoads.put(key, load);
+        load.mTask = MarvelNewsApplication.getScheduler().submit(prefetch
+                ? PriorityScheduler.Lane.PREFETCH : PriorityScheduler.Lane.VISIBLE, load);
+        return load;
+    }
+
+    /**
+     * Caches a loaded thumbnail and shows it in the views waiting for it. The views stop
+     * waiting for the load even if it failed, so binding them again retries it.
+     */
+    private void finish(Load load, Bitmap bitmap) {
+        if (mLoads.get(load.mKey) == load) {
+            mLoads.remove(load.mKey);
+        }
+        boolean loaded = bitmap != null && !load.mCancellation.isCanceled();
+        if (loaded) {
+            mMemoryCache.put(load.mKey, bitmap);
+        }
+        for (ImageView view : load.mTargets) {
+            mTargets.remove(view);
+            if (loaded) {
+                view.setImageBitmap(bitmap);
+            }
+        }
+        load.mTargets.clear();
+    }
+
+    /**
+     * Returns the image at the URL, from the disk cache or downloaded into it, or null if the
+     * server doesn't have it.
+     */
+    private byte[] fetch(String url, FetchCancellation cancellation) throws IOException {
+        DiskResponseCache.Entry entry = mDiskCache.get(url);
+        if (entry != null && entry.isFresh(System.currentTimeMillis())) {
+            InputStream body = entry.openBody();
+            try {
+                return readFully(body);
+            } finally {
+                body.close();
+            }
+        }
+
+        GuardianHttpClient.Response response = mHttpClient.get(url, null, cancellation);
+        try {
+            if (response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                Log.e(LOG_TAG, "Error response code: " + response.getResponseCode()
+                        + " for thumbnail " + url);
+                return null;
+            }
+            DiskResponseCache.CachingInputStream body = mDiskCache.cacheWhileReading(url,
+                    response.getBody(), response.getHeader("ETag"),
+                    response.getHeader("Last-Modified"));
+            try {
+                byte[] image = readFully(body);
+                body.commit();
+                return image;
+            } finally {
+                body.close();
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Decodes an image downsampled to the given view size, or returns null if it can't be
+     * decoded.
+     */
+    private static Bitmap decode(byte[] image, int width, int height) {
+        // Read the size of the image first, without allocating its pixels
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(image, 0, image.length, options);
+
+        options.inSampleSize = BitmapSampling.calculateInSampleSize(
+                options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        // Thumbnails are photos without transparency, 2 bytes per pixel are enough
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeByteArray(image, 0, image.length, options);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static String key(String url, int width, int height) {
+        return width + "x" + height + " " + url;
+    }
+
+    /**
+     * Load of one thumbnail at one view size, shared by the views waiting for it.
+     */
+    private final class Load implements PriorityScheduler.Droppable {
+
+        private final String mKey;
+        private final String mUrl;
+        private final int mWidth;
+        private final int mHeight;
+        private final FetchCancellation mCancellation = new FetchCancellation();
+
+        /**
+         * Views waiting for the thumbnail
+         */
+        private final Set<ImageView> mTargets = new HashSet<>();
+
+        /**
+         * True while no row has waited for the thumbnail, it then loads after the others
+         */
+        private boolean mPrefetch;
+
+        /**
+         * Handle of the load in the scheduler
+         */
+        private PriorityScheduler.Task mTask;
+
+        Load(String key, String url, int width, int height, boolean prefetch) {
+            mKey = key;
+            mUrl = url;
+            mWidth = width;
+            mHeight = height;
+            mPrefetch = prefetch;
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            if (!mCancellation.isCanceled()) {
+                try {
+                    byte[] image = fetch(mUrl, mCancellation);
+                    if (image != null) {
+                        bitmap = decode(image, mWidth, mHeight);
+                    }
+                } catch (IOException e) {
+                    if (!mCancellation.isCanceled()) {
+                        Log.e(LOG_TAG, "Problem loading the thumbnail " + mUrl, e);
+                    }
+                }
+            }
+            final Bitmap result = bitmap;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    finish(Load.this, result);
+                }
+            });
+        }
+
+        /**
+         * Forgets the load once a full lane has dropped it, the rows waiting for it show no
+         * thumbnail until they are bound again.
+         */
+        @Override
+        public void onDropped() {
+            mCancellation.cancel();
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mLoads.get(mKey) == Load.this) {
+                        mLoads.remove(mKey);
+                    }
+                    for (ImageView view : mTargets) {
+                        ThumbnailLoader.this.mTargets.remove(view);
+                    }
+                    mTargets.clear();
+                }
+            });
+        }
+    }
+}
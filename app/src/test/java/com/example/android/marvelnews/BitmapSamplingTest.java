@@ -0,0 +1,32 @@
+package com.example.android.marvelnews;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link BitmapSampling}.
+ */
+public class BitmapSamplingTest {
+
+    @Test
+    public void calculateInSampleSize_keepsBothSidesAtLeastAsLargeAsTheView() {
+        // A 500x300 Guardian thumbnail shown at 120x72 pixels
+        assertEquals(4, BitmapSampling.calculateInSampleSize(500, 300, 120, 72));
+        // The height would fall below the view at 8
+        assertEquals(4, BitmapSampling.calculateInSampleSize(1000, 300, 120, 72));
+        assertEquals(8, BitmapSampling.calculateInSampleSize(1000, 600, 120, 72));
+    }
+
+    @Test
+    public void calculateInSampleSize_neverUpsamples() {
+        assertEquals(1, BitmapSampling.calculateInSampleSize(100, 60, 120, 72));
+        assertEquals(1, BitmapSampling.calculateInSampleSize(239, 143, 120, 72));
+    }
+
+    @Test
+    public void calculateInSampleSize_unknownSizesDecodeEverything() {
+        assertEquals(1, BitmapSampling.calculateInSampleSize(-1, -1, 120, 72));
+        assertEquals(1, BitmapSampling.calculateInSampleSize(500, 300, 0, 0));
+    }
+}
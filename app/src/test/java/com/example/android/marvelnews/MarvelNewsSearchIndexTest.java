@@ -0,0 +1,148 @@
+package com.example.android.marvelnews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link MarvelNewsSearchIndex}. Its queries over 50k news are timed by the SearchBenchmark
+ * of the benchmark module.
+ */
+public class MarvelNewsSearchIndexTest {
+
+    @Test
+    public void search_matchesPrefixesOfEveryWord() {
+        MarvelNewsSearchIndex index = new MarvelNewsSearchIndex();
+        index.update(Arrays.asList(
+                news("Black Panther review", "Author: Peter Bradshaw", "Film", 1),
+                news("Avengers: Infinity War box office", "Author: Ben Child", "Film", 2),
+                news("Marvel's Black Widow", "", "Culture", 3)));
+
+        assertEquals(urls(3, 1), urls(index.search("bla")));
+        assertEquals(urls(1), urls(index.search("black pan")));
+        assertEquals(urls(2), urls(index.search("INF war")));
+        assertEquals(urls(1), urls(index.search("bradsh")));
+        assertEquals(urls(), urls(index.search("black infinity")));
+        assertEquals(urls(), urls(index.search("  ")));
+    }
+
+    @Test
+    public void search_ranksTitleAndWholeWordsFirst() {
+        MarvelNewsSearchIndex index = new MarvelNewsSearchIndex();
+        index.update(Arrays.asList(
+                news("Books of the year", "", "Film", 1),
+                news("Film of the year", "", "Books", 2),
+                news("Filmmakers of the year", "", "Books", 3),
+                news("Film festival", "", "Books", 4)));
+
+        // Whole word in the title, newest first, then prefix in the title, then the section
+        assertEquals(urls(4, 2, 3, 1), urls(index.search("film")));
+    }
+
+    @Test
+    public void update_indexesEachNewsOnce() {
+        MarvelNewsSearchIndex index = new MarvelNewsSearchIndex();
+        List<MarvelNews> marvelNewss = Arrays.asList(news("Thor: Ragnarok", "", "Film", 1));
+        index.update(marvelNewss);
+        index.update(marvelNewss);
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.search("thor").size());
+    }
+
+    @Test
+    public void update_onlyKeepsTheNewsOfTheList() {
+        MarvelNewsSearchIndex index = new MarvelNewsSearchIndex();
+        index.update(Arrays.asList(
+                news("Thor: Ragnarok", "", "Film", 1),
+                news("Thor: The Dark World", "", "Film", 2)));
+
+        // The first news left the list, the second one was renamed
+        index.update(Arrays.asList(
+                news("Thor: Love and Thunder", "", "Film", 2),
+                news("Black Panther", "", "Film", 3)));
+
+        assertEquals(2, index.size());
+        assertEquals(urls(2), urls(index.search("thor")));
+        assertEquals(urls(), urls(index.search("dark")));
+        assertEquals(urls(), urls(index.search("ragnarok")));
+        assertEquals(urls(2), urls(index.search("love")));
+
+        index.update(Collections.<MarvelNews>emptyList());
+        assertEquals(0, index.size());
+        assertEquals(urls(), urls(index.search("thor")));
+    }
+
+    @Test
+    public void search_doesNotWaitForARunningUpdate() throws Exception {
+        final MarvelNewsSearchIndex index = new MarvelNewsSearchIndex();
+        index.update(Arrays.asList(news("Thor: Ragnarok", "", "Film", 1)));
+
+        // A news whose title is only read once the test lets it, holding the update
+        final CountDownLatch indexing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final MarvelNews slow = new MarvelNews("", "Thor: Love and Thunder", "Film",
+                new Date(1500000000000L + 2 * 60000L), url(2)) {
+            @Override
+            public String getTitle() {
+                indexing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getTitle();
+            }
+        };
+        Thread update = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                index.update(Arrays.asList(news("Thor: Ragnarok", "", "Film", 1), slow));
+            }
+        });
+        update.start();
+        try {
+            assertTrue(indexing.await(10, TimeUnit.SECONDS));
+            // The previous list is searched while the update runs
+            assertEquals(urls(1), urls(index.search("thor")));
+        } finally {
+            release.countDown();
+            update.join();
+        }
+        assertEquals(urls(2, 1), urls(index.search("thor")));
+    }
+
+    private static MarvelNews news(String title, String author, String section, int i) {
+        return new MarvelNews(author, title, section, new Date(1500000000000L + i * 60000L),
+                url(i));
+    }
+
+    private static String url(int i) {
+        return "https://www.theguardian.com/film/" + i;
+    }
+
+    private static List<String> urls(int... ids) {
+        List<String> urls = new ArrayList<>();
+        for (int id : ids) {
+            urls.add(url(id));
+        }
+        return urls;
+    }
+
+    private static List<String> urls(List<MarvelNews> marvelNewss) {
+        List<String> urls = new ArrayList<>();
+        for (MarvelNews marvelNews : marvelNewss) {
+            urls.add(marvelNews.getUrl());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the file format of {@link MarvelNewsSnapshot}.
+ */
+public class MarvelNewsSnapshotTest {
+
+    private static final String SEARCH_KEY = "2018-01-01|newest|[film]";
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("snapshot", "");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void read_returnsTheNewsWritten() throws Exception {
+        List<MarvelNews> written = new ArrayList<>();
+        written.add(new MarvelNews("Jane Doe", "Black Panther \u2013 review", "Film",
+                new Date(1526371200000L), "https://www.theguardian.com/film/1",
+                "https://media.guim.co.uk/1.jpg"));
+        written.add(new MarvelNews(null, "Untimed", null, null, "https://www.theguardian.com/2"));
+        MarvelNewsSnapshot.write(mFile, SEARCH_KEY, written);
+
+        List<MarvelNews> read = MarvelNewsSnapshot.read(mFile, SEARCH_KEY);
+
+        assertEquals(2, read.size());
+        assertEquals("Jane Doe", read.get(0).getAuthor());
+        assertEquals("Black Panther \u2013 review", read.get(0).getTitle());
+        assertEquals("Film", read.get(0).getSectionName());
+        assertEquals(1526371200000L, read.get(0).getTime().getTime());
+        assertEquals("https://www.theguardian.com/film/1", read.get(0).getUrl());
+        assertEquals("https://media.guim.co.uk/1.jpg", read.get(0).getThumbnailUrl());
+        assertNull(read.get(1).getAuthor());
+        assertNull(read.get(1).getSectionName());
+        assertNull(read.get(1).getTime());
+        assertNull(read.get(1).getThumbnailUrl());
+        assertFalse(new File(mFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void read_ignoresTheSnapshotOfAnotherSearch() throws Exception {
+        MarvelNewsSnapshot.write(mFile, SEARCH_KEY, new ArrayList<MarvelNews>());
+
+        assertNull(MarvelNewsSnapshot.read(mFile, "2018-01-01|oldest|[film]"));
+    }
+
+    @Test
+    public void read_ignoresBrokenSnapshots() throws Exception {
+        List<MarvelNews> written = new ArrayList<>();
+        written.add(new MarvelNews("", "Title", "Film", null, "https://www.theguardian.com/1"));
+        MarvelNewsSnapshot.write(mFile, SEARCH_KEY, written);
+
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+        assertNull(MarvelNewsSnapshot.read(mFile, SEARCH_KEY));
+
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+        assertNull(MarvelNewsSnapshot.read(mFile, SEARCH_KEY));
+
+        assertNull(MarvelNewsSnapshot.read(new File(mFile.getPath() + ".missing"), SEARCH_KEY));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.android.marvelnews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link MarvelNewsStore}. Its heap footprint is compared with objects by the
+ * FootprintBenchmark of the benchmark module.
+ */
+public class MarvelNewsStoreTest {
+
+    private static final String[] SECTIONS =
+            {"Film", "Culture", "Books", "Games", "Television & radio", "Comics"};
+
+    private static final int AUTHORS = 150;
+
+    /**
+     * One day in milliseconds, there are 30 news a day
+     */
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    @Test
+    public void rowsReadBackWhatWasAdded() {
+        List<MarvelNews> marvelNewss = news(500);
+        marvelNewss.add(new MarvelNews(null, null, null, null, null));
+        marvelNewss.add(new MarvelNews("", "\u00dcn\u00efcode \u2013 \u201cquotes\u201d", "Film", new Date(0), "u"));
+        marvelNewss.add(new MarvelNews("", "With thumbnail", "Film", new Date(0), "t",
+                "https://media.guim.co.uk/0/500.jpg"));
+
+        List<MarvelNews> rows = MarvelNewsStore.of(marvelNewss).asList();
+
+        assertEquals(marvelNewss.size(), rows.size());
+        for (int i = 0; i < marvelNewss.size(); i++) {
+            MarvelNews expected = marvelNewss.get(i);
+            MarvelNews row = rows.get(i);
+            assertEquals(expected.getAuthor(), row.getAuthor());
+            assertEquals(expected.getTitle(), row.getTitle());
+            assertEquals(expected.getSectionName(), row.getSectionName());
+            assertEquals(expected.getTime(), row.getTime());
+            assertEquals(expected.getUrl(), row.getUrl());
+            assertEquals(expected.getThumbnailUrl(), row.getThumbnailUrl());
+            assertEquals(expected.getDisplayDate(), row.getDisplayDate());
+            assertEquals(expected.getDisplayTime(), row.getDisplayTime());
+        }
+        assertNull(rows.get(500).getTime());
+        assertNull(rows.get(500).getDisplayDate());
+    }
+
+    @Test
+    public void sharedValuesAreKeptOnce() {
+        MarvelNewsStore store = MarvelNewsStore.of(news(AUTHORS + 1));
+
+        assertSame(store.get(0).getSectionName(), store.get(SECTIONS.length).getSectionName());
+        assertSame(store.get(0).getAuthor(), store.get(AUTHORS).getAuthor());
+    }
+
+    @Test
+    public void rowsAreComparedOnTheirColumns() {
+        List<MarvelNews> marvelNewss = news(3);
+        marvelNewss.add(new MarvelNews(null, null, null, null, null));
+        marvelNewss.add(new MarvelNews("", "With thumbnail", "Film", new Date(0), "t",
+                "https://media.guim.co.uk/0/500.jpg"));
+        MarvelNewsStore store = MarvelNewsStore.of(marvelNewss);
+        // Another store holding the same news, as a new list would
+        MarvelNewsStore copy = MarvelNewsStore.of(marvelNewss);
+
+        for (int i = 0; i < store.size(); i++) {
+            for (int j = 0; j < copy.size(); j++) {
+                assertEquals(i == j, MarvelNewsStore.sameUrl(store.get(i), copy.get(j)));
+                assertEquals(i == j, MarvelNewsStore.sameContents(store.get(i), copy.get(j)));
+                // A row and an object are compared on their values
+                assertEquals(i == j,
+                        MarvelNewsStore.sameContents(store.get(i), marvelNewss.get(j)));
+            }
+            assertEquals(MarvelNewsStore.timeMillis(marvelNewss.get(i)),
+                    MarvelNewsStore.timeMillis(store.get(i)));
+        }
+        // The same news without its thumbnail
+        MarvelNews withoutThumbnail = MarvelNewsStore.of(Collections.singletonList(
+                new MarvelNews("", "With thumbnail", "Film", new Date(0), "t"))).get(0);
+        assertTrue(MarvelNewsStore.sameUrl(store.get(4), withoutThumbnail));
+        assertTrue(MarvelNewsStore.sameWords(store.get(4), withoutThumbnail));
+        assertFalse(MarvelNewsStore.sameContents(store.get(4), withoutThumbnail));
+    }
+
+    /**
+     * Returns news as the parser creates them, each with its own copy of every String.
+     */
+    private static List<MarvelNews> news(int count) {
+        List<MarvelNews> marvelNewss = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            marvelNewss.add(new MarvelNews(
+                    new String(author(i)),
+                    title(i),
+                    new String(SECTIONS[i % SECTIONS.length]),
+                    new Date(time(i)),
+                    url(i)));
+        }
+        return marvelNewss;
+    }
+
+    private static String author(int i) {
+        return "Author: Contributor" + (i % AUTHORS) + " Surname";
+    }
+
+    private static String title(int i) {
+        return "Marvel Studios announces the cast of its next superhero film, part " + i;
+    }
+
+    private static String url(int i) {
+        return "https://www.theguardian.com/film/2018/may/03/marvel-studios-announces-cast-" + i;
+    }
+
+    private static long time(int i) {
+        return 1400000000000L + i * (DAY_MILLIS / 30);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the order in which {@link PriorityScheduler} runs its lanes.
+ */
+public class PrioritySchedulerTest {
+
+    private PriorityScheduler mScheduler;
+
+    private final List<String> mRun = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Released once by every recorded task that ran
+     */
+    private final Semaphore mRunPermits = new Semaphore(0);
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void submit_runsTheVisibleLaneFirst() throws Exception {
+        mScheduler = new PriorityScheduler("test", 1, 60000);
+        CountDownLatch release = block(PriorityScheduler.Lane.VISIBLE);
+
+        mScheduler.submit(PriorityScheduler.Lane.SYNC, record("sync"));
+        mScheduler.submit(PriorityScheduler.Lane.PREFETCH, record("prefetch"));
+        mScheduler.submit(PriorityScheduler.Lane.VISIBLE, record("visible 1"));
+        mScheduler.submit(PriorityScheduler.Lane.VISIBLE, record("visible 2"));
+        assertEquals(2, mScheduler.getQueueDepth(PriorityScheduler.Lane.VISIBLE));
+        release.countDown();
+
+        awaitRun(4);
+        assertEquals("[visible 1, visible 2, prefetch, sync]", mRun.toString());
+    }
+
+    @Test
+    public void submit_agesWaitingTasksAheadOfNewerOnes() throws Exception {
+        mScheduler = new PriorityScheduler("test", 1, 50);
+        // Only the prefetch lane is at its limit while the thread is busy
+        CountDownLatch release = block(PriorityScheduler.Lane.PREFETCH);
+        long start = System.nanoTime();
+
+        PriorityScheduler.Task sync =
+                mScheduler.submit(PriorityScheduler.Lane.SYNC, record("sync"), start);
+        // One aging period later, a new visible task still ranks first
+        PriorityScheduler.Task visible = mScheduler.submit(PriorityScheduler.Lane.VISIBLE,
+                record("visible"), start + TimeUnit.MILLISECONDS.toNanos(50));
+        assertSame(visible, mScheduler.peek(start + TimeUnit.MILLISECONDS.toNanos(50)));
+        // Three aging periods later, the sync task ranks ahead of a new visible task
+        assertTrue(visible.cancel());
+        mScheduler.submit(PriorityScheduler.Lane.VISIBLE, record("visible"),
+                start + TimeUnit.MILLISECONDS.toNanos(150));
+        assertSame(sync, mScheduler.peek(start + TimeUnit.MILLISECONDS.toNanos(150)));
+        release.countDown();
+
+        awaitRun(2);
+        assertEquals("[sync, visible]", mRun.toString());
+    }
+
+    @Test
+    public void setLaneLimits_boundsTheRunningTasksAndDropsTheOldestQueued() throws Exception {
+        mScheduler = new PriorityScheduler("test", 2, 60000);
+        mScheduler.setLaneLimits(PriorityScheduler.Lane.PREFETCH, 1, 2);
+        CountDownLatch release = block(PriorityScheduler.Lane.PREFETCH);
+
+        final List<String> dropped = new ArrayList<>();
+        mScheduler.submit(PriorityScheduler.Lane.PREFETCH, new PriorityScheduler.Droppable() {
+            @Override
+            public void onDropped() {
+                dropped.add("prefetch 1");
+            }
+
+            @Override
+            public void run() {
+                mRun.add("prefetch 1");
+                mRunPermits.release();
+            }
+        });
+        mScheduler.submit(PriorityScheduler.Lane.PREFETCH, record("prefetch 2"));
+        mScheduler.submit(PriorityScheduler.Lane.PREFETCH, record("prefetch 3"));
+        // The second thread is free, but the prefetch lane is at its limit
+        mScheduler.submit(PriorityScheduler.Lane.VISIBLE, record("visible"));
+        awaitRecorded(1);
+        assertEquals(1, mScheduler.getRunningCount(PriorityScheduler.Lane.PREFETCH));
+        assertEquals("[prefetch 1]", dropped.toString());
+        release.countDown();
+
+        awaitRun(3);
+        assertEquals("[visible, prefetch 2, prefetch 3]", mRun.toString());
+    }
+
+    @Test
+    public void setLane_movesAQueuedTask() throws Exception {
+        mScheduler = new PriorityScheduler("test", 1, 60000);
+        CountDownLatch release = block(PriorityScheduler.Lane.VISIBLE);
+
+        mScheduler.submit(PriorityScheduler.Lane.VISIBLE, record("visible"));
+        PriorityScheduler.Task task =
+                mScheduler.submit(PriorityScheduler.Lane.PREFETCH, record("scrolled into view"));
+        PriorityScheduler.Task canceled =
+                mScheduler.submit(PriorityScheduler.Lane.VISIBLE, record("scrolled away"));
+        task.setLane(PriorityScheduler.Lane.VISIBLE);
+        assertTrue(canceled.cancel());
+        release.countDown();
+
+        awaitRun(2);
+        assertEquals("[visible, scrolled into view]", mRun.toString());
+        assertEquals(PriorityScheduler.Lane.VISIBLE, task.getLane());
+    }
+
+    /**
+     * Occupies a thread of the scheduler until the returned latch is released.
+     */
+    private CountDownLatch block(PriorityScheduler.Lane lane) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mScheduler.submit(lane, new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRun.add(name);
+                mRunPermits.release();
+            }
+        };
+    }
+
+    /**
+     * Waits for the given number of recorded tasks to have run, counting from the start.
+     */
+    private void awaitRecorded(int count) throws InterruptedException {
+        assertTrue(mRunPermits.tryAcquire(count, 5, TimeUnit.SECONDS));
+        mRunPermits.release(count);
+    }
+
+    /**
+     * Waits for the given number of recorded tasks to have run, and then for the scheduler to
+     * have nothing queued or running, so a task that shouldn't run would have shown up.
+     */
+    private void awaitRun(int count) throws InterruptedException {
+        awaitRecorded(count);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!isIdle()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private boolean isIdle() {
+        for (PriorityScheduler.Lane lane : PriorityScheduler.Lane.values()) {
+            if (mScheduler.getQueueDepth(lane) > 0 || mScheduler.getRunningCount(lane) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
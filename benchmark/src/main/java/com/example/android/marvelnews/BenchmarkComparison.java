@@ -0,0 +1,121 @@
+package com.example.android.marvelnews;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prints how the results of a benchmark run differ from a stored baseline, both written by
+ * JMH with "-rf json".
+ * <p>
+ * Usage: BenchmarkComparison &lt;baseline.json&gt; &lt;result.json&gt;
+ */
+public final class BenchmarkComparison {
+
+    /**
+     * Secondary metric of the gc profiler: bytes allocated per operation
+     */
+    private static final String ALLOCATION_METRIC = "\u00b7gc.alloc.rate.norm";
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <result.json>");
+            System.exit(2);
+        }
+        Map<String, JsonObject> baseline = read(new File(args[0]));
+        Map<String, JsonObject> result = read(new File(args[1]));
+
+        System.out.println(String.format("%-60s %14s %14s %8s", "benchmark", "baseline", "result",
+                "change"));
+        for (Map.Entry<String, JsonObject> entry : result.entrySet()) {
+            JsonObject before = baseline.get(entry.getKey());
+            JsonObject after = entry.getValue();
+            String mode = after.get("mode").getAsString();
+            JsonObject primary = after.getAsJsonObject("primaryMetric");
+            String unit = primary.get("scoreUnit").getAsString();
+
+            if ("sample".equals(mode)) {
+                print(entry.getKey() + " p99 " + unit,
+                        before == null ? null : p99(before), p99(after));
+            } else {
+                print(entry.getKey() + " " + unit,
+                        before == null ? null : score(before), score(after));
+            }
+            Double allocation = allocation(after);
+            if (allocation != null) {
+                print(entry.getKey() + " B/op", before == null ? null : allocation(before),
+                        allocation);
+            }
+        }
+    }
+
+    private static void print(String name, Double before, double after) {
+        String change = before == null || before == 0
+                ? "new" : String.format("%+.1f%%", (after - before) * 100 / before);
+        System.out.println(String.format("%-60s %14s %14.3f %8s", name,
+                before == null ? "-" : String.format("%.3f", before), after, change));
+    }
+
+    /**
+     * Reads the results of a run, by benchmark, mode and parameters.
+     */
+    private static Map<String, JsonObject> read(File file) throws IOException {
+        Map<String, JsonObject> results = new TreeMap<>();
+        if (!file.exists()) {
+            return results;
+        }
+        InputStreamReader reader = new InputStreamReader(new FileInputStream(file),
+                BenchmarkFixtures.UTF_8);
+        try {
+            JsonArray runs = new JsonParser().parse(reader).getAsJsonArray();
+            for (JsonElement run : runs) {
+                JsonObject benchmark = run.getAsJsonObject();
+                String name = benchmark.get("benchmark").getAsString();
+                name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+                StringBuilder key = new StringBuilder(name)
+                        .append(" ").append(benchmark.get("mode").getAsString());
+                JsonObject params = benchmark.getAsJsonObject("params");
+                if (params != null) {
+                    Map<String, String> sorted = new LinkedHashMap<>();
+                    for (Map.Entry<String, JsonElement> param : params.entrySet()) {
+                        sorted.put(param.getKey(), param.getValue().getAsString());
+                    }
+                    key.append(" ").append(sorted);
+                }
+                results.put(key.toString(), benchmark);
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    private static double score(JsonObject benchmark) {
+        return benchmark.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+    }
+
+    private static double p99(JsonObject benchmark) {
+        return benchmark.getAsJsonObject("primaryMetric").getAsJsonObject("scorePercentiles")
+                .get("99.0").getAsDouble();
+    }
+
+    private static Double allocation(JsonObject benchmark) {
+        JsonObject secondary = benchmark.getAsJsonObject("secondaryMetrics");
+        if (secondary == null || !secondary.has(ALLOCATION_METRIC)) {
+            return null;
+        }
+        return secondary.getAsJsonObject(ALLOCATION_METRIC).get("score").getAsDouble();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.marvelnews;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Guardian search responses of any size, built from the recorded responses of the unit tests.
+ */
+final class BenchmarkFixtures {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Recorded response of the query of the list, with "show-tags=contributor"
+     */
+    static final String MINIMAL_RESPONSE = "/fixtures/search_minimal.json";
+
+    /**
+     * Recorded response of the query the list used to send, with
+     * "show-tags=contributor&show-elements=all"
+     */
+    static final String ALL_ELEMENTS_RESPONSE = "/fixtures/search_show_elements_all.json";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Returns a search response of the query of the list holding the given number of results.
+     */
+    static byte[] searchResponse(int results) throws IOException {
+        return searchResponse(MINIMAL_RESPONSE, results);
+    }
+
+    /**
+     * Returns a search response holding the given number of results, built from the given
+     * recorded response. The recorded results are repeated as many times as needed, each copy
+     * with its own ID, title and URL.
+     */
+    static byte[] searchResponse(String recordedResponse, int results) throws IOException {
+        JsonObject recorded = readRecordedResponse(recordedResponse);
+        JsonObject response = recorded.getAsJsonObject("response");
+        JsonArray recordedResults = response.getAsJsonArray("results");
+
+        JsonArray copies = new JsonArray();
+        for (int i = 0; i < results; i++) {
+            JsonObject result = recordedResults.get(i % recordedResults.size())
+                    .getAsJsonObject().deepCopy();
+            int copy = i / recordedResults.size();
+            if (copy > 0) {
+                for (String key : new String[]{"id", "webTitle", "webUrl", "apiUrl"}) {
+                    result.addProperty(key, result.get(key).getAsString() + "-" + copy);
+                }
+            }
+            copies.add(result);
+        }
+        response.add("results", copies);
+        response.addProperty("total", results);
+        response.addProperty("pageSize", results);
+        return recorded.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Returns the news of a search response of the given size, as parsed by the app.
+     */
+    static List<MarvelNews> news(int results) throws IOException {
+        final List<MarvelNews> marvelNewss = new ArrayList<>(results);
+        new MarvelNewsParser().parse(
+                new InputStreamReader(new ByteArrayInputStream(searchResponse(results)), UTF_8),
+                new MarvelNewsParser.Callback() {
+                    @Override
+                    public void onMarvelNews(MarvelNews marvelNews) {
+                        marvelNewss.add(marvelNews);
+                    }
+                });
+        return marvelNewss;
+    }
+
+    private static JsonObject readRecordedResponse(String name) throws IOException {
+        InputStream in = BenchmarkFixtures.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            JsonElement element = new JsonParser().parse(new InputStreamReader(in, UTF_8));
+            return element.getAsJsonObject();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.marvelnews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work of binding every news of a response to a list item: formatting the
+ * publication date on each bind, as the list used to, against reading the strings prepared
+ * while loading, from objects and from the rows of a {@link MarvelNewsStore}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BindBenchmark {
+
+    @Param({"10", "200", "5000"})
+    public int results;
+
+    private List<MarvelNews> mNews;
+    private List<MarvelNews> mStoreRows;
+
+    @Setup
+    public void setUp() throws IOException {
+        mNews = BenchmarkFixtures.news(results);
+        mStoreRows = MarvelNewsStore.of(mNews).asList();
+    }
+
+    @Benchmark
+    public void formatOnBind(Blackhole blackhole) {
+        for (MarvelNews marvelNews : mNews) {
+            blackhole.consume(marvelNews.getTitle());
+            blackhole.consume(marvelNews.getAuthor());
+            blackhole.consume(marvelNews.getSectionName());
+            blackhole.consume(MarvelNewsFormatter.formatDate(marvelNews.getTime()));
+            blackhole.consume(MarvelNewsFormatter.formatTime(marvelNews.getTime()));
+        }
+    }
+
+    @Benchmark
+    public void bindPreformatted(Blackhole blackhole) {
+        bind(mNews, blackhole);
+    }
+
+    @Benchmark
+    public void bindStoreRows(Blackhole blackhole) {
+        bind(mStoreRows, blackhole);
+    }
+
+    private static void bind(List<MarvelNews> marvelNewss, Blackhole blackhole) {
+        for (int i = 0; i < marvelNewss.size(); i++) {
+            MarvelNews marvelNews = marvelNewss.get(i);
+            blackhole.consume(marvelNews.getTitle());
+            blackhole.consume(marvelNews.getAuthor());
+            blackhole.consume(marvelNews.getSectionName());
+            blackhole.consume(marvelNews.getDisplayDate());
+            blackhole.consume(marvelNews.getDisplayTime());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.android.marvelnews;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reports the heap retained by many news kept as {@link MarvelNews} objects, as the parser
+ * creates them, and by the same news kept in a {@link MarvelNewsStore}, at 10k and 100k news.
+ * Each is measured once right after loading, and once shown: after the comparisons of a
+ * submitted list, which read every news, and the {@link MarvelNewsSearchIndex} of the list.
+ * <p>
+ * The heap retained is the used heap while the news are held minus the used heap once they
+ * are released, each after a few full collections, so it is only as precise as the collector
+ * of the JVM allows. The run only reports, it doesn't fail.
+ * <p>
+ * Usage: FootprintBenchmark [count...]
+ */
+public final class FootprintBenchmark {
+
+    private static final String[] SECTIONS =
+            {"Film", "Culture", "Books", "Games", "Television & radio", "Comics"};
+
+    private static final int AUTHORS = 150;
+
+    /**
+     * One day in milliseconds, there are 30 news a day
+     */
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private FootprintBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] counts = {10000, 100000};
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                counts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        // The first round also loads and initializes the classes, it isn't reported
+        objectsBytes(1000, true);
+        storeBytes(1000, true);
+        for (int count : counts) {
+            report(count + " news", objectsBytes(count, false), storeBytes(count, false), count);
+            report(count + " news shown", objectsBytes(count, true), storeBytes(count, true),
+                    count);
+        }
+    }
+
+    private static void report(String name, long objectBytes, long storeBytes, int count) {
+        System.out.println(String.format(Locale.US,
+                "%s: objects %d KB (%d B/news), store %d KB (%d B/news), %.0f%%",
+                name, objectBytes / 1024, objectBytes / count, storeBytes / 1024,
+                storeBytes / count, 100.0 * storeBytes / objectBytes));
+    }
+
+    private static long objectsBytes(int count, boolean shown) {
+        List<MarvelNews> marvelNewss = news(count);
+        MarvelNewsSearchIndex index = shown ? show(marvelNewss) : null;
+        long held = usedHeap();
+        // Keep the news reachable until measured
+        if (marvelNewss.size() != count || (index != null && index.size() != count)) {
+            throw new AssertionError();
+        }
+        marvelNewss = null;
+        index = null;
+        return held - usedHeap();
+    }
+
+    private static long storeBytes(int count, boolean shown) {
+        MarvelNewsStore store = new MarvelNewsStore(count);
+        for (int i = 0; i < count; i++) {
+            store.add(author(i), title(i), SECTIONS[i % SECTIONS.length], time(i), url(i));
+        }
+        MarvelNewsSearchIndex index = shown ? show(store.asList()) : null;
+        long held = usedHeap();
+        if (store.size() != count || (index != null && index.size() != count)) {
+            throw new AssertionError();
+        }
+        store = null;
+        index = null;
+        return held - usedHeap();
+    }
+
+    /**
+     * Reads the news as the app does once they are submitted to the list: the adapter compares
+     * every news with the one of the previous list, the same news here, and the loader updates
+     * the search index.
+     *
+     * @return the index, to keep it reachable until measured
+     */
+    private static MarvelNewsSearchIndex show(List<MarvelNews> marvelNewss) {
+        for (MarvelNews marvelNews : marvelNewss) {
+            if (!MarvelNewsStore.sameUrl(marvelNews, marvelNews)
+                    || !MarvelNewsStore.sameContents(marvelNews, marvelNews)) {
+                throw new AssertionError();
+            }
+        }
+        MarvelNewsSearchIndex index = new MarvelNewsSearchIndex();
+        index.update(marvelNewss);
+        return index;
+    }
+
+    /**
+     * Returns news as the parser creates them, each with its own copy of every String.
+     */
+    private static List<MarvelNews> news(int count) {
+        List<MarvelNews> marvelNewss = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            marvelNewss.add(new MarvelNews(
+                    new String(author(i)),
+                    title(i),
+                    new String(SECTIONS[i % SECTIONS.length]),
+                    new Date(time(i)),
+                    url(i)));
+        }
+        return marvelNewss;
+    }
+
+    private static String author(int i) {
+        return "Author: Contributor" + (i % AUTHORS) + " Surname";
+    }
+
+    private static String title(int i) {
+        return "Marvel Studios announces the cast of its next superhero film, part " + i;
+    }
+
+    private static String url(int i) {
+        return "https://www.theguardian.com/film/2018/may/03/marvel-studios-announces-cast-" + i;
+    }
+
+    private static long time(int i) {
+        return 1400000000000L + i * (DAY_MILLIS / 30);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.android.marvelnews;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives the whole fetch and parse pipeline of the app, {@link QueryUtils#fetchMarvelNewsData},
+ * with many concurrent requests against a {@link LoadTestServer}, and reports the throughput,
+ * the latency percentiles and the allocation of the requests.
+ * <p>
+ * The requests go through the shared client of {@link QueryUtils}, with its retries, so a
+ * failure burst shows up as slower requests first and as failed ones once the retries run
+ * out. Allocation is measured on the threads sending the requests, which perform them, the
+ * server running in the same JVM is left out.
+ * <p>
+ * Usage: LoadTest [--option=value...], the options and their defaults being in
+ * {@link #DEFAULT_OPTIONS}. With "--max-p99-ms" or "--max-error-rate", the run exits with 1 when
+ * the limit is exceeded, so a build can fail on a regression.
+ */
+public final class LoadTest {
+
+    /**
+     * Options of the run and their default values
+     */
+    private static final Map<String, String> DEFAULT_OPTIONS = new LinkedHashMap<>();
+
+    static {
+        // Threads sending requests at the same time
+        DEFAULT_OPTIONS.put("concurrency", "16");
+        // Requests measured, after the warmup ones
+        DEFAULT_OPTIONS.put("requests", "2000");
+        DEFAULT_OPTIONS.put("warmup", "500");
+        // Results per page
+        DEFAULT_OPTIONS.put("page-size", "50");
+        // Wait of the server before the headers of every response
+        DEFAULT_OPTIONS.put("latency-ms", "20");
+        // Rate at which bodies are sent, 0 to send them at once
+        DEFAULT_OPTIONS.put("trickle-bytes-per-second", "0");
+        // Share of the requests answered with a "503", in bursts of the given length
+        DEFAULT_OPTIONS.put("failure-rate", "0");
+        DEFAULT_OPTIONS.put("failure-burst", "5");
+        // Share of the requests answered with a "429"
+        DEFAULT_OPTIONS.put("throttle-rate", "0");
+        // Limits failing the run, 0 for none
+        DEFAULT_OPTIONS.put("max-p99-ms", "0");
+        DEFAULT_OPTIONS.put("max-error-rate", "0");
+    }
+
+    /**
+     * Logger of the pipeline, kept so that its level holds. The run counts the failed requests
+     * itself, their errors would only flood the report.
+     */
+    private static final Logger PIPELINE_LOGGER = Logger.getLogger(QueryUtils.class.getName());
+
+    private final int mConcurrency;
+    private final int mPageSize;
+    private final LoadTestServer mServer;
+
+    /**
+     * Page number of the next request, so every request has its own URL
+     */
+    private final AtomicInteger mNextPage = new AtomicInteger(1);
+
+    private final PipelineHistogram mLatencies = new PipelineHistogram();
+    private final AtomicLong mFailures = new AtomicLong();
+    private final AtomicLong mNewsCount = new AtomicLong();
+    private final AtomicLong mAllocatedBytes = new AtomicLong();
+
+    private LoadTest(int concurrency, int pageSize, LoadTestServer server) {
+        mConcurrency = concurrency;
+        mPageSize = pageSize;
+        mServer = server;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULT_OPTIONS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !options.containsKey(name)) {
+                System.err.println("Usage: LoadTest [--option=value...], options and defaults: "
+                        + DEFAULT_OPTIONS);
+                System.exit(2);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        System.out.println("Load test " + options);
+        GuardianHttpClient.configureConnectionPool();
+        PipelineMetrics.setEnabled(true);
+        PIPELINE_LOGGER.setLevel(Level.OFF);
+
+        LoadTestServer server = new LoadTestServer(
+                Long.parseLong(options.get("latency-ms")),
+                Integer.parseInt(options.get("trickle-bytes-per-second")),
+                Double.parseDouble(options.get("failure-rate")),
+                Integer.parseInt(options.get("failure-burst")),
+                Double.parseDouble(options.get("throttle-rate")));
+        boolean passed;
+        try {
+            LoadTest loadTest = new LoadTest(Integer.parseInt(options.get("concurrency")),
+                    Integer.parseInt(options.get("page-size")), server);
+            loadTest.run(Integer.parseInt(options.get("warmup")));
+            loadTest.reset();
+
+            long startNanos = System.nanoTime();
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            loadTest.run(Integer.parseInt(options.get("requests")));
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+            loadTest.report(seconds, gcCount() - gcCount, gcMillis() - gcMillis);
+            passed = loadTest.check(Double.parseDouble(options.get("max-p99-ms")),
+                    Double.parseDouble(options.get("max-error-rate")));
+        } finally {
+            server.stop();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Sends the given number of requests from {@link #mConcurrency} threads and waits for them.
+     */
+    private void run(int requests) throws InterruptedException {
+        final AtomicInteger left = new AtomicInteger(requests);
+        final CountDownLatch done = new CountDownLatch(mConcurrency);
+        for (int i = 0; i < mConcurrency; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long allocatedBytes = allocatedBytes();
+                        while (left.getAndDecrement() > 0) {
+                            fetch();
+                        }
+                        mAllocatedBytes.addAndGet(allocatedBytes() - allocatedBytes);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "load-" + (i + 1));
+            thread.start();
+        }
+        done.await();
+    }
+
+    /**
+     * Sends one request and records its latency, or its failure.
+     */
+    private void fetch() {
+        String url = mServer.searchUrl(mPageSize, mNextPage.getAndIncrement());
+        long startNanos = System.nanoTime();
+        List<MarvelNews> marvelNewss = QueryUtils.fetchMarvelNewsData(url);
+        mLatencies.record((System.nanoTime() - startNanos) / 1000);
+        if (marvelNewss == null) {
+            mFailures.incrementAndGet();
+        } else {
+            mNewsCount.addAndGet(marvelNewss.size());
+        }
+    }
+
+    /**
+     * Forgets what the warmup recorded.
+     */
+    private void reset() {
+        mLatencies.reset();
+        mFailures.set(0);
+        mNewsCount.set(0);
+        mAllocatedBytes.set(0);
+        PipelineMetrics.reset();
+        mServer.resetCounts();
+    }
+
+    private void report(double seconds, long gcCount, long gcMillis) {
+        long requests = mLatencies.getCount();
+        System.out.println(String.format(Locale.US,
+                "requests %d, failed %d, %.1f s%n"
+                        + "throughput %.1f requests/s, %.0f news/s%n"
+                        + "latency ms p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n"
+                        + "allocation %.1f KB/request, %d GCs, %d ms in GC%n"
+                        + "server %d requests, %d failed, %d throttled, %.1f MB sent",
+                requests, mFailures.get(), seconds,
+                requests / seconds, mNewsCount.get() / seconds,
+                mLatencies.getPercentile(50) / 1000.0, mLatencies.getPercentile(90) / 1000.0,
+                mLatencies.getPercentile(99) / 1000.0, mLatencies.getPercentile(99.9) / 1000.0,
+                mLatencies.getMax() / 1000.0,
+                requests == 0 ? 0 : mAllocatedBytes.get() / 1024.0 / requests, gcCount, gcMillis,
+                mServer.getRequestCount(), mServer.getFailureCount(), mServer.getThrottleCount(),
+                mServer.getBytesSent() / (1024.0 * 1024.0)));
+        System.out.println();
+        System.out.print(PipelineMetrics.dump());
+    }
+
+    /**
+     * Prints the limits the run exceeds.
+     *
+     * @return true if it exceeds none
+     */
+    private boolean check(double maxP99Millis, double maxErrorRate) {
+        boolean passed = true;
+        double p99Millis = mLatencies.getPercentile(99) / 1000.0;
+        if (maxP99Millis > 0 && p99Millis > maxP99Millis) {
+            System.out.println(String.format(Locale.US, "FAILED: p99 %.1f ms > %.1f ms",
+                    p99Millis, maxP99Millis));
+            passed = false;
+        }
+        double errorRate = mLatencies.getCount() == 0
+                ? 0 : (double) mFailures.get() / mLatencies.getCount();
+        if (maxErrorRate > 0 && errorRate > maxErrorRate) {
+            System.out.println(String.format(Locale.US, "FAILED: error rate %.4f > %.4f",
+                    errorRate, maxErrorRate));
+            passed = false;
+        }
+        return passed;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or 0 if the JVM doesn't say.
+     */
+    private static long allocatedBytes() {
+        return allocatedBytes(Thread.currentThread());
+    }
+
+    private static long allocatedBytes(Thread thread) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported()) {
+                return Math.max(0, allocations.getThreadAllocatedBytes(thread.getId()));
+            }
+        }
+        return 0;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.android.marvelnews;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Guardian "/search" endpoint, answering every request with a page of
+ * synthetic results the size of its "page-size", like content.guardianapis.com does.
+ * <p>
+ * Each response waits a first-byte latency, then its body is sent at once or trickled at a set
+ * rate. Failures come in bursts of "503 Service Unavailable" responses, as they do when a
+ * backend restarts, and a share of the requests may be throttled with "429 Too Many Requests".
+ */
+final class LoadTestServer {
+
+    /**
+     * Size of the chunks of a trickled body
+     */
+    private static final int TRICKLE_CHUNK_BYTES = 1024;
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Responses already built, by number of results
+     */
+    private final ConcurrentHashMap<Integer, byte[]> mResponses = new ConcurrentHashMap<>();
+
+    private final long mLatencyMillis;
+    private final int mTrickleBytesPerSecond;
+    private final double mFailureRate;
+    private final int mFailureBurst;
+    private final double mThrottleRate;
+
+    private final AtomicInteger mFailuresLeft = new AtomicInteger();
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mFailureCount = new AtomicLong();
+    private final AtomicLong mThrottleCount = new AtomicLong();
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    /**
+     * Constructs and starts a new {@link LoadTestServer} on a free loopback port.
+     *
+     * @param latencyMillis         wait before the headers of every response
+     * @param trickleBytesPerSecond rate at which bodies are sent, or 0 to send them at once
+     * @param failureRate           share of the requests answered with a "503"
+     * @param failureBurst          number of requests in a row every failure lasts for
+     * @param throttleRate          share of the requests answered with a "429"
+     */
+    LoadTestServer(long latencyMillis, int trickleBytesPerSecond, double failureRate,
+                   int failureBurst, double throttleRate) throws IOException {
+        mLatencyMillis = latencyMillis;
+        mTrickleBytesPerSecond = trickleBytesPerSecond;
+        mFailureRate = failureRate;
+        mFailureBurst = Math.max(1, failureBurst);
+        mThrottleRate = throttleRate;
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serveSearch(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    /**
+     * Returns the URL of a search for a page of the given size. Every page number gets its own
+     * URL, so concurrent requests aren't shared by the {@link RequestCoalescer}.
+     */
+    String searchUrl(int pageSize, int page) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort()
+                + "/search?q=marvel&show-tags=contributor&show-fields=thumbnail"
+                + "&page-size=" + pageSize + "&page=" + page + "&api-key=test";
+    }
+
+    long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    long getFailureCount() {
+        return mFailureCount.get();
+    }
+
+    long getThrottleCount() {
+        return mThrottleCount.get();
+    }
+
+    long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    /**
+     * Sets the counts back to 0.
+     */
+    void resetCounts() {
+        mRequestCount.set(0);
+        mFailureCount.set(0);
+        mThrottleCount.set(0);
+        mBytesSent.set(0);
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    private void serveSearch(HttpExchange exchange) throws IOException {
+        mRequestCount.incrementAndGet();
+        sleep(mLatencyMillis);
+
+        boolean fail;
+        boolean throttle;
+        synchronized (mRandom) {
+            // A burst starts often enough for the failures to make up the failure rate
+            if (mFailuresLeft.get() == 0 && mRandom.nextDouble() < mFailureRate / mFailureBurst) {
+                mFailuresLeft.set(mFailureBurst);
+            }
+            fail = mFailuresLeft.get() > 0;
+            if (fail) {
+                mFailuresLeft.decrementAndGet();
+            }
+            throttle = !fail && mRandom.nextDouble() < mThrottleRate;
+        }
+        if (fail) {
+            mFailureCount.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+        if (throttle) {
+            mThrottleCount.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            exchange.sendResponseHeaders(429, -1);
+            return;
+        }
+
+        byte[] body = response(pageSize(exchange.getRequestURI().getRawQuery()));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            if (mTrickleBytesPerSecond <= 0) {
+                out.write(body);
+            } else {
+                long chunkMillis = TRICKLE_CHUNK_BYTES * 1000L / mTrickleBytesPerSecond;
+                for (int offset = 0; offset < body.length; offset += TRICKLE_CHUNK_BYTES) {
+                    out.write(body, offset, Math.min(TRICKLE_CHUNK_BYTES, body.length - offset));
+                    out.flush();
+                    sleep(chunkMillis);
+                }
+            }
+            mBytesSent.addAndGet(body.length);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the response holding the given number of results, built once per size.
+     */
+    private byte[] response(int results) throws IOException {
+        byte[] response = mResponses.get(results);
+        if (response == null) {
+            response = BenchmarkFixtures.searchResponse(results);
+            mResponses.putIfAbsent(results, response);
+        }
+        return response;
+    }
+
+    private static int pageSize(String rawQuery) {
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                if (pair.startsWith("page-size=")) {
+                    try {
+                        return Math.max(1, Integer.parseInt(pair.substring(10)));
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return 10;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while answering");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android.marvelnews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MarvelNewsParser} on search responses of 10, 200 and 5,000 results, including
+ * the creation of every {@link MarvelNews} and its display strings. Each size is measured for
+ * the query of the list and for the "show-elements=all" query it used to send, whose responses
+ * also carry the media elements of every result.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"10", "200", "5000"})
+    public int results;
+
+    /**
+     * Shape of the response: "minimal" for the query of the list, "all-elements" for the old one
+     */
+    @Param({"minimal", "all-elements"})
+    public String query;
+
+    private byte[] mResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        mResponse = BenchmarkFixtures.searchResponse("all-elements".equals(query)
+                ? BenchmarkFixtures.ALL_ELEMENTS_RESPONSE
+                : BenchmarkFixtures.MINIMAL_RESPONSE, results);
+    }
+
+    @Benchmark
+    public MarvelNewsParser.PageInfo parse(final Blackhole blackhole) throws IOException {
+        return new MarvelNewsParser().parse(
+                new InputStreamReader(new ByteArrayInputStream(mResponse), BenchmarkFixtures.UTF_8),
+                new MarvelNewsParser.Callback() {
+                    @Override
+                    public void onMarvelNews(MarvelNews marvelNews) {
+                        blackhole.consume(marvelNews);
+                    }
+                });
+    }
+}
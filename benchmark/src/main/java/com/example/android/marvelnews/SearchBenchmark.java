@@ -0,0 +1,75 @@
+package com.example.android.marvelnews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the filter-as-you-type queries of the search box over a {@link MarvelNewsSearchIndex}
+ * of 50k news, indexed page by page as the loader delivers them. A keystroke has to stay well
+ * within a frame, 16 ms, for the list to keep up with the typing.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {"marvel", "avengers", "infinity", "war", "black",
+            "panther", "spider", "man", "homecoming", "thor", "ragnarok", "captain", "america",
+            "studios", "review", "box", "office", "trailer", "cast", "director", "sequel",
+            "superhero", "film", "premiere", "guardians", "galaxy", "ant", "wasp", "doctor",
+            "strange", "iron", "hulk", "venom", "deadpool", "x", "men", "disney", "fox"};
+
+    private static final String[] SECTIONS = {"Film", "Culture", "Books", "Games", "Comics"};
+
+    private static final int NEWS = 50000;
+
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Text of the search box after successive keystrokes
+     */
+    @Param({"m", "marvel", "marvel av", "marvel avengers film"})
+    public String typed;
+
+    private MarvelNewsSearchIndex mIndex;
+
+    @Setup
+    public void setUp() {
+        List<MarvelNews> marvelNewss = new ArrayList<>(NEWS);
+        for (int i = 0; i < NEWS; i++) {
+            String title = WORDS[i % WORDS.length] + " " + WORDS[(i / 3) % WORDS.length] + " "
+                    + WORDS[(i * 7) % WORDS.length] + " " + WORDS[(i / 11) % WORDS.length]
+                    + " part " + i;
+            marvelNewss.add(new MarvelNews("Author: Contributor" + (i % 300) + " Surname",
+                    title, SECTIONS[i % SECTIONS.length], new Date(1500000000000L + i * 60000L),
+                    "https://www.theguardian.com/film/" + i));
+        }
+        // Indexed as the pages are delivered, each delivery holding the previous ones
+        mIndex = new MarvelNewsSearchIndex();
+        for (int end = PAGE_SIZE; end <= NEWS; end += PAGE_SIZE) {
+            mIndex.update(marvelNewss.subList(0, end));
+        }
+    }
+
+    @Benchmark
+    public List<MarvelNews> keystroke() {
+        return mIndex.search(typed);
+    }
+}
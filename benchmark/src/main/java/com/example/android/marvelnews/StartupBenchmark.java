@@ -0,0 +1,112 @@
+package com.example.android.marvelnews;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from a cold start to the first row of the list that can be bound, with and
+ * without the {@link MarvelNewsSnapshot} of the last list.
+ * <p>
+ * With the snapshot, the first row comes from reading the snapshot file. Without it, it comes
+ * once the first page of the search has been received and parsed; the page is served from a
+ * loopback server, so the time measured leaves out the latency of a real network and is a lower
+ * bound of what the snapshot saves.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final String SEARCH_KEY = "2018-01-01|newest|[film]";
+
+    /**
+     * Number of news of the first page and of the snapshot, at most the news the app keeps in
+     * the snapshot
+     */
+    @Param({"10", "100"})
+    public int results;
+
+    private File mSnapshot;
+    private HttpServer mServer;
+    private String mSearchUrl;
+    private GuardianHttpClient mHttpClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        mSnapshot = File.createTempFile("startup", ".snapshot");
+        MarvelNewsSnapshot.write(mSnapshot, SEARCH_KEY, BenchmarkFixtures.news(results));
+
+        final byte[] response = BenchmarkFixtures.searchResponse(results);
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream body = exchange.getResponseBody();
+                body.write(response);
+                body.close();
+            }
+        });
+        mServer.start();
+        mSearchUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search";
+        mHttpClient = new GuardianHttpClient();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mServer.stop(0);
+        mSnapshot.delete();
+    }
+
+    @Benchmark
+    public MarvelNews firstRowFromSnapshot() {
+        return MarvelNewsSnapshot.read(mSnapshot, SEARCH_KEY).get(0);
+    }
+
+    @Benchmark
+    public MarvelNews firstRowFromNetwork() throws IOException {
+        final List<MarvelNews> page = new ArrayList<>();
+        GuardianHttpClient.Response response = mHttpClient.get(mSearchUrl, null, null);
+        try {
+            // The loader delivers the news once their page is parsed
+            new MarvelNewsParser().parse(
+                    new InputStreamReader(response.getBody(), BenchmarkFixtures.UTF_8),
+                    new MarvelNewsParser.Callback() {
+                        @Override
+                        public void onMarvelNews(MarvelNews marvelNews) {
+                            page.add(marvelNews);
+                        }
+                    });
+        } finally {
+            response.close();
+        }
+        return page.get(0);
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.android.marvelnews;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloads the bodies of the first news of a list into a store, so that they can be read
+ * without any request.
+ * <p>
+ * The bodies are requested a few articles at a time, with the "ids" parameter of the search
+ * and the "body" field. News whose body is already stored are skipped. A prefetch stays within
+ * a budget of bytes received and time spent: both are checked before each request, and a
+ * request never asks for more articles than the bytes left are expected to hold, going by the
+ * bodies received so far. Requests are sent one after the other, so a prefetch never takes
+ * more than one connection.
+ * <p>
+ * The bodies are stored by the website URL of their news, see {@link #getBody(DiskResponseCache,
+ * String)}.
+ */
+public final class ArticlePrefetcher {
+
+    private static final Logger LOGGER = Logger.getLogger(ArticlePrefetcher.class.getName());
+
+    /**
+     * Largest number of articles asked for in one request
+     */
+    private static final int MAX_BATCH_SIZE = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String mSearchUrl;
+    private final DiskResponseCache mStore;
+    private final GuardianHttpClient mHttpClient;
+    private final int mMaxArticles;
+    private final long mMaxBytes;
+    private final long mMaxMillis;
+
+    /**
+     * Constructs a new {@link ArticlePrefetcher}.
+     *
+     * @param searchUrl   URL of the search endpoint with the API key, see
+     *                    {@link MarvelNewsSearch#articlesUrl()}
+     * @param store       stores the bodies by website URL
+     * @param httpClient  sends the requests
+     * @param maxArticles number of news, from the top of the list, whose body is prefetched
+     *                    by default
+     * @param maxBytes    bytes received after which a prefetch stops
+     * @param maxMillis   time after which a prefetch stops
+     */
+    public ArticlePrefetcher(String searchUrl, DiskResponseCache store,
+                             GuardianHttpClient httpClient, int maxArticles, long maxBytes,
+                             long maxMillis) {
+        mSearchUrl = searchUrl;
+        mStore = store;
+        mHttpClient = httpClient;
+        mMaxArticles = maxArticles;
+        mMaxBytes = maxBytes;
+        mMaxMillis = maxMillis;
+    }
+
+    /**
+     * Downloads the bodies of the first news of the list that aren't stored yet, within the
+     * budget. This blocks, so call it on a background thread.
+     *
+     * @param marvelNewss  list the user sees, in its order
+     * @param cancellation token aborting the prefetch, may be null
+     * @return the number of bodies stored
+     */
+    public int prefetch(List<MarvelNews> marvelNewss, FetchCancellation cancellation) {
+        return prefetch(marvelNewss, mMaxArticles, cancellation);
+    }
+
+    /**
+     * Downloads the bodies of the first news of the list that aren't stored yet, within the
+     * budget and the given number of news. This blocks, so call it on a background thread.
+     *
+     * @param marvelNewss  list the user sees, in its order
+     * @param maxArticles  number of news, from the top of the list, whose body is prefetched
+     * @param cancellation token aborting the prefetch, may be null
+     * @return the number of bodies stored
+     */
+    public int prefetch(List<MarvelNews> marvelNewss, int maxArticles,
+                        FetchCancellation cancellation) {
+        long startNanos = System.nanoTime();
+        long maxNanos = TimeUnit.MILLISECONDS.toNanos(mMaxMillis);
+
+        // Content ids of the news to prefetch
+        List<String> ids = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        int count = Math.min(maxArticles, marvelNewss.size());
+        for (int i = 0; i < count; i++) {
+            String url = marvelNewss.get(i).getUrl();
+            String id = articleId(url);
+            DiskResponseCache.Entry entry = id != null ? mStore.get(url) : null;
+            if (id != null && (entry == null || !entry.isFresh(now))) {
+                ids.add(id);
+            }
+        }
+
+        int stored = 0;
+        long bytesReceived = 0;
+        int next = 0;
+        while (next < ids.size() && bytesReceived < mMaxBytes
+                && System.nanoTime() - startNanos < maxNanos
+                && (cancellation == null || !cancellation.isCanceled())) {
+            int batchSize = MAX_BATCH_SIZE;
+            if (stored > 0) {
+                // Don't ask for more articles than the bytes left should hold
+                long bytesPerArticle = Math.max(1, bytesReceived / stored);
+                batchSize = (int) Math.min(MAX_BATCH_SIZE,
+                        (mMaxBytes - bytesReceived) / bytesPerArticle);
+                if (batchSize == 0) {
+                    break;
+                }
+            }
+            List<String> batch = ids.subList(next, Math.min(ids.size(), next + batchSize));
+            next += batch.size();
+
+            GuardianHttpClient.Response response = null;
+            try {
+                String requestUrl = new GuardianQuery.Builder(mSearchUrl)
+                        .ids(batch)
+                        .pageSize(batch.size())
+                        .bind(GuardianQuery.fields(GuardianQuery.Field.BODY))
+                        .build();
+                response = mHttpClient.get(requestUrl, null, cancellation);
+                if (response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    LOGGER.severe("Error response code: " + response.getResponseCode());
+                    break;
+                }
+                stored += storeBodies(new InputStreamReader(response.getBody(), UTF_8));
+            } catch (IOException e) {
+                if (cancellation == null || !cancellation.isCanceled()) {
+                    LOGGER.log(Level.SEVERE, "Problem prefetching the article bodies.", e);
+                }
+                break;
+            } finally {
+                if (response != null) {
+                    response.close();
+                    bytesReceived += response.getTiming().bytesReceived;
+                }
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Returns the stored body of the news with the given website URL, or null if it isn't
+     * stored.
+     */
+    public static String getBody(DiskResponseCache store, String url) {
+        DiskResponseCache.Entry entry = url != null ? store.get(url) : null;
+        if (entry == null) {
+            return null;
+        }
+        try {
+            Reader reader = new InputStreamReader(entry.openBody(), UTF_8);
+            try {
+                StringBuilder body = new StringBuilder();
+                char[] buffer = new char[8192];
+                int count;
+                while ((count = reader.read(buffer)) >= 0) {
+                    body.append(buffer, 0, count);
+                }
+                return body.toString();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading the stored body of " + url, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the content id of the Guardian article at the given website URL, i.e.
+     * "film/2018/may/15/some-review", or null if it isn't a Guardian article.
+     */
+    public static String articleId(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url);
+            String host = uri.getHost();
+            String path = uri.getPath();
+            if (host == null || !host.endsWith("theguardian.com") || path == null
+                    || path.length() <= 1) {
+                return null;
+            }
+            return path.substring(1);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the body of each result of the response by its website URL.
+     *
+     * @return the number of bodies stored
+     */
+    private int storeBodies(Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        int stored = 0;
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                if (!"response".equals(jsonReader.nextName())) {
+                    jsonReader.skipValue();
+                    continue;
+                }
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    if (!"results".equals(jsonReader.nextName())) {
+                        jsonReader.skipValue();
+                        continue;
+                    }
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        if (storeBody(jsonReader)) {
+                            stored++;
+                        }
+                    }
+                    jsonReader.endArray();
+                }
+                jsonReader.endObject();
+            }
+            jsonReader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Unexpected JSON structure", e);
+        }
+        return stored;
+    }
+
+    /**
+     * Reads a single entry of the "results" array and stores its body.
+     *
+     * @return true if the entry had a body
+     */
+    private boolean storeBody(JsonReader reader) throws IOException {
+        String url = null;
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("webUrl".equals(name) && reader.peek() == JsonToken.STRING) {
+                url = reader.nextString();
+            } else if ("fields".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("body".equals(reader.nextName())
+                            && reader.peek() == JsonToken.STRING) {
+                        body = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (url == null || body == null || body.isEmpty()) {
+            return false;
+        }
+        mStore.cacheWhileReading(url, new ByteArrayInputStream(body.getBytes(UTF_8)), null, null)
+                .commit();
+        return true;
+    }
+}
@@ -0,0 +1,511 @@
+package com.example.android.marvelnews;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Disk-backed cache of HTTP response bodies with least-recently-used eviction.
+ * <p>
+ * Entries are keyed on the request URL normalized without its "api-key" parameter, so that a key
+ * change doesn't throw the cache away. Each entry stores the validators of the response (ETag and
+ * Last-Modified) next to the body, so an expired entry can be revalidated with a conditional
+ * request instead of being downloaded again.
+ * <p>
+ * An entry is fresh for {@code maxAgeMillis} after it was stored or revalidated. For another
+ * {@code staleWhileRevalidateMillis} it may still be shown while it is being revalidated.
+ */
+public final class DiskResponseCache {
+
+    /**
+     * Version of the entry file format
+     */
+    private static final int ENTRY_VERSION = 1;
+
+    /**
+     * Byte offset of the "stored at" timestamp in an entry file, right after the version
+     */
+    private static final int STORED_AT_OFFSET = 4;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Directory holding one file per entry
+     */
+    private final File mDirectory;
+
+    /**
+     * Maximum total size of the entry files
+     */
+    private final long mMaxBytes;
+
+    /**
+     * Time an entry is served without revalidation
+     */
+    private final long mMaxAgeMillis;
+
+    /**
+     * Time after expiry during which an entry may be served while it is revalidated
+     */
+    private final long mStaleWhileRevalidateMillis;
+
+    /**
+     * File size of each entry, ordered from least to most recently used
+     */
+    private final LinkedHashMap<String, Long> mLruIndex = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Sum of the sizes in {@link #mLruIndex}
+     */
+    private long mSize;
+
+    /**
+     * Constructs a new {@link DiskResponseCache}, indexing the entries already on disk.
+     *
+     * @param directory                  to store the entries in, created if needed
+     * @param maxBytes                   maximum total size of the entries
+     * @param maxAgeMillis               time an entry is fresh after it was stored or revalidated
+     * @param staleWhileRevalidateMillis time after expiry an entry may be shown while revalidating
+     */
+    public DiskResponseCache(File directory, long maxBytes, long maxAgeMillis,
+                             long staleWhileRevalidateMillis) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mMaxAgeMillis = maxAgeMillis;
+        mStaleWhileRevalidateMillis = staleWhileRevalidateMillis;
+
+        if (!directory.isDirectory()) {
+            directory.mkdirs();
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Rebuild the LRU order from the file modification times, oldest first.
+        List<File> entries = new ArrayList<>(Arrays.asList(files));
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : entries) {
+            String name = file.getName();
+            if (name.endsWith(ENTRY_SUFFIX)) {
+                mLruIndex.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), file.length());
+                mSize += file.length();
+            } else if (name.endsWith(TEMP_SUFFIX)) {
+                // Left over from an interrupted write
+                file.delete();
+            }
+        }
+        trimToSize();
+    }
+
+    /**
+     * Returns the cached entry for the request URL, or null if there is none.
+     */
+    public Entry get(String url) {
+        String key = key(url);
+        File file = entryFile(key);
+        synchronized (this) {
+            if (mLruIndex.get(key) == null) {
+                return null;
+            }
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != ENTRY_VERSION) {
+                remove(key);
+                return null;
+            }
+            long storedAt = in.readLong();
+            String etag = in.readUTF();
+            String lastModified = in.readUTF();
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(file, storedAt, etag, lastModified);
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Marks the entry for the request URL as just validated by the server, after a
+     * "304 Not Modified" response.
+     *
+     * @return false if the entry has been evicted since it was read, and there is none to mark
+     */
+    public boolean markValidated(String url) {
+        String key = key(url);
+        File entryFile = entryFile(key);
+        RandomAccessFile file = null;
+        // Under the lock, so the entry can't be removed between the check and the write, which
+        // would leave a file of just the date outside the index
+        synchronized (this) {
+            if (mLruIndex.get(key) == null || !entryFile.isFile()) {
+                return false;
+            }
+            try {
+                file = new RandomAccessFile(entryFile, "rw");
+                file.seek(STORED_AT_OFFSET);
+                file.writeLong(System.currentTimeMillis());
+                return true;
+            } catch (IOException e) {
+                remove(key);
+                return false;
+            } finally {
+                closeQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * Returns a stream that copies everything read from {@code body} into a new entry for the
+     * request URL. The entry replaces the previous one only when {@link CachingInputStream#commit()}
+     * is called, after the body has been read successfully.
+     */
+    public CachingInputStream cacheWhileReading(String url, InputStream body, String etag,
+                                                String lastModified) throws IOException {
+        String key = key(url);
+        File temp = File.createTempFile(key, TEMP_SUFFIX, mDirectory);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(ENTRY_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(etag != null ? etag : "");
+            out.writeUTF(lastModified != null ? lastModified : "");
+        } catch (IOException e) {
+            closeQuietly(out);
+            temp.delete();
+            throw e;
+        }
+        return new CachingInputStream(body, out, key, temp);
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public synchronized void clear() {
+        for (String key : new ArrayList<>(mLruIndex.keySet())) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Returns the total size of the entries in bytes.
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    private synchronized void remove(String key) {
+        Long size = mLruIndex.remove(key);
+        if (size != null) {
+            mSize -= size;
+        }
+        entryFile(key).delete();
+    }
+
+    private synchronized void commit(String key, File temp) throws IOException {
+        File file = entryFile(key);
+        Long previousSize = mLruIndex.remove(key);
+        if (previousSize != null) {
+            mSize -= previousSize;
+        }
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Could not store cache entry " + file);
+            }
+        }
+        mLruIndex.put(key, file.length());
+        mSize += file.length();
+        trimToSize();
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits in its maximum size.
+     */
+    private synchronized void trimToSize() {
+        Iterator<Map.Entry<String, Long>> eldest = mLruIndex.entrySet().iterator();
+        while (mSize > mMaxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            mSize -= entry.getValue();
+            entryFile(entry.getKey()).delete();
+            eldest.remove();
+        }
+    }
+
+    private File entryFile(String key) {
+        return new File(mDirectory, key + ENTRY_SUFFIX);
+    }
+
+    /**
+     * Returns the cache key of a request URL: a hash of the URL with a lower-case scheme and
+     * host, its query parameters sorted and its "api-key" parameter removed.
+     */
+    static String key(String url) {
+        return sha1Hex(normalize(url));
+    }
+
+    /**
+     * Returns the request URL with a lower-case scheme and host, its query parameters sorted
+     * and its "api-key" parameter removed.
+     */
+    static String normalize(String url) {
+        int queryStart = url.indexOf('?');
+        String base = queryStart >= 0 ? url.substring(0, queryStart) : url;
+        int hostEnd = base.indexOf('/', base.indexOf("://") + 3);
+        if (hostEnd < 0) {
+            hostEnd = base.length();
+        }
+        base = base.substring(0, hostEnd).toLowerCase(Locale.US) + base.substring(hostEnd);
+        if (queryStart < 0) {
+            return base;
+        }
+
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : url.substring(queryStart + 1).split("&")) {
+            if (!parameter.isEmpty() && !parameter.startsWith("api-key=")) {
+                parameters.add(parameter);
+            }
+        }
+        Collections.sort(parameters);
+
+        StringBuilder normalized = new StringBuilder(base);
+        for (int i = 0; i < parameters.size(); i++) {
+            normalized.append(i == 0 ? '?' : '&').append(parameters.get(i));
+        }
+        return normalized.toString();
+    }
+
+    private static String sha1Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // Nothing else can be done
+            }
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    public final class Entry {
+
+        private final File mFile;
+        private final long mStoredAt;
+
+        /**
+         * Validators as stored in the entry file, empty if the response had none
+         */
+        private final String mEtag;
+        private final String mLastModified;
+
+        Entry(File file, long storedAt, String etag, String lastModified) {
+            mFile = file;
+            mStoredAt = storedAt;
+            mEtag = etag;
+            mLastModified = lastModified;
+        }
+
+        /**
+         * Returns the ETag of the response, or null if it had none.
+         */
+        public String getEtag() {
+            return emptyToNull(mEtag);
+        }
+
+        /**
+         * Returns the Last-Modified date of the response, or null if it had none.
+         */
+        public String getLastModified() {
+            return emptyToNull(mLastModified);
+        }
+
+        /**
+         * Returns true if the entry can be served without revalidation.
+         */
+        public boolean isFresh(long nowMillis) {
+            return nowMillis - mStoredAt < mMaxAgeMillis;
+        }
+
+        /**
+         * Returns true if the entry can be served while it is being revalidated.
+         */
+        public boolean isUsableWhileRevalidating(long nowMillis) {
+            return nowMillis - mStoredAt < mMaxAgeMillis + mStaleWhileRevalidateMillis;
+        }
+
+        /**
+         * Opens the stored response body.
+         *
+         * @throws IOException if the entry has been replaced by another response since it was
+         *                     read, or removed
+         */
+        public InputStream openBody() throws IOException {
+            // The file is opened again by name, so read its header again: a commit may have
+            // renamed another response over it. The body follows wherever the header ends.
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(mFile)));
+            try {
+                int version = in.readInt();
+                // Moved by markValidated(), it doesn't tell responses apart
+                in.readLong();
+                if (version != ENTRY_VERSION || !in.readUTF().equals(mEtag)
+                        || !in.readUTF().equals(mLastModified)) {
+                    throw new IOException("Replaced cache entry " + mFile);
+                }
+            } catch (IOException e) {
+                closeQuietly(in);
+                throw e;
+            }
+            return in;
+        }
+    }
+
+    /**
+     * Stream that writes everything read through it into a pending cache entry.
+     */
+    public final class CachingInputStream extends FilterInputStream {
+
+        private final OutputStream mCacheOut;
+        private final String mKey;
+        private final File mTemp;
+        private boolean mFailed;
+        private boolean mDone;
+
+        CachingInputStream(InputStream in, OutputStream cacheOut, String key, File temp) {
+            super(in);
+            mCacheOut = cacheOut;
+            mKey = key;
+            mTemp = temp;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                write(buffer, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            // Skipped bytes would be missing from the entry
+            mFailed = true;
+            return super.skip(count);
+        }
+
+        private void write(byte[] buffer, int offset, int length) {
+            if (mFailed) {
+                return;
+            }
+            try {
+                mCacheOut.write(buffer, offset, length);
+            } catch (IOException e) {
+                mFailed = true;
+            }
+        }
+
+        /**
+         * Stores the bytes read so far, plus the rest of the body, as the cached response.
+         */
+        public void commit() throws IOException {
+            if (mDone) {
+                return;
+            }
+            // Copy whatever follows the part that was consumed, e.g. trailing whitespace.
+            byte[] buffer = new byte[8192];
+            while (!mFailed && read(buffer, 0, buffer.length) >= 0) {
+                // read() copies into the entry
+            }
+            mDone = true;
+            closeQuietly(mCacheOut);
+            if (mFailed) {
+                mTemp.delete();
+            } else {
+                DiskResponseCache.this.commit(mKey, mTemp);
+            }
+        }
+
+        /**
+         * Drops the pending entry, keeping the previous one.
+         */
+        public void abort() {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            closeQuietly(mCacheOut);
+            mTemp.delete();
+        }
+
+        @Override
+        public void close() throws IOException {
+            abort();
+            super.close();
+        }
+    }
+}
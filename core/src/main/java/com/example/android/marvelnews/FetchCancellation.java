@@ -0,0 +1,134 @@
+package com.example.android.marvelnews;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lets a caller abort the requests it started.
+ * <p>
+ * Canceling disconnects every connection registered with the token, which unblocks a thread
+ * waiting on a connect or a read, and makes every stream wrapped by the token fail on its next
+ * read. Connections registered after the cancellation are disconnected right away.
+ */
+public final class FetchCancellation {
+
+    /**
+     * True once {@link #cancel()} has been called
+     */
+    private volatile boolean mCanceled;
+
+    /**
+     * Connections currently in use by requests of this token
+     */
+    private final Set<HttpURLConnection> mConnections = new HashSet<>();
+
+    /**
+     * Actions to run on cancellation
+     */
+    private final Set<Runnable> mListeners = new HashSet<>();
+
+    /**
+     * Aborts every request of this token.
+     */
+    public void cancel() {
+        HttpURLConnection[] connections;
+        Runnable[] listeners;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            connections = mConnections.toArray(new HttpURLConnection[mConnections.size()]);
+            mConnections.clear();
+            listeners = mListeners.toArray(new Runnable[mListeners.size()]);
+            mListeners.clear();
+        }
+        for (HttpURLConnection connection : connections) {
+            connection.disconnect();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Returns true once the requests of this token have been canceled.
+     */
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Throws if the requests of this token have been canceled.
+     */
+    public void throwIfCanceled() throws InterruptedIOException {
+        if (mCanceled) {
+            throw new InterruptedIOException("Canceled");
+        }
+    }
+
+    /**
+     * Registers a connection to disconnect on cancellation.
+     */
+    void register(HttpURLConnection connection) throws InterruptedIOException {
+        synchronized (this) {
+            if (!mCanceled) {
+                mConnections.add(connection);
+                return;
+            }
+        }
+        connection.disconnect();
+        throw new InterruptedIOException("Canceled");
+    }
+
+    /**
+     * Forgets a connection once its request is finished.
+     */
+    synchronized void unregister(HttpURLConnection connection) {
+        mConnections.remove(connection);
+    }
+
+    /**
+     * Runs the given action on cancellation, or right away if this token is already canceled.
+     */
+    void addListener(Runnable listener) {
+        synchronized (this) {
+            if (!mCanceled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Forgets an action added with {@link #addListener(Runnable)}.
+     */
+    synchronized void removeListener(Runnable listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Returns a stream that fails on its next read once this token is canceled.
+     */
+    InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                throwIfCanceled();
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                throwIfCanceled();
+                return super.read(buffer, offset, length);
+            }
+        };
+    }
+}
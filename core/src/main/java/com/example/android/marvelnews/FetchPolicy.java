@@ -0,0 +1,211 @@
+package com.example.android.marvelnews;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Decides how much the app fetches, and how patiently, from the network it is on.
+ * <p>
+ * An unmetered network gets the page size of the settings, several requests in flight and
+ * deep prefetches. A metered network gets smaller pages, fewer requests in flight and shallow
+ * prefetches. A slow network, whichever its kind, gets small pages requested one at a time,
+ * longer timeouts and no prefetch at all. The speed is measured from the bodies of the
+ * responses big enough to tell, with an exponential moving average, and a network is only
+ * fast again once it is clearly faster than the slow threshold. The measure starts over on
+ * every change of network.
+ * <p>
+ * Listeners are told whenever the network or the limits change, on the thread of the change:
+ * the main thread for a change of network, a request thread for a change of speed.
+ */
+public final class FetchPolicy {
+
+    /**
+     * Network the device is on.
+     */
+    public enum Link {
+        OFFLINE,
+        METERED,
+        UNMETERED
+    }
+
+    /**
+     * Receives the changes of network and of limits.
+     */
+    public interface Listener {
+        /**
+         * @param previousLink network before the change
+         * @param link         network now
+         * @param limits       limits now
+         */
+        void onPolicyChanged(Link previousLink, Link link, Limits limits);
+    }
+
+    /**
+     * What the app may fetch on a network.
+     */
+    public static final class Limits {
+
+        /**
+         * Largest number of results requested per page
+         */
+        public final int maxPageSize;
+
+        /**
+         * Number of requests in flight at the same time, all topics included
+         */
+        public final int concurrency;
+
+        public final int connectTimeoutMillis;
+        public final int readTimeoutMillis;
+
+        /**
+         * Number of news, from the top of the list, whose body is prefetched
+         */
+        public final int articlePrefetchCount;
+
+        /**
+         * Number of screens of thumbnails prefetched ahead of the scroll
+         */
+        public final int thumbnailPrefetchScreens;
+
+        Limits(int maxPageSize, int concurrency, int connectTimeoutMillis, int readTimeoutMillis,
+               int articlePrefetchCount, int thumbnailPrefetchScreens) {
+            this.maxPageSize = maxPageSize;
+            this.concurrency = concurrency;
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.readTimeoutMillis = readTimeoutMillis;
+            this.articlePrefetchCount = articlePrefetchCount;
+            this.thumbnailPrefetchScreens = thumbnailPrefetchScreens;
+        }
+
+        /**
+         * Returns the page size to request, given the one of the settings.
+         */
+        public int pageSize(int preferredPageSize) {
+            return Math.max(1, Math.min(preferredPageSize, maxPageSize));
+        }
+    }
+
+    static final Limits UNMETERED_LIMITS = new Limits(Integer.MAX_VALUE,
+            MarvelNewsFanOut.DEFAULT_CONCURRENCY, 10000, 10000, 10, 2);
+
+    static final Limits METERED_LIMITS = new Limits(30, 2, 15000, 15000, 3, 1);
+
+    static final Limits SLOW_LIMITS = new Limits(10, 1, 20000, 30000, 0, 0);
+
+    /**
+     * Speed, in bytes per second, under which a network is slow
+     */
+    static final long SLOW_BYTES_PER_SECOND = 48 * 1024;
+
+    /**
+     * Speed, in bytes per second, over which a slow network is fast again
+     */
+    static final long FAST_BYTES_PER_SECOND = 2 * SLOW_BYTES_PER_SECOND;
+
+    /**
+     * Smallest body, in bytes, whose transfer time tells the speed rather than the latency
+     */
+    static final long MIN_SAMPLE_BYTES = 16 * 1024;
+
+    /**
+     * Weight of the last sample in the average speed
+     */
+    private static final double SMOOTHING = 0.3;
+
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private Link mLink;
+
+    /**
+     * Average speed in bytes per second, or a negative value until it is measured
+     */
+    private double mBytesPerSecond = -1;
+
+    private boolean mSlow;
+
+    /**
+     * Constructs a new {@link FetchPolicy}.
+     *
+     * @param link network the device is on
+     */
+    public FetchPolicy(Link link) {
+        mLink = link;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Returns the network the device is on.
+     */
+    public synchronized Link getLink() {
+        return mLink;
+    }
+
+    /**
+     * Returns what the app may fetch on the network.
+     */
+    public synchronized Limits getLimits() {
+        if (mSlow) {
+            return SLOW_LIMITS;
+        }
+        return mLink == Link.UNMETERED ? UNMETERED_LIMITS : METERED_LIMITS;
+    }
+
+    /**
+     * Sets the network the device is on, and starts measuring its speed over.
+     */
+    public void setLink(Link link) {
+        Link previousLink;
+        Limits limits;
+        synchronized (this) {
+            if (link == mLink) {
+                return;
+            }
+            previousLink = mLink;
+            mLink = link;
+            mBytesPerSecond = -1;
+            mSlow = false;
+            limits = getLimits();
+        }
+        notifyListeners(previousLink, link, limits);
+    }
+
+    /**
+     * Measures the speed of the network from a finished request.
+     */
+    public void onRequestFinished(GuardianHttpClient.Timing timing) {
+        long bodyNanos = timing.endNanos - timing.firstByteNanos;
+        if (timing.endNanos == 0 || bodyNanos <= 0 || timing.bytesReceived < MIN_SAMPLE_BYTES) {
+            return;
+        }
+        double bytesPerSecond = timing.bytesReceived * 1e9 / bodyNanos;
+        Link link;
+        Limits limits;
+        synchronized (this) {
+            mBytesPerSecond = mBytesPerSecond < 0 ? bytesPerSecond
+                    : SMOOTHING * bytesPerSecond + (1 - SMOOTHING) * mBytesPerSecond;
+            boolean slow = mSlow ? mBytesPerSecond < FAST_BYTES_PER_SECOND
+                    : mBytesPerSecond < SLOW_BYTES_PER_SECOND;
+            if (slow == mSlow) {
+                return;
+            }
+            mSlow = slow;
+            link = mLink;
+            limits = getLimits();
+        }
+        notifyListeners(link, link, limits);
+    }
+
+    private void notifyListeners(Link previousLink, Link link, Limits limits) {
+        for (Listener listener : mListeners) {
+            listener.onPolicyChanged(previousLink, link, limits);
+        }
+    }
+}
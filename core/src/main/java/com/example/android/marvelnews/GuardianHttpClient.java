@@ -0,0 +1,450 @@
+package com.example.android.marvelnews;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP client used for every request to the Guardian API.
+ * <p>
+ * Connections are kept alive and reused across requests: a response body is read to its end
+ * and closed instead of disconnecting, which hands the connection back to the platform pool.
+ * Responses are requested gzip-compressed and decompressed while they are read. Transient
+ * failures (I/O errors before the body, 408, 429 and 5xx) are retried with a jittered
+ * exponential backoff. Each response carries the {@link Timing} of its request.
+ * <p>
+ * With a {@link GuardianRateLimiter}, every attempt waits for its turn first, and every response
+ * tells the limiter about the quota left and the throttling asked by the server.
+ */
+public final class GuardianHttpClient {
+
+    /**
+     * Receives the timing of every request once its response is closed.
+     */
+    public interface TimingListener {
+        void onRequestFinished(String url, Timing timing);
+    }
+
+    /**
+     * Number of idle connections kept alive per host by the platform pool
+     */
+    private static final String MAX_KEEP_ALIVE_CONNECTIONS = "5";
+
+    /**
+     * Largest number of bytes read to the end of a response before closing it to reuse the
+     * connection. Bigger leftovers are cheaper to drop with the connection.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final Random mRandom = new Random();
+
+    private volatile int mConnectTimeoutMillis = 15000;
+    private volatile int mReadTimeoutMillis = 10000;
+    private volatile int mMaxRetries = 2;
+    private volatile long mBaseBackoffMillis = 500;
+    private volatile long mMaxBackoffMillis = 8000;
+    private volatile TimingListener mTimingListener;
+    private volatile GuardianRateLimiter mRateLimiter;
+
+    /**
+     * Sizes the keep-alive pool of the platform for paging, unless the process already set it.
+     * The pool is shared by every {@link HttpURLConnection} of the process and reads its size
+     * once, so call this when the process starts, before the first request.
+     */
+    public static void configureConnectionPool() {
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", MAX_KEEP_ALIVE_CONNECTIONS);
+        }
+    }
+
+    /**
+     * Sets the connect and read timeouts of the next requests.
+     */
+    public void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Sets how often a request is retried, and the backoff before the first and the longest
+     * retry. The actual backoff is random between 0 and the exponential delay of the attempt.
+     */
+    public void setRetryPolicy(int maxRetries, long baseBackoffMillis, long maxBackoffMillis) {
+        mMaxRetries = maxRetries;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Sets the listener receiving the timing of every request, or null.
+     */
+    public void setTimingListener(TimingListener timingListener) {
+        mTimingListener = timingListener;
+    }
+
+    /**
+     * Sets the limiter the requests wait for, or null to send them right away. Clients sending
+     * requests with the same API key share one limiter.
+     */
+    public void setRateLimiter(GuardianRateLimiter rateLimiter) {
+        mRateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sends a GET request and returns its response once the headers have been received.
+     * The caller must close the response.
+     *
+     * @param url          to request
+     * @param headers      additional request headers, may be null
+     * @param cancellation token aborting the request, may be null
+     * @throws IOException if the request still fails after the retries, a
+     *                     {@link GuardianRateLimiter.RateLimitedException} if it would wait too
+     *                     long for its turn
+     */
+    public Response get(String url, Map<String, String> headers, FetchCancellation cancellation)
+            throws IOException {
+        Timing timing = new Timing();
+        int attempt = 0;
+        while (true) {
+            attempt++;
+            timing.attempts = attempt;
+            if (cancellation != null) {
+                cancellation.throwIfCanceled();
+            }
+            GuardianRateLimiter rateLimiter = mRateLimiter;
+            if (rateLimiter != null) {
+                rateLimiter.acquire(cancellation);
+            }
+
+            HttpURLConnection connection = null;
+            try {
+                connection = open(url, headers, cancellation, timing);
+                int responseCode = connection.getResponseCode();
+                timing.firstByteNanos = System.nanoTime();
+                if (rateLimiter != null) {
+                    rateLimiter.onResponse(responseCode, connection.getHeaderField("Retry-After"),
+                            connection.getHeaderField("X-RateLimit-Remaining-day"),
+                            connection.getHeaderField("X-RateLimit-Limit-day"),
+                            System.currentTimeMillis());
+                }
+                if (attempt <= mMaxRetries && isTransient(responseCode)) {
+                    release(connection, cancellation);
+                    connection = null;
+                    backOff(attempt, cancellation);
+                    continue;
+                }
+                Response response = new Response(url, connection, responseCode, timing, cancellation);
+                connection = null;
+                return response;
+            } catch (IOException e) {
+                if (connection != null) {
+                    if (cancellation != null) {
+                        cancellation.unregister(connection);
+                    }
+                    connection.disconnect();
+                }
+                if (attempt > mMaxRetries || (cancellation != null && cancellation.isCanceled())) {
+                    throw e;
+                }
+                backOff(attempt, cancellation);
+            }
+        }
+    }
+
+    private HttpURLConnection open(String url, Map<String, String> headers,
+                                   FetchCancellation cancellation, Timing timing) throws IOException {
+        timing.startNanos = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (cancellation != null) {
+            // Canceling disconnects the connection, which unblocks a pending connect or read
+            cancellation.register(connection);
+        }
+        connection.setConnectTimeout(mConnectTimeoutMillis);
+        connection.setReadTimeout(mReadTimeoutMillis);
+        connection.setRequestMethod("GET");
+        // Setting the header ourselves turns off transparent decompression, see Response.
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        connection.connect();
+        timing.connectNanos = System.nanoTime();
+        return connection;
+    }
+
+    /**
+     * Waits before the given retry, unless the request is canceled meanwhile.
+     */
+    private void backOff(int attempt, FetchCancellation cancellation) throws InterruptedIOException {
+        long exponential = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << Math.min(attempt - 1, 16));
+        long delay;
+        synchronized (mRandom) {
+            delay = (long) (mRandom.nextDouble() * exponential);
+        }
+        long deadline = System.currentTimeMillis() + delay;
+        try {
+            long remaining = delay;
+            while (remaining > 0) {
+                // Sleep in short steps to notice a cancellation quickly
+                Thread.sleep(Math.min(remaining, 100));
+                if (cancellation != null) {
+                    cancellation.throwIfCanceled();
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during backoff");
+        }
+    }
+
+    private static boolean isTransient(int responseCode) {
+        return responseCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                || responseCode == 429
+                || responseCode >= 500;
+    }
+
+    /**
+     * Hands a connection back to the pool by reading its body to the end and closing it.
+     */
+    private static void release(HttpURLConnection connection, FetchCancellation cancellation) {
+        try {
+            InputStream body = connection.getResponseCode() < 400
+                    ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                drainAndClose(body);
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+        } finally {
+            if (cancellation != null) {
+                cancellation.unregister(connection);
+            }
+        }
+    }
+
+    private static void drainAndClose(InputStream in) throws IOException {
+        try {
+            byte[] buffer = new byte[4096];
+            long drained = 0;
+            int count;
+            while (drained < MAX_DRAIN_BYTES && (count = in.read(buffer)) >= 0) {
+                drained += count;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Timing of a request, in {@link System#nanoTime()} units.
+     */
+    public static final class Timing {
+
+        /**
+         * Start of the last attempt, before DNS lookup and connect
+         */
+        public long startNanos;
+
+        /**
+         * End of DNS lookup, connect and TLS handshake of the last attempt
+         */
+        public long connectNanos;
+
+        /**
+         * Reception of the response headers
+         */
+        public long firstByteNanos;
+
+        /**
+         * End of the body read, or 0 while it is being read
+         */
+        public long endNanos;
+
+        /**
+         * Number of body bytes received, before decompression
+         */
+        public long bytesReceived;
+
+        /**
+         * Number of attempts made, 1 without retry
+         */
+        public int attempts;
+
+        /**
+         * Returns the time spent connecting, including DNS lookup, in milliseconds.
+         */
+        public long connectMillis() {
+            return (connectNanos - startNanos) / 1000000;
+        }
+
+        /**
+         * Returns the time to first byte after connecting, in milliseconds.
+         */
+        public long firstByteMillis() {
+            return (firstByteNanos - connectNanos) / 1000000;
+        }
+
+        /**
+         * Returns the time spent reading the body, in milliseconds.
+         */
+        public long bodyMillis() {
+            return endNanos > 0 ? (endNanos - firstByteNanos) / 1000000 : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "connect=" + connectMillis() + "ms ttfb=" + firstByteMillis() + "ms body="
+                    + bodyMillis() + "ms bytes=" + bytesReceived + " attempts=" + attempts;
+        }
+    }
+
+    /**
+     * Response of a request. Closing it hands its connection back to the pool.
+     */
+    public final class Response {
+
+        private final String mUrl;
+        private final HttpURLConnection mConnection;
+        private final int mResponseCode;
+        private final Timing mTiming;
+        private final FetchCancellation mCancellation;
+        private CountingInputStream mRawBody;
+        private InputStream mBody;
+        private boolean mClosed;
+
+        Response(String url, HttpURLConnection connection, int responseCode, Timing timing,
+                 FetchCancellation cancellation) {
+            mUrl = url;
+            mConnection = connection;
+            mResponseCode = responseCode;
+            mTiming = timing;
+            mCancellation = cancellation;
+        }
+
+        /**
+         * Returns the HTTP status code.
+         */
+        public int getResponseCode() {
+            return mResponseCode;
+        }
+
+        /**
+         * Returns the value of a response header, or null.
+         */
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        /**
+         * Returns the timing of the request.
+         */
+        public Timing getTiming() {
+            return mTiming;
+        }
+
+        /**
+         * Returns the decompressed response body.
+         */
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                InputStream raw = mResponseCode < 400
+                        ? mConnection.getInputStream() : mConnection.getErrorStream();
+                if (raw == null) {
+                    raw = new ByteArrayInputStream(new byte[0]);
+                }
+                mRawBody = new CountingInputStream(raw);
+                InputStream body = mRawBody;
+                if (mCancellation != null) {
+                    body = mCancellation.wrap(body);
+                }
+                if ("gzip".equalsIgnoreCase(mConnection.getContentEncoding())) {
+                    body = new GZIPInputStream(body);
+                }
+                mBody = body;
+            }
+            return mBody;
+        }
+
+        /**
+         * Closes the response, reusing its connection if the body can be finished cheaply.
+         */
+        public void close() {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            try {
+                if (mCancellation != null && mCancellation.isCanceled()) {
+                    mConnection.disconnect();
+                } else {
+                    drainAndClose(mRawBody != null ? mRawBody : getBody());
+                }
+            } catch (IOException e) {
+                mConnection.disconnect();
+            } finally {
+                if (mCancellation != null) {
+                    mCancellation.unregister(mConnection);
+                }
+                if (mTiming.endNanos == 0) {
+                    mTiming.endNanos = System.nanoTime();
+                }
+                if (mRawBody != null) {
+                    mTiming.bytesReceived = mRawBody.count;
+                }
+                TimingListener listener = mTimingListener;
+                if (listener != null) {
+                    listener.onRequestFinished(mUrl, mTiming);
+                }
+            }
+        }
+
+        /**
+         * Counts the bytes received and notes when the end of the body is reached.
+         */
+        private final class CountingInputStream extends FilterInputStream {
+            long count;
+
+            CountingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    count++;
+                } else {
+                    onEnd();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read >= 0) {
+                    count += read;
+                } else {
+                    onEnd();
+                }
+                return read;
+            }
+
+            private void onEnd() {
+                if (mTiming.endNanos == 0) {
+                    mTiming.endNanos = System.nanoTime();
+                }
+            }
+        }
+    }
+}
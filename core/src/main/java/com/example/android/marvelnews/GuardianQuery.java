@@ -0,0 +1,224 @@
+package com.example.android.marvelnews;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds Guardian "/search" URLs that only request the data the app displays.
+ * <p>
+ * Every result always carries its core fields (title, section, publication date and URL). Any
+ * other data costs payload on every result, so it has to be asked for explicitly by binding
+ * the matching {@link Field}; the builder then adds the smallest "show-tags" and "show-fields"
+ * values covering the bound fields, and never requests "show-elements".
+ */
+public final class GuardianQuery {
+
+    /**
+     * Data of a result that the app can display.
+     */
+    public enum Field {
+        /**
+         * "webTitle", always included
+         */
+        TITLE(null, null),
+
+        /**
+         * "sectionName", always included
+         */
+        SECTION(null, null),
+
+        /**
+         * "webPublicationDate", always included
+         */
+        DATE(null, null),
+
+        /**
+         * "webUrl", always included
+         */
+        URL(null, null),
+
+        /**
+         * First and last name of the first contributor tag
+         */
+        AUTHOR("contributor", null),
+
+        /**
+         * URL of the trail image of the article
+         */
+        THUMBNAIL(null, "thumbnail"),
+
+        /**
+         * HTML body of the article
+         */
+        BODY(null, "body");
+
+        /**
+         * Value needed in "show-tags", or null
+         */
+        final String mTag;
+
+        /**
+         * Value needed in "show-fields", or null
+         */
+        final String mShowField;
+
+        Field(String tag, String showField) {
+            mTag = tag;
+            mShowField = showField;
+        }
+    }
+
+    private GuardianQuery() {
+    }
+
+    /**
+     * Builds a Guardian "/search" URL.
+     */
+    public static final class Builder {
+
+        private final String mBaseUrl;
+        private final Map<String, String> mParameters = new LinkedHashMap<>();
+        private final Set<Field> mFields = EnumSet.noneOf(Field.class);
+
+        /**
+         * @param baseUrl of the search endpoint, i.e. "https://content.guardianapis.com/search"
+         */
+        public Builder(String baseUrl) {
+            mBaseUrl = baseUrl;
+        }
+
+        /**
+         * Sets the free text query, the `q` parameter.
+         */
+        public Builder query(String query) {
+            return parameter("q", query);
+        }
+
+        /**
+         * Restricts the results to a section, i.e. "film".
+         */
+        public Builder section(String section) {
+            return parameter("section", section);
+        }
+
+        /**
+         * Sets the order of the results, "newest", "oldest" or "relevance".
+         */
+        public Builder orderBy(String orderBy) {
+            return parameter("order-by", orderBy);
+        }
+
+        /**
+         * Sets the earliest publication date of the results (yyyy-MM-dd).
+         */
+        public Builder fromDate(String fromDate) {
+            return parameter("from-date", fromDate);
+        }
+
+        /**
+         * Restricts the results to the given content ids, i.e. "film/2018/may/15/some-review".
+         */
+        public Builder ids(Collection<String> ids) {
+            return parameter("ids", ids.isEmpty() ? null : join(new LinkedHashSet<>(ids)));
+        }
+
+        /**
+         * Sets the number of results per page.
+         */
+        public Builder pageSize(int pageSize) {
+            return parameter("page-size", String.valueOf(pageSize));
+        }
+
+        /**
+         * Sets the API key.
+         */
+        public Builder apiKey(String apiKey) {
+            return parameter("api-key", apiKey);
+        }
+
+        /**
+         * Requests the data needed to display the given fields.
+         */
+        public Builder bind(Set<Field> fields) {
+            mFields.addAll(fields);
+            return this;
+        }
+
+        /**
+         * Returns the URL, with its "show-tags" and "show-fields" parameters derived from the
+         * bound fields.
+         */
+        public String build() {
+            Set<String> tags = new TreeSet<>();
+            Set<String> showFields = new TreeSet<>();
+            for (Field field : mFields) {
+                if (field.mTag != null) {
+                    tags.add(field.mTag);
+                }
+                if (field.mShowField != null) {
+                    showFields.add(field.mShowField);
+                }
+            }
+
+            Map<String, String> parameters = new LinkedHashMap<>(mParameters);
+            if (!tags.isEmpty()) {
+                parameters.put("show-tags", join(tags));
+            }
+            if (!showFields.isEmpty()) {
+                parameters.put("show-fields", join(showFields));
+            }
+
+            StringBuilder url = new StringBuilder(mBaseUrl);
+            char separator = mBaseUrl.indexOf('?') >= 0 ? '&' : '?';
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                url.append(separator).append(parameter.getKey()).append('=')
+                        .append(encode(parameter.getValue()));
+                separator = '&';
+            }
+            return url.toString();
+        }
+
+        private Builder parameter(String name, String value) {
+            if (value == null) {
+                mParameters.remove(name);
+            } else {
+                mParameters.put(name, value);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Returns the fields of the given list, convenient for declaring what a view binds.
+     */
+    public static Set<Field> fields(Field first, Field... rest) {
+        return Collections.unmodifiableSet(EnumSet.of(first, rest));
+    }
+
+    private static String join(Collection<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.android.marvelnews;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the requests of the app within the quota of its Guardian API key.
+ * <p>
+ * Requests take a token from a bucket refilled at a steady rate, which allows short bursts
+ * such as the first pages of every topic. A request waits for its token, unless the wait is
+ * longer than a few seconds: it then fails right away with a {@link RateLimitedException}, so
+ * the caller can show the news it already has instead of keeping the user waiting. A
+ * "429 Too Many Requests" response stops every request for the time its "Retry-After" header
+ * asks, and a response saying the daily quota is used up stops them until the quota resets,
+ * at midnight UTC.
+ * <p>
+ * The requests sent today and the quota the server reports as left are kept in a
+ * {@link Quota}, to size the background work against it.
+ */
+public final class GuardianRateLimiter {
+
+    /**
+     * Thrown instead of sending a request that would have to wait too long for its turn.
+     */
+    public static final class RateLimitedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long mRetryAfterMillis;
+
+        RateLimitedException(long retryAfterMillis) {
+            super("Rate limited for " + retryAfterMillis + " ms");
+            mRetryAfterMillis = retryAfterMillis;
+        }
+
+        /**
+         * Returns the time after which a request may be sent again.
+         */
+        public long getRetryAfterMillis() {
+            return mRetryAfterMillis;
+        }
+    }
+
+    /**
+     * Use of the daily quota of the API key.
+     */
+    public static final class Quota {
+
+        /**
+         * Requests sent since midnight UTC, by this process
+         */
+        public final int requestsToday;
+
+        /**
+         * Requests the server allows until midnight UTC, or -1 if it hasn't said yet today
+         */
+        public final int remainingToday;
+
+        /**
+         * Requests the server allows per day, or -1 if it hasn't said yet
+         */
+        public final int limitPerDay;
+
+        Quota(int requestsToday, int remainingToday, int limitPerDay) {
+            this.requestsToday = requestsToday;
+            this.remainingToday = remainingToday;
+            this.limitPerDay = limitPerDay;
+        }
+
+        @Override
+        public String toString() {
+            return "sent=" + requestsToday + " remaining=" + remainingToday
+                    + " limit=" + limitPerDay;
+        }
+    }
+
+    /**
+     * Wait before retrying after a "429" response without a "Retry-After" header
+     */
+    static final long DEFAULT_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final double mTokensPerMilli;
+    private final int mBurst;
+    private final long mMaxWaitMillis;
+
+    private double mTokens;
+    private long mRefilledMillis;
+
+    /**
+     * Time before which no request is sent, in {@link System#currentTimeMillis()} units
+     */
+    private long mBlockedUntilMillis;
+
+    /**
+     * Day, counted from the epoch in UTC, the counts of the quota are for
+     */
+    private long mDay;
+    private int mRequestsToday;
+    private int mRemainingToday = -1;
+    private int mLimitPerDay = -1;
+
+    /**
+     * Constructs a new {@link GuardianRateLimiter}, with a full bucket.
+     *
+     * @param requestsPerSecond steady rate of the requests
+     * @param burst             number of requests that may be sent at once
+     * @param maxWaitMillis     longest time a request waits for its turn before failing
+     */
+    public GuardianRateLimiter(double requestsPerSecond, int burst, long maxWaitMillis) {
+        mTokensPerMilli = requestsPerSecond / 1000;
+        mBurst = burst;
+        mMaxWaitMillis = maxWaitMillis;
+        mTokens = burst;
+        mRefilledMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Waits for the turn of a request. This blocks, so call it on a background thread.
+     *
+     * @param cancellation token aborting the wait, may be null
+     * @throws RateLimitedException if the turn is too far away
+     * @throws IOException          if the request is canceled
+     */
+    public void acquire(FetchCancellation cancellation) throws IOException {
+        while (true) {
+            long waitMillis = tryAcquire(System.currentTimeMillis());
+            if (waitMillis == 0) {
+                return;
+            }
+            if (waitMillis > mMaxWaitMillis) {
+                throw new RateLimitedException(waitMillis);
+            }
+            try {
+                // Sleep in short steps to notice a cancellation quickly
+                Thread.sleep(Math.min(waitMillis, 100));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the rate limit");
+            }
+            if (cancellation != null) {
+                cancellation.throwIfCanceled();
+            }
+        }
+    }
+
+    /**
+     * Takes a token if there is one.
+     *
+     * @return 0 if a token was taken, otherwise the time until there is one
+     */
+    synchronized long tryAcquire(long nowMillis) {
+        if (nowMillis < mBlockedUntilMillis) {
+            return mBlockedUntilMillis - nowMillis;
+        }
+        // The wall clock may go back, never take tokens away for it
+        long elapsedMillis = Math.max(0, nowMillis - mRefilledMillis);
+        mTokens = Math.min(mBurst, mTokens + elapsedMillis * mTokensPerMilli);
+        mRefilledMillis = nowMillis;
+        if (mTokens < 1) {
+            return (long) Math.ceil((1 - mTokens) / mTokensPerMilli);
+        }
+        mTokens -= 1;
+        rollDay(nowMillis);
+        mRequestsToday++;
+        return 0;
+    }
+
+    /**
+     * Learns the quota left and the throttling from the headers of a response.
+     *
+     * @param responseCode    of the response
+     * @param retryAfter      value of the "Retry-After" header, or null
+     * @param remainingPerDay value of the "X-RateLimit-Remaining-day" header, or null
+     * @param limitPerDay     value of the "X-RateLimit-Limit-day" header, or null
+     * @param nowMillis       time of the response
+     */
+    public synchronized void onResponse(int responseCode, String retryAfter,
+                                        String remainingPerDay, String limitPerDay,
+                                        long nowMillis) {
+        rollDay(nowMillis);
+        int remaining = parseCount(remainingPerDay);
+        if (remaining >= 0) {
+            mRemainingToday = remaining;
+        }
+        int limit = parseCount(limitPerDay);
+        if (limit >= 0) {
+            mLimitPerDay = limit;
+        }
+
+        long blockedUntil = 0;
+        if (remaining == 0) {
+            // The daily quota is used up, it resets at midnight UTC
+            blockedUntil = (nowMillis / DAY_MILLIS + 1) * DAY_MILLIS;
+        }
+        if (responseCode == 429) {
+            long retryAfterMillis = parseRetryAfter(retryAfter, nowMillis);
+            blockedUntil = Math.max(blockedUntil, nowMillis + (retryAfterMillis >= 0
+                    ? retryAfterMillis : DEFAULT_RETRY_AFTER_MILLIS));
+            // The server counts differently, start the bucket over once it lets requests in
+            mTokens = 0;
+            mRefilledMillis = blockedUntil;
+        }
+        mBlockedUntilMillis = Math.max(mBlockedUntilMillis, blockedUntil);
+    }
+
+    /**
+     * Returns the use of the daily quota.
+     */
+    public synchronized Quota getQuota() {
+        rollDay(System.currentTimeMillis());
+        return new Quota(mRequestsToday, mRemainingToday, mLimitPerDay);
+    }
+
+    /**
+     * Starts the counts over on a new day.
+     */
+    private void rollDay(long nowMillis) {
+        long day = nowMillis / DAY_MILLIS;
+        if (day != mDay) {
+            mDay = day;
+            mRequestsToday = 0;
+            mRemainingToday = -1;
+        }
+    }
+
+    /**
+     * Returns the wait asked by a "Retry-After" header, in seconds or as an HTTP date, or -1 if
+     * there is none.
+     */
+    static long parseRetryAfter(String retryAfter, long nowMillis) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try a date
+        }
+        SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",
+                Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, httpDate.parse(value).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private static int parseCount(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.android.marvelnews;
+
+import java.util.Date;
+
+/**
+ * An {@link MarvelNews} object contains information related to a single MarvelNews.
+ */
+public class MarvelNews {
+
+    /**
+     * Author of the MarvelNews
+     */
+    private String mAuthor;
+
+    /**
+     * Title of the MarvelNews
+     */
+    private String mTitle;
+
+    /**
+     * SectionName of the MarvelNews
+     */
+    private String mSectionName;
+
+    /**
+     * Publication Date of the MarvelNews
+     */
+    private Date mTime;
+
+    /**
+     * Website URL of the MarvelNews
+     */
+    private String mUrl;
+
+    /**
+     * URL of the thumbnail image of the MarvelNews, or null if it has none
+     */
+    private String mThumbnailUrl;
+
+    /**
+     * Publication date of the MarvelNews formatted for display (i.e. "May 3, 1987,"), or null
+     */
+    private String mDisplayDate;
+
+    /**
+     * Publication time of the MarvelNews formatted for display (i.e. "6:45 PM"), or null
+     */
+    private String mDisplayTime;
+
+    /**
+     * Constructs a new {@link MarvelNews} object.
+     *
+     * @param author      is the author of the MarvelNews
+     * @param title       is the title of the MarvelNews
+     * @param sectionName is the section of the MarvelNews
+     * @param time        is the date the MarvelNews was published
+     * @param url         is the website URL to find more details about the MarvelNews
+     */
+    public MarvelNews(String author, String title, String sectionName, Date time, String url) {
+        this(author, title, sectionName, time, url, null);
+    }
+
+    /**
+     * Constructs a new {@link MarvelNews} object with a thumbnail.
+     *
+     * @param author       is the author of the MarvelNews
+     * @param title        is the title of the MarvelNews
+     * @param sectionName  is the section of the MarvelNews
+     * @param time         is the date the MarvelNews was published
+     * @param url          is the website URL to find more details about the MarvelNews
+     * @param thumbnailUrl is the URL of the thumbnail image of the MarvelNews, or null
+     */
+    public MarvelNews(String author, String title, String sectionName, Date time, String url,
+                      String thumbnailUrl) {
+        mAuthor = author;
+        mTitle = title;
+        mSectionName = sectionName;
+        mTime = time;
+        mUrl = url;
+        mThumbnailUrl = thumbnailUrl;
+
+        // Format the publication date once, while loading, so the list doesn't have to.
+        if (time != null) {
+            mDisplayDate = MarvelNewsFormatter.formatDate(time);
+            mDisplayTime = MarvelNewsFormatter.formatTime(time);
+        }
+    }
+
+    /**
+     * Constructs an empty {@link MarvelNews}, for subclasses whose getters read their data
+     * from elsewhere, such as the rows of a MarvelNewsStore.
+     */
+    MarvelNews() {
+    }
+
+    /**
+     * Returns the author of the MarvelNews.
+     */
+    public String getAuthor() {
+        return mAuthor;
+    }
+
+    /**
+     * Returns the title of the MarvelNews.
+     */
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * Returns the section of the MarvelNews.
+     */
+    public String getSectionName() {
+        return mSectionName;
+    }
+
+    /**
+     * Returns the publication date of the MarvelNews.
+     */
+    public Date getTime() {
+        return mTime;
+    }
+
+    /**
+     * Returns the website URL to find more information about the MarvelNews.
+     */
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Returns the URL of the thumbnail image of the MarvelNews, or null if it has none.
+     */
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    /**
+     * Returns the publication date formatted for display, or null if it is unknown.
+     */
+    public String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+    /**
+     * Returns the publication time formatted for display, or null if it is unknown.
+     */
+    public String getDisplayTime() {
+        return mDisplayTime;
+    }
+}
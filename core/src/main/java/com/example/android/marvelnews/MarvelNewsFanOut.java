@@ -0,0 +1,288 @@
+package com.example.android.marvelnews;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads several Guardian searches at the same time, one per topic, and shows them as one feed.
+ * <p>
+ * Each search delivers its results in the order of the feed as its pages are merged. The
+ * results are merged into the feed as they stream in, with a k-way merge on the publication
+ * date: a result is only added to the feed once every search still loading has delivered a
+ * result that comes after it, so the feed only ever grows at its end and is never sorted as a
+ * whole. An article matching several topics is only added the first time it comes out of the
+ * merge. News ordered by relevance can't be compared across searches, so the searches are then
+ * interleaved, the best result of each search first.
+ * <p>
+ * The searches share the number of requests they may have in flight, see
+ * {@link MarvelNewsPager#MarvelNewsPager(String, int, int, FetchCancellation,
+ * java.util.concurrent.Semaphore)}.
+ */
+public final class MarvelNewsFanOut {
+
+    /**
+     * Default number of requests in flight at the same time, all topics included
+     */
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * One search of the feed.
+     */
+    public interface Source {
+        /**
+         * Loads the results of the search. This blocks, it is called on a thread of the fan-out.
+         *
+         * @param listener receives the results loaded so far in feed order, each list starting
+         *                 with the previous one
+         * @return every result in feed order, starting with the last list given to the listener,
+         * or null if the search failed
+         */
+        List<MarvelNews> load(MarvelNewsPager.Listener listener);
+    }
+
+    /**
+     * Receives the feed each time it grows.
+     */
+    public interface Listener {
+        /**
+         * @param marvelNewss the feed merged so far
+         */
+        void onMerged(List<MarvelNews> marvelNewss);
+    }
+
+    private final List<Source> mSources;
+    private final String mOrderBy;
+
+    /**
+     * Constructs a new {@link MarvelNewsFanOut}.
+     *
+     * @param sources searches of the feed
+     * @param orderBy order of the searches and the feed, "newest", "oldest" or "relevance"
+     */
+    public MarvelNewsFanOut(List<Source> sources, String orderBy) {
+        mSources = new ArrayList<>(sources);
+        mOrderBy = orderBy;
+    }
+
+    /**
+     * Loads every search at the same time and merges them. This blocks, so call it on a
+     * background thread. The searches run at the priority of the calling thread.
+     *
+     * @param listener receives the feed as it grows, may be null
+     * @return the feed, or null if every search failed
+     */
+    public List<MarvelNews> load(final Listener listener) {
+        final Merger merger = new Merger(mSources.size(), mOrderBy);
+        if (mSources.isEmpty()) {
+            return merger.getMerged();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(mSources.size(),
+                MarvelNewsPager.callerPriorityThreads());
+        try {
+            List<Future<?>> futures = new ArrayList<>(mSources.size());
+            for (int i = 0; i < mSources.size(); i++) {
+                final int source = i;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<MarvelNews> results = null;
+                        try {
+                            results = mSources.get(source).load(new MarvelNewsPager.Listener() {
+                                @Override
+                                public void onPagesLoaded(List<MarvelNews> marvelNewss,
+                                                          int loadedPages, int totalPages) {
+                                    merger.offer(source, marvelNewss, false, listener);
+                                }
+                            });
+                        } finally {
+                            merger.offer(source, results, true, listener);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // A search failed unexpectedly, deliver what has been merged so far.
+        } finally {
+            executor.shutdownNow();
+        }
+        return merger.hasResults() ? merger.getMerged() : null;
+    }
+
+    /**
+     * Merges lists that are each already in the given order, dropping repeated articles.
+     */
+    public static List<MarvelNews> merge(List<List<MarvelNews>> lists, String orderBy) {
+        Merger merger = new Merger(lists.size(), orderBy);
+        for (int i = 0; i < lists.size(); i++) {
+            merger.offer(i, lists.get(i), true, null);
+        }
+        return merger.getMerged();
+    }
+
+    /**
+     * Streaming k-way merge of the results of the searches.
+     */
+    private static final class Merger {
+
+        /**
+         * Results delivered so far by each search
+         */
+        private final List<List<MarvelNews>> mResults;
+
+        /**
+         * Number of results of each search taken by the merge
+         */
+        private final int[] mTaken;
+
+        /**
+         * True for each search that won't deliver more results
+         */
+        private final boolean[] mDone;
+
+        /**
+         * Searches that have results left, by their next result
+         */
+        private final PriorityQueue<Integer> mHeads;
+
+        /**
+         * Number of searches still loading that have no results left, which stalls the merge
+         */
+        private int mStalled;
+
+        /**
+         * True once a search has loaded
+         */
+        private boolean mLoaded;
+
+        /**
+         * URLs of the articles in the feed
+         */
+        private final Set<String> mUrls = new HashSet<>();
+
+        private final List<MarvelNews> mMerged = new ArrayList<>();
+
+        Merger(int sources, String orderBy) {
+            mResults = new ArrayList<>(sources);
+            mTaken = new int[sources];
+            mDone = new boolean[sources];
+            for (int i = 0; i < sources; i++) {
+                mResults.add(Collections.<MarvelNews>emptyList());
+            }
+            mStalled = sources;
+            mHeads = new PriorityQueue<>(Math.max(1, sources), headOrder(orderBy));
+        }
+
+        /**
+         * Takes the results a search delivered, and merges every result whose place in the feed
+         * is now known.
+         *
+         * @param results all the results of the search so far, or null if it failed
+         * @param done    true if the search won't deliver more results
+         */
+        synchronized void offer(int source, List<MarvelNews> results, boolean done,
+                                Listener listener) {
+            if (mDone[source]) {
+                return;
+            }
+            boolean stalled = mTaken[source] == mResults.get(source).size();
+            if (results != null) {
+                mResults.set(source, results);
+                mLoaded |= done;
+            }
+            mDone[source] = done;
+            boolean hasMore = mTaken[source] < mResults.get(source).size();
+            if (stalled && (hasMore || done)) {
+                mStalled--;
+                if (hasMore) {
+                    mHeads.add(source);
+                }
+            }
+
+            int mergedBefore = mMerged.size();
+            while (mStalled == 0 && !mHeads.isEmpty()) {
+                int next = mHeads.poll();
+                MarvelNews marvelNews = mResults.get(next).get(mTaken[next]++);
+                // Only the first of the searches matching an article adds it to the feed
+                if (marvelNews.getUrl() == null || mUrls.add(marvelNews.getUrl())) {
+                    mMerged.add(marvelNews);
+                }
+                if (mTaken[next] < mResults.get(next).size()) {
+                    mHeads.add(next);
+                } else if (!mDone[next]) {
+                    mStalled++;
+                }
+            }
+            if (listener != null && mMerged.size() > mergedBefore) {
+                listener.onMerged(new ArrayList<>(mMerged));
+            }
+        }
+
+        synchronized boolean hasResults() {
+            return mLoaded;
+        }
+
+        synchronized List<MarvelNews> getMerged() {
+            return new ArrayList<>(mMerged);
+        }
+
+        /**
+         * Returns the order of the searches by their next result.
+         */
+        private Comparator<Integer> headOrder(String orderBy) {
+            if (!QuerySubsumption.isDateOrder(orderBy)) {
+                // Interleave the searches: the n-th results of every search, then the next ones
+                return new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer first, Integer second) {
+                        int order = compareInts(mTaken[first], mTaken[second]);
+                        return order != 0 ? order : compareInts(first, second);
+                    }
+                };
+            }
+            final boolean oldestFirst = "oldest".equals(orderBy);
+            return new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    long firstTime = timeOf(mResults.get(first).get(mTaken[first]), oldestFirst);
+                    long secondTime = timeOf(mResults.get(second).get(mTaken[second]), oldestFirst);
+                    int order = oldestFirst ? compareLongs(firstTime, secondTime)
+                            : compareLongs(secondTime, firstTime);
+                    // Equal dates keep the order of the topics
+                    return order != 0 ? order : compareInts(first, second);
+                }
+            };
+        }
+
+        /**
+         * Returns the publication time of a news, news without a date coming last.
+         */
+        private static long timeOf(MarvelNews marvelNews, boolean oldestFirst) {
+            if (marvelNews.getTime() == null) {
+                return oldestFirst ? Long.MAX_VALUE : Long.MIN_VALUE;
+            }
+            return marvelNews.getTime().getTime();
+        }
+
+        private static int compareInts(int first, int second) {
+            return first < second ? -1 : (first == second ? 0 : 1);
+        }
+
+        private static int compareLongs(long first, long second) {
+            return first < second ? -1 : (first == second ? 0 : 1);
+        }
+    }
+}
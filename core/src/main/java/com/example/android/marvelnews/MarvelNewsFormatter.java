@@ -0,0 +1,50 @@
+package com.example.android.marvelnews;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Formats the publication date of a {@link MarvelNews} for display.
+ * <p>
+ * {@link SimpleDateFormat} is expensive to create and not thread-safe, so every thread gets
+ * its own formatters, created once.
+ */
+final class MarvelNewsFormatter {
+
+    /**
+     * Formats dates like "May 03, 2018"
+     */
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("LLL dd, yyyy");
+        }
+    };
+
+    /**
+     * Formats times like "6:45 PM"
+     */
+    private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("h:mm a");
+        }
+    };
+
+    private MarvelNewsFormatter() {
+    }
+
+    /**
+     * Return the formatted date string (i.e. "May 3, 1987,") from a Date object.
+     */
+    static String formatDate(Date dateObject) {
+        return DATE_FORMAT.get().format(dateObject) + ",";
+    }
+
+    /**
+     * Return the formatted time string (i.e. "6:45 PM") from a Date object.
+     */
+    static String formatTime(Date dateObject) {
+        return TIME_FORMAT.get().format(dateObject);
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.android.marvelnews;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fetches every page of a Guardian search.
+ * <p>
+ * The first page is requested on the calling thread to learn how many pages exist. The remaining
+ * pages are then requested with a bounded number of concurrent connections. Pages may arrive in
+ * any order, but they are merged back in page order, so the result keeps the "order-by" order of
+ * the query. Every time the merged prefix grows, the {@link Listener} receives it, so the list
+ * can be shown before the last page has arrived.
+ */
+public final class MarvelNewsPager {
+
+    /**
+     * Default number of results requested per page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Default number of pages requested at the same time
+     */
+    public static final int DEFAULT_CONCURRENCY = 3;
+
+    /**
+     * Largest page size accepted by the Guardian API
+     */
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Receives the merged results each time more of them are available in order.
+     */
+    public interface Listener {
+        /**
+         * @param marvelNewss the merged results of pages 1 to loadedPages, in query order
+         * @param loadedPages number of pages merged so far
+         * @param totalPages  number of pages matching the query
+         */
+        void onPagesLoaded(List<MarvelNews> marvelNewss, int loadedPages, int totalPages);
+    }
+
+    /**
+     * Query URL without paging parameters
+     */
+    private final String mUrl;
+
+    /**
+     * Number of results requested per page
+     */
+    private final int mPageSize;
+
+    /**
+     * Number of pages requested at the same time
+     */
+    private final int mConcurrency;
+
+    /**
+     * Token aborting the requests of the pager, or null
+     */
+    private final FetchCancellation mCancellation;
+
+    /**
+     * Permits shared with other pagers, one held per request in flight, or null
+     */
+    private final Semaphore mRequestPermits;
+
+    /**
+     * Results of each page, indexed by page number - 1, or null while the page is missing
+     */
+    private List<List<MarvelNews>> mPages;
+
+    /**
+     * Results of the contiguous run of pages merged so far
+     */
+    private List<MarvelNews> mMerged;
+
+    /**
+     * Number of pages in {@link #mMerged}
+     */
+    private int mMergedPages;
+
+    /**
+     * Number of pages matching the query, known once the first page is loaded
+     */
+    private int mTotalPages;
+
+    /**
+     * Constructs a new {@link MarvelNewsPager}.
+     *
+     * @param url         of the Guardian search, without "page" and "page-size" parameters
+     * @param pageSize    number of results requested per page
+     * @param concurrency maximum number of pages requested at the same time
+     */
+    public MarvelNewsPager(String url, int pageSize, int concurrency) {
+        this(url, pageSize, concurrency, null);
+    }
+
+    /**
+     * Constructs a new {@link MarvelNewsPager} whose requests are aborted when the given token
+     * is canceled.
+     *
+     * @param url          of the Guardian search, without "page" and "page-size" parameters
+     * @param pageSize     number of results requested per page
+     * @param concurrency  maximum number of pages requested at the same time
+     * @param cancellation token aborting the requests, may be null
+     */
+    public MarvelNewsPager(String url, int pageSize, int concurrency, FetchCancellation cancellation) {
+        this(url, pageSize, concurrency, cancellation, null);
+    }
+
+    /**
+     * Constructs a new {@link MarvelNewsPager} whose requests each hold one of the given
+     * permits, so that pagers sharing them never have more requests in flight than there are
+     * permits.
+     *
+     * @param url            of the Guardian search, without "page" and "page-size" parameters
+     * @param pageSize       number of results requested per page
+     * @param concurrency    maximum number of pages requested at the same time
+     * @param cancellation   token aborting the requests, may be null
+     * @param requestPermits permits shared with other pagers, may be null
+     */
+    public MarvelNewsPager(String url, int pageSize, int concurrency, FetchCancellation cancellation,
+                           Semaphore requestPermits) {
+        mUrl = url;
+        mPageSize = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        mConcurrency = Math.max(1, concurrency);
+        mCancellation = cancellation;
+        mRequestPermits = requestPermits;
+    }
+
+    /**
+     * Fetches every page of the search. This blocks, so call it on a background thread. The
+     * pages are requested at the priority of the calling thread.
+     *
+     * @param listener receives the merged results as they grow, may be null
+     * @return the results of every page that could be merged in order, or null if the first
+     * page could not be loaded or the pager was canceled
+     */
+    public List<MarvelNews> load(Listener listener) {
+        final List<MarvelNews> firstPage = new ArrayList<>();
+        MarvelNewsParser.PageInfo pageInfo = fetchPage(1, firstPage);
+        if (pageInfo == null) {
+            return null;
+        }
+
+        int totalPages = Math.max(1, pageInfo.pages);
+        synchronized (this) {
+            mPages = new ArrayList<>(Collections.nCopies(totalPages, (List<MarvelNews>) null));
+            mMerged = new ArrayList<>(Math.max(pageInfo.total, firstPage.size()));
+            mMergedPages = 0;
+            mTotalPages = totalPages;
+        }
+        onPageLoaded(1, firstPage, totalPages, listener);
+
+        if (totalPages > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.min(mConcurrency, totalPages - 1), callerPriorityThreads());
+            try {
+                List<Future<?>> futures = new ArrayList<>(totalPages - 1);
+                for (int page = 2; page <= totalPages; page++) {
+                    futures.add(executor.submit(new PageTask(page, totalPages, listener)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // A page task failed unexpectedly, deliver what has been merged so far.
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        if (mCancellation != null && mCancellation.isCanceled()) {
+            return null;
+        }
+        synchronized (this) {
+            return new ArrayList<>(mMerged);
+        }
+    }
+
+    /**
+     * Returns a factory of threads at the priority of the calling thread, so the requests of a
+     * background sync stay as low as the sync itself rather than at the normal priority.
+     */
+    static ThreadFactory callerPriorityThreads() {
+        final int priority = Thread.currentThread().getPriority();
+        final ThreadFactory threads = Executors.defaultThreadFactory();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = threads.newThread(runnable);
+                thread.setPriority(priority);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Returns true if the last {@link #load(Listener)} merged every page of the search.
+     */
+    public synchronized boolean isComplete() {
+        return mTotalPages > 0 && mMergedPages == mTotalPages;
+    }
+
+    /**
+     * Reads the pages of the search from the response cache, without any network request.
+     * Reading stops at the first page that isn't cached.
+     *
+     * @return the cached results in query order, or null if the first page isn't cached
+     */
+    public List<MarvelNews> loadCached() {
+        List<MarvelNews> marvelNewss = new ArrayList<>();
+        MarvelNewsParser.PageInfo pageInfo = QueryUtils.readCachedMarvelNewsData(pageUrl(1),
+                collectInto(marvelNewss));
+        if (pageInfo == null) {
+            return null;
+        }
+        for (int page = 2; page <= pageInfo.pages; page++) {
+            if (QueryUtils.readCachedMarvelNewsData(pageUrl(page), collectInto(marvelNewss)) == null) {
+                break;
+            }
+        }
+        return marvelNewss;
+    }
+
+    /**
+     * Stores a page and merges every page that is now contiguous with the merged prefix.
+     */
+    private synchronized void onPageLoaded(int page, List<MarvelNews> results, int totalPages,
+                                           Listener listener) {
+        mPages.set(page - 1, results);
+
+        int mergedBefore = mMergedPages;
+        while (mMergedPages < totalPages && mPages.get(mMergedPages) != null) {
+            mMerged.addAll(mPages.get(mMergedPages));
+            // The page is part of the merged list now, release it.
+            mPages.set(mMergedPages, null);
+            mMergedPages++;
+        }
+
+        if (listener != null && mMergedPages > mergedBefore) {
+            listener.onPagesLoaded(new ArrayList<>(mMerged), mMergedPages, totalPages);
+        }
+    }
+
+    /**
+     * Fetches a page into the given list, holding a shared permit if there are any.
+     *
+     * @return the paging information of the page, or null if the request failed or was canceled
+     */
+    private MarvelNewsParser.PageInfo fetchPage(int page, List<MarvelNews> results) {
+        if (mRequestPermits != null) {
+            try {
+                mRequestPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        try {
+            if (mCancellation != null && mCancellation.isCanceled()) {
+                return null;
+            }
+            return QueryUtils.fetchMarvelNewsData(pageUrl(page), collectInto(results),
+                    mCancellation);
+        } finally {
+            if (mRequestPermits != null) {
+                mRequestPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the URL of the given page.
+     */
+    String pageUrl(int page) {
+        String separator = mUrl.indexOf('?') >= 0 ? "&" : "?";
+        return mUrl + separator + "page-size=" + mPageSize + "&page=" + page;
+    }
+
+    private static MarvelNewsParser.Callback collectInto(final List<MarvelNews> results) {
+        return new MarvelNewsParser.Callback() {
+            @Override
+            public void onMarvelNews(MarvelNews marvelNews) {
+                results.add(marvelNews);
+            }
+        };
+    }
+
+    /**
+     * Fetches one page after the first.
+     */
+    private final class PageTask implements Runnable {
+
+        private final int mPage;
+        private final int mTotalPages;
+        private final Listener mListener;
+
+        PageTask(int page, int totalPages, Listener listener) {
+            mPage = page;
+            mTotalPages = totalPages;
+            mListener = listener;
+        }
+
+        @Override
+        public void run() {
+            if (mCancellation != null && mCancellation.isCanceled()) {
+                return;
+            }
+            List<MarvelNews> results = new ArrayList<>(mPageSize);
+            if (fetchPage(mPage, results) != null) {
+                onPageLoaded(mPage, results, mTotalPages, mListener);
+            }
+        }
+    }
+}
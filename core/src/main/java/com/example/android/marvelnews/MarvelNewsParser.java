@@ -0,0 +1,256 @@
+package com.example.android.marvelnews;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Streaming parser for the Guardian search response.
+ * <p>
+ * The response is read token by token, so only the {@link MarvelNews} currently being built is
+ * held in memory. Every subtree that is not needed (elements, fields other than the thumbnail,
+ * unknown keys) is skipped without being materialized, and each {@link MarvelNews} is handed to
+ * the {@link Callback} as soon as its JSON object has been closed.
+ * <p>
+ * A parser instance is not thread-safe; create one per response.
+ */
+public final class MarvelNewsParser {
+
+    /**
+     * Receives every {@link MarvelNews} as soon as it has been parsed.
+     */
+    public interface Callback {
+        void onMarvelNews(MarvelNews marvelNews);
+    }
+
+    /**
+     * Paging information found in the "response" object.
+     */
+    public static final class PageInfo {
+
+        /**
+         * Total number of results matching the query
+         */
+        public final int total;
+
+        /**
+         * Page number of this response, starting at 1
+         */
+        public final int currentPage;
+
+        /**
+         * Number of pages matching the query
+         */
+        public final int pages;
+
+        /**
+         * Number of results emitted from this response
+         */
+        public final int count;
+
+        PageInfo(int total, int currentPage, int pages, int count) {
+            this.total = total;
+            this.currentPage = currentPage;
+            this.pages = pages;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Parses "webPublicationDate" values such as "2018-05-15T10:30:58Z"
+     */
+    private final SimpleDateFormat mDateParser = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * Parses a whole Guardian search response from the given reader.
+     *
+     * @param reader   positioned at the start of the JSON document
+     * @param callback receives every {@link MarvelNews} of the "results" array in order
+     * @return the paging information of the response
+     * @throws IOException if the stream can't be read or isn't well-formed JSON
+     */
+    public PageInfo parse(Reader reader, Callback callback) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            PageInfo pageInfo = null;
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                if ("response".equals(jsonReader.nextName())) {
+                    pageInfo = readResponse(jsonReader, callback);
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+            if (pageInfo == null) {
+                throw new IOException("Missing \"response\" object");
+            }
+            return pageInfo;
+        } catch (IllegalStateException e) {
+            // JsonReader reports unexpected tokens this way; surface it as a malformed response.
+            throw new IOException("Unexpected JSON structure", e);
+        }
+    }
+
+    /**
+     * Reads the "response" object, emitting each entry of its "results" array.
+     */
+    private PageInfo readResponse(JsonReader reader, Callback callback) throws IOException {
+        int total = 0;
+        int currentPage = 1;
+        int pages = 1;
+        int count = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("total".equals(name)) {
+                total = reader.nextInt();
+            } else if ("currentPage".equals(name)) {
+                currentPage = reader.nextInt();
+            } else if ("pages".equals(name)) {
+                pages = reader.nextInt();
+            } else if ("results".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    callback.onMarvelNews(readMarvelNews(reader));
+                    count++;
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new PageInfo(total, currentPage, pages, count);
+    }
+
+    /**
+     * Reads a single entry of the "results" array.
+     */
+    private MarvelNews readMarvelNews(JsonReader reader) throws IOException {
+        String title = null;
+        String sectionName = null;
+        String author = "";
+        Date publicationDate = null;
+        String url = null;
+        String thumbnailUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("webTitle".equals(name)) {
+                title = nextStringOrNull(reader);
+            } else if ("sectionName".equals(name)) {
+                sectionName = nextStringOrNull(reader);
+            } else if ("webPublicationDate".equals(name)) {
+                publicationDate = parseDate(nextStringOrNull(reader));
+            } else if ("webUrl".equals(name)) {
+                url = nextStringOrNull(reader);
+            } else if ("tags".equals(name)) {
+                author = readAuthor(reader);
+            } else if ("fields".equals(name)) {
+                thumbnailUrl = readThumbnail(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new MarvelNews(author, title, sectionName, publicationDate, url, thumbnailUrl);
+    }
+
+    /**
+     * Reads the "fields" object and returns its "thumbnail", or null if there is none.
+     */
+    private String readThumbnail(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        String thumbnailUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("thumbnail".equals(reader.nextName())) {
+                thumbnailUrl = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnailUrl;
+    }
+
+    /**
+     * Reads the "tags" array and returns the author line built from its first contributor,
+     * or an empty String if there is none.
+     */
+    private String readAuthor(JsonReader reader) throws IOException {
+        String author = "";
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return author;
+        }
+
+        reader.beginArray();
+        if (reader.hasNext()) {
+            String firstName = "";
+            String lastName = "";
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("firstName".equals(name)) {
+                    firstName = StringUtils.defaultString(nextStringOrNull(reader));
+                } else if ("lastName".equals(name)) {
+                    lastName = StringUtils.defaultString(nextStringOrNull(reader));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            firstName = firstName.trim();
+            lastName = lastName.trim();
+            if (!firstName.isEmpty() || !lastName.isEmpty()) {
+                author = "Author: " + StringUtils.capitalize(firstName.toLowerCase()) + " "
+                        + StringUtils.capitalize(lastName.toLowerCase());
+            }
+        }
+        // Only the first contributor is displayed, skip the others.
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return author;
+    }
+
+    /**
+     * Parses a publication date, returning null if it is missing or malformed.
+     */
+    private Date parseDate(String time) {
+        if (time == null) {
+            return null;
+        }
+        try {
+            return mDateParser.parse(time);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
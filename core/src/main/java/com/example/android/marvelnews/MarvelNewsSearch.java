@@ -0,0 +1,112 @@
+package com.example.android.marvelnews;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the Guardian searches of the Marvel news, for the app and for the headless harvester
+ * alike.
+ * <p>
+ * A topic is the "section" and "q" parameters of a search, i.e. "section=film&q=Marvel". The
+ * URLs built here have no "from-date", "order-by" or paging parameters, their callers add them.
+ */
+public final class MarvelNewsSearch {
+
+    /**
+     * URL for marvelNews data from the Guardian dataset
+     */
+    private static final String GUARDIAN_REQUEST_URL =
+            "https://content.guardianapis.com/search";
+
+    /**
+     * Key of the app for the Guardian API
+     */
+    private static final String GUARDIAN_API_KEY = "5369aa36-6009-4195-86b5-8dc3d98e9915";
+
+    /**
+     * Topic shown when none is chosen, Marvel news of the film section
+     */
+    public static final String DEFAULT_TOPIC = "section=film&q=Marvel";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link MarvelNewsSearch}
+     * object. This class is only meant to hold static methods.
+     */
+    private MarvelNewsSearch() {
+    }
+
+    /**
+     * Returns the URLs of the searches of the given topics, in a stable order, or of the default
+     * topic if none is given.
+     *
+     * @param fields the results must carry
+     */
+    public static List<String> searchUrls(Collection<String> topics,
+                                          Set<GuardianQuery.Field> fields) {
+        List<String> sortedTopics = new ArrayList<>(topics);
+        if (sortedTopics.isEmpty()) {
+            sortedTopics.add(DEFAULT_TOPIC);
+        }
+        Collections.sort(sortedTopics);
+        List<String> urls = new ArrayList<>(sortedTopics.size());
+        for (String topic : sortedTopics) {
+            urls.add(searchUrl(topic, fields));
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the URL of the search of a topic with the key of the app.
+     *
+     * @param topic  "section" and "q" parameters of the search, i.e. "section=film&q=Marvel"
+     * @param fields the results must carry
+     */
+    public static String searchUrl(String topic, Set<GuardianQuery.Field> fields) {
+        return searchUrl(topic, fields, GUARDIAN_API_KEY);
+    }
+
+    /**
+     * Returns the URL of the search of a topic with the given API key.
+     *
+     * @param topic  "section" and "q" parameters of the search, i.e. "section=film&q=Marvel"
+     * @param fields the results must carry
+     * @param apiKey key for the Guardian API
+     */
+    public static String searchUrl(String topic, Set<GuardianQuery.Field> fields,
+                                   String apiKey) {
+        // With the fields bound by the list, the completed URL is
+        // https://content.guardianapis.com/search?section=film&q=Marvel&api-key=<key>
+        // &show-tags=contributor&show-fields=thumbnail, the last two derived from the fields
+        GuardianQuery.Builder builder = new GuardianQuery.Builder(GUARDIAN_REQUEST_URL);
+        for (String parameter : topic.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) {
+                continue;
+            }
+            String name = parameter.substring(0, equals);
+            String value = parameter.substring(equals + 1);
+            if ("section".equals(name)) {
+                builder.section(value);
+            } else if ("q".equals(name)) {
+                builder.query(value);
+            }
+        }
+        return builder
+                .apiKey(apiKey)
+                .bind(fields)
+                .build();
+    }
+
+    /**
+     * Returns the URL of the search endpoint with the API key alone, for requests of given
+     * articles, see {@link ArticlePrefetcher}.
+     */
+    public static String articlesUrl() {
+        return new GuardianQuery.Builder(GUARDIAN_REQUEST_URL)
+                .apiKey(GUARDIAN_API_KEY)
+                .build();
+    }
+}
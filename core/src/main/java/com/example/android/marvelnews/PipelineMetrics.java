@@ -0,0 +1,222 @@
+package com.example.android.marvelnews;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Timings and byte counts of each stage of loading the news, from the request to the first
+ * bound list item, kept in {@link PipelineHistogram}s.
+ * <p>
+ * Metrics are off by default. While off, {@link #start()} returns 0 without reading the clock
+ * and every record call returns right away, so the instrumented code only pays for a volatile
+ * read. Durations are recorded in microseconds.
+ */
+public final class PipelineMetrics {
+
+    /**
+     * Stages of the loading pipeline.
+     */
+    public enum Stage {
+        /**
+         * DNS lookup, connect and TLS handshake of a request
+         */
+        CONNECT("us"),
+
+        /**
+         * Time to first byte after connecting
+         */
+        FIRST_BYTE("us"),
+
+        /**
+         * Reading the response body, which overlaps its parsing
+         */
+        BODY("us"),
+
+        /**
+         * Size of a response body as received, before decompression
+         */
+        BODY_BYTES("bytes"),
+
+        /**
+         * Parsing a network response, including the read of its body
+         */
+        PARSE("us"),
+
+        /**
+         * Parsing a response served by the response cache
+         */
+        CACHE_PARSE("us"),
+
+        /**
+         * Whole background load of MarvelNewsLoader
+         */
+        LOAD("us"),
+
+        /**
+         * Handoff of a load result from the background thread to onLoadFinished
+         */
+        DELIVERY("us"),
+
+        /**
+         * From a list handed to the adapter to the first bound list item
+         */
+        FIRST_BIND("us"),
+
+        /**
+         * Wait of a task of the visible lane of the PriorityScheduler
+         */
+        VISIBLE_WAIT("us"),
+
+        /**
+         * Wait of a task of the prefetch lane of the PriorityScheduler
+         */
+        PREFETCH_WAIT("us"),
+
+        /**
+         * Wait of a task of the sync lane of the PriorityScheduler
+         */
+        SYNC_WAIT("us"),
+
+        /**
+         * Tasks queued in the visible lane of the PriorityScheduler, at each submit
+         */
+        VISIBLE_DEPTH("tasks"),
+
+        /**
+         * Tasks queued in the prefetch lane of the PriorityScheduler, at each submit
+         */
+        PREFETCH_DEPTH("tasks"),
+
+        /**
+         * Tasks queued in the sync lane of the PriorityScheduler, at each submit
+         */
+        SYNC_DEPTH("tasks");
+
+        /**
+         * Unit of the recorded values
+         */
+        final String mUnit;
+
+        Stage(String unit) {
+            mUnit = unit;
+        }
+    }
+
+    private static final Map<Stage, PipelineHistogram> sHistograms = new EnumMap<>(Stage.class);
+
+    static {
+        for (Stage stage : Stage.values()) {
+            sHistograms.put(stage, new PipelineHistogram());
+        }
+    }
+
+    private static volatile boolean sEnabled;
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Switches the metrics on or off.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Returns true if the metrics are recorded.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Returns the start time of a stage to pass to {@link #stop(Stage, long)}, or 0 if the
+     * metrics are off.
+     */
+    public static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of a stage started with {@link #start()}.
+     */
+    public static void stop(Stage stage, long startNanos) {
+        if (startNanos != 0 && sEnabled) {
+            sHistograms.get(stage).record((System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    /**
+     * Records a value, in the unit of the stage.
+     */
+    public static void record(Stage stage, long value) {
+        if (sEnabled) {
+            sHistograms.get(stage).record(value);
+        }
+    }
+
+    /**
+     * Records the network stages of a finished request.
+     */
+    public static void recordRequest(GuardianHttpClient.Timing timing) {
+        if (!sEnabled) {
+            return;
+        }
+        sHistograms.get(Stage.CONNECT).record((timing.connectNanos - timing.startNanos) / 1000);
+        sHistograms.get(Stage.FIRST_BYTE).record((timing.firstByteNanos - timing.connectNanos) / 1000);
+        if (timing.endNanos > 0) {
+            sHistograms.get(Stage.BODY).record((timing.endNanos - timing.firstByteNanos) / 1000);
+        }
+        sHistograms.get(Stage.BODY_BYTES).record(timing.bytesReceived);
+    }
+
+    /**
+     * Returns the histogram of a stage.
+     */
+    public static PipelineHistogram getHistogram(Stage stage) {
+        return sHistograms.get(stage);
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public static void reset() {
+        for (PipelineHistogram histogram : sHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes a table of the count, mean and percentiles of every stage.
+     */
+    public static void dump(Writer writer) throws IOException {
+        writer.write(String.format(Locale.US, "%-14s %7s %10s %10s %10s %10s %10s %s%n",
+                "stage", "count", "mean", "p50", "p90", "p99", "max", "unit"));
+        for (Stage stage : Stage.values()) {
+            PipelineHistogram histogram = sHistograms.get(stage);
+            writer.write(String.format(Locale.US, "%-14s %7d %10.0f %10d %10d %10d %10d %s%n",
+                    stage.name().toLowerCase(Locale.US), histogram.getCount(),
+                    histogram.getMean(), histogram.getPercentile(50),
+                    histogram.getPercentile(90), histogram.getPercentile(99),
+                    histogram.getMax(), stage.mUnit));
+        }
+    }
+
+    /**
+     * Returns the table written by {@link #dump(Writer)}.
+     */
+    public static String dump() {
+        StringWriter writer = new StringWriter();
+        try {
+            dump(writer);
+        } catch (IOException e) {
+            // A StringWriter doesn't throw
+            throw new AssertionError(e);
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.android.marvelnews;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Works out how much of a search can be answered from news already held for another search
+ * with the same terms, and which part has to be requested.
+ * <p>
+ * News held for a search ordered by date hold every news published since its minimum date, so
+ * they answer any search ordered by date whose minimum date is the same or later: the held news
+ * only have to be filtered and sorted again. A search reaching further back is answered in part,
+ * and only the days before the held minimum date have to be requested. News ordered by relevance
+ * can't be sorted locally, so that order is never answered from held news.
+ */
+public final class QuerySubsumption {
+
+    /**
+     * What held news answer of a search.
+     */
+    public static final class Plan {
+
+        /**
+         * Earliest publication date of the search (yyyy-MM-dd)
+         */
+        public final String minDate;
+
+        /**
+         * Order of the search, "newest", "oldest" or "relevance"
+         */
+        public final String orderBy;
+
+        /**
+         * True if the held news answer the search at least in part
+         */
+        public final boolean local;
+
+        /**
+         * First day (yyyy-MM-dd) of the news to request that the held news miss, or null
+         */
+        public final String gapFromDate;
+
+        /**
+         * Last day (yyyy-MM-dd) of the news to request that the held news miss, or null. It is
+         * the held minimum date, which is requested again as it may be partly held.
+         */
+        public final String gapToDate;
+
+        private Plan(String minDate, String orderBy, boolean local, String gapFromDate,
+                     String gapToDate) {
+            this.minDate = minDate;
+            this.orderBy = orderBy;
+            this.local = local;
+            this.gapFromDate = gapFromDate;
+            this.gapToDate = gapToDate;
+        }
+
+        /**
+         * Returns true if the held news answer the whole search, without any request.
+         */
+        public boolean isComplete() {
+            return local && gapFromDate == null;
+        }
+    }
+
+    private QuerySubsumption() {
+    }
+
+    /**
+     * Plans a search from the news held for another search with the same terms.
+     *
+     * @param heldMinDate minimum date (yyyy-MM-dd) of the held news, or null if none are held
+     * @param heldOrderBy order of the held news
+     * @param minDate     minimum date (yyyy-MM-dd) of the search
+     * @param orderBy     order of the search
+     */
+    public static Plan plan(String heldMinDate, String heldOrderBy, String minDate,
+                            String orderBy) {
+        if (heldMinDate == null || !isDateOrder(heldOrderBy) || !isDateOrder(orderBy)) {
+            return new Plan(minDate, orderBy, false, null, null);
+        }
+        if (minDate.compareTo(heldMinDate) >= 0) {
+            return new Plan(minDate, orderBy, true, null, null);
+        }
+        return new Plan(minDate, orderBy, true, minDate, heldMinDate);
+    }
+
+    /**
+     * Returns the held news matching the planned search, in its order, or null if the held news
+     * don't answer it.
+     */
+    public static List<MarvelNews> answer(Plan plan, List<MarvelNews> held) {
+        if (!plan.local || held == null) {
+            return null;
+        }
+        long minTime = parseDay(plan.minDate);
+        List<MarvelNews> answer = new ArrayList<>(held.size());
+        for (int i = 0; i < held.size(); i++) {
+            MarvelNews marvelNews = held.get(i);
+            Date time = marvelNews.getTime();
+            // News without a date are never returned by a search with a minimum date
+            if (time != null && time.getTime() >= minTime) {
+                answer.add(marvelNews);
+            }
+        }
+        final boolean oldestFirst = "oldest".equals(plan.orderBy);
+        Collections.sort(answer, new Comparator<MarvelNews>() {
+            @Override
+            public int compare(MarvelNews first, MarvelNews second) {
+                int order = first.getTime().compareTo(second.getTime());
+                return oldestFirst ? order : -order;
+            }
+        });
+        return answer;
+    }
+
+    /**
+     * Returns true if news in the given order can be sorted locally.
+     */
+    public static boolean isDateOrder(String orderBy) {
+        return "newest".equals(orderBy) || "oldest".equals(orderBy);
+    }
+
+    /**
+     * Returns the start of the given day (yyyy-MM-dd) in milliseconds, or 0 if it is malformed.
+     */
+    private static long parseDay(String day) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").parse(day).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
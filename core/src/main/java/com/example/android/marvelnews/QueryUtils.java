@@ -0,0 +1,368 @@
+package com.example.android.marvelnews;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helper methods related to requesting and receiving marvelNew data from Guardians dataset.
+ */
+public final class QueryUtils {
+
+    /**
+     * Logger of the errors, which Android forwards to the system log
+     */
+    private static final Logger LOGGER = Logger.getLogger(QueryUtils.class.getName());
+
+    /**
+     * HTTP client shared by every request, so connections are reused
+     */
+    private static final GuardianHttpClient sHttpClient = new GuardianHttpClient();
+
+    /**
+     * Cache of the responses, or null if responses aren't cached
+     */
+    private static volatile DiskResponseCache sResponseCache;
+
+    /**
+     * Policy measuring the speed of the network from the requests, or null
+     */
+    private static volatile FetchPolicy sFetchPolicy;
+
+    /**
+     * Shares a request between the callers asking for the same URL while it is in flight
+     */
+    private static final RequestCoalescer sCoalescer = new RequestCoalescer(
+            new RequestCoalescer.Fetcher() {
+                @Override
+                public MarvelNewsParser.PageInfo fetch(String requestUrl,
+                                                       MarvelNewsParser.Callback callback,
+                                                       FetchCancellation cancellation) {
+                    return fetchUncoalesced(requestUrl, callback, cancellation);
+                }
+            });
+
+    static {
+        // Feed the network stages of every request to the pipeline metrics
+        sHttpClient.setTimingListener(new GuardianHttpClient.TimingListener() {
+            @Override
+            public void onRequestFinished(String url, GuardianHttpClient.Timing timing) {
+                PipelineMetrics.recordRequest(timing);
+                FetchPolicy fetchPolicy = sFetchPolicy;
+                if (fetchPolicy != null) {
+                    fetchPolicy.onRequestFinished(timing);
+                }
+            }
+        });
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a {@link QueryUtils} object.
+     * This class is only meant to hold static variables and methods, which can be accessed
+     * directly from the class name QueryUtils (and an object instance of QueryUtils is not needed).
+     */
+    private QueryUtils() {
+    }
+
+    /**
+     * Query the Guardians dataset and return a list of {@link MarvelNews} objects.
+     */
+    public static List<MarvelNews> fetchMarvelNewsData(String requestUrl) {
+        // Collect every {@link MarvelNews} emitted by the streaming parser
+        final List<MarvelNews> marvelNewss = new ArrayList<>();
+        MarvelNewsParser.PageInfo pageInfo = fetchMarvelNewsData(requestUrl,
+                new MarvelNewsParser.Callback() {
+                    @Override
+                    public void onMarvelNews(MarvelNews marvelNews) {
+                        marvelNewss.add(marvelNews);
+                    }
+                });
+
+        // If the request failed, there is no list to return
+        if (pageInfo == null) {
+            return null;
+        }
+
+        // Return the list of {@link MarvelNews}s
+        return marvelNewss;
+    }
+
+    /**
+     * Query the Guardians dataset and hand each {@link MarvelNews} to the callback as soon as
+     * it has been parsed from the response stream.
+     *
+     * @return the paging information of the response, or null if the request failed
+     */
+    public static MarvelNewsParser.PageInfo fetchMarvelNewsData(String requestUrl,
+                                                                MarvelNewsParser.Callback callback) {
+        return fetchMarvelNewsData(requestUrl, callback, null);
+    }
+
+    /**
+     * Query the Guardians dataset and hand each {@link MarvelNews} to the callback as soon as
+     * it has been parsed from the response stream. Canceling the given token aborts the
+     * connection and the read of the response.
+     * <p>
+     * Concurrent calls for the same URL share one request and one parse, see
+     * {@link RequestCoalescer}. Canceling the token then only aborts the request once every
+     * caller sharing it has canceled.
+     *
+     * @param cancellation token aborting the request, may be null
+     * @return the paging information of the response, or null if the request failed or was
+     * canceled
+     */
+    public static MarvelNewsParser.PageInfo fetchMarvelNewsData(String requestUrl,
+                                                                MarvelNewsParser.Callback callback,
+                                                                FetchCancellation cancellation) {
+        return sCoalescer.fetch(requestUrl, callback, cancellation);
+    }
+
+    /**
+     * Performs a request shared by the callers of {@link #fetchMarvelNewsData(String,
+     * MarvelNewsParser.Callback, FetchCancellation)}.
+     */
+    private static MarvelNewsParser.PageInfo fetchUncoalesced(String requestUrl,
+                                                              MarvelNewsParser.Callback callback,
+                                                              FetchCancellation cancellation) {
+        // Create URL object
+        URL url = createUrl(requestUrl);
+
+        // Perform HTTP request to the URL and parse the JSON response while it is received
+        MarvelNewsParser.PageInfo pageInfo = null;
+        try {
+            pageInfo = makeHttpRequest(url, requestUrl, callback, cancellation);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem making the HTTP request.", e);
+        }
+        return pageInfo;
+    }
+
+    /**
+     * Hand each {@link MarvelNews} of the cached response for the given URL to the callback,
+     * without any network request. Only responses that may be shown while they are being
+     * revalidated are used.
+     *
+     * @return the paging information of the cached response, or null if there is none
+     */
+    public static MarvelNewsParser.PageInfo readCachedMarvelNewsData(String requestUrl,
+                                                                     MarvelNewsParser.Callback callback) {
+        DiskResponseCache cache = sResponseCache;
+        if (cache == null) {
+            return null;
+        }
+        DiskResponseCache.Entry entry = cache.get(requestUrl);
+        if (entry == null || !entry.isUsableWhileRevalidating(System.currentTimeMillis())) {
+            return null;
+        }
+        try {
+            return parseCachedResponse(entry, callback);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading the cached marvelNews JSON results.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the HTTP client shared by every request.
+     */
+    public static GuardianHttpClient getHttpClient() {
+        return sHttpClient;
+    }
+
+    /**
+     * Returns the coalescer sharing the requests in flight.
+     */
+    public static RequestCoalescer getRequestCoalescer() {
+        return sCoalescer;
+    }
+
+    /**
+     * Sets the cache used for the responses, or null to stop caching them.
+     */
+    public static void setResponseCache(DiskResponseCache cache) {
+        sResponseCache = cache;
+    }
+
+    /**
+     * Sets the policy the timing of every request is reported to, or null.
+     */
+    public static void setFetchPolicy(FetchPolicy fetchPolicy) {
+        sFetchPolicy = fetchPolicy;
+    }
+
+    /**
+     * Returns new URL object from the given string URL.
+     */
+    private static URL createUrl(String stringUrl) {
+        URL url = null;
+        try {
+            url = new URL(stringUrl);
+        } catch (MalformedURLException e) {
+            LOGGER.log(Level.SEVERE, "Problem building the URL ", e);
+        }
+        return url;
+    }
+
+    /**
+     * Make an HTTP request to the given URL with the shared {@link GuardianHttpClient} and stream
+     * the response through a {@link MarvelNewsParser}. The body is never buffered as a whole.
+     * <p>
+     * If a response cache is set, a fresh cached response is parsed without any request, an
+     * expired one is revalidated with a conditional request, and a new response is written to
+     * the cache while it is parsed.
+     *
+     * @return the paging information of the response, or null if the request failed
+     */
+    private static MarvelNewsParser.PageInfo makeHttpRequest(URL url, String requestUrl,
+                                                             MarvelNewsParser.Callback callback,
+                                                             FetchCancellation cancellation)
+            throws IOException {
+        MarvelNewsParser.PageInfo pageInfo = null;
+
+        // If the URL is null, then return early.
+        if (url == null) {
+            return pageInfo;
+        }
+
+        // If the cached response is still fresh, don't go to the network at all.
+        DiskResponseCache cache = sResponseCache;
+        DiskResponseCache.Entry cachedEntry = cache != null ? cache.get(requestUrl) : null;
+        if (cachedEntry != null && cachedEntry.isFresh(System.currentTimeMillis())) {
+            return parseCachedResponse(cachedEntry, callback);
+        }
+        return makeHttpRequest(url, requestUrl, cache, cachedEntry, callback, cancellation);
+    }
+
+    /**
+     * Make the HTTP request, conditional on the cached entry if there is one.
+     *
+     * @param cachedEntry expired entry to revalidate, or null to request the whole response
+     */
+    private static MarvelNewsParser.PageInfo makeHttpRequest(URL url, String requestUrl,
+                                                             DiskResponseCache cache,
+                                                             DiskResponseCache.Entry cachedEntry,
+                                                             MarvelNewsParser.Callback callback,
+                                                             FetchCancellation cancellation)
+            throws IOException {
+        MarvelNewsParser.PageInfo pageInfo = null;
+
+        // Ask the server to answer "304 Not Modified" if the cached response is still valid
+        Map<String, String> headers = new HashMap<>();
+        if (cachedEntry != null) {
+            if (cachedEntry.getEtag() != null) {
+                headers.put("If-None-Match", cachedEntry.getEtag());
+            }
+            if (cachedEntry.getLastModified() != null) {
+                headers.put("If-Modified-Since", cachedEntry.getLastModified());
+            }
+        }
+
+        GuardianHttpClient.Response response = null;
+        DiskResponseCache.CachingInputStream cachingStream = null;
+        boolean cachedBodyGone = false;
+        try {
+            response = sHttpClient.get(url.toString(), headers, cancellation);
+
+            int responseCode = response.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedEntry != null) {
+                // The cached response is still valid, serve it without downloading it again.
+                InputStream cachedBody = openCachedBody(cachedEntry);
+                if (cachedBody != null) {
+                    cache.markValidated(requestUrl);
+                    pageInfo = parseCachedBody(cachedBody, callback);
+                } else {
+                    cachedBodyGone = true;
+                }
+            } else if (responseCode == 200) {
+                // If the request was successful (response code 200),
+                // then parse the decompressed input stream while it is being read.
+                InputStream inputStream = response.getBody();
+                if (cache != null) {
+                    cachingStream = cache.cacheWhileReading(requestUrl, inputStream,
+                            response.getHeader("ETag"), response.getHeader("Last-Modified"));
+                    inputStream = cachingStream;
+                }
+                long parseStart = PipelineMetrics.start();
+                pageInfo = new MarvelNewsParser().parse(
+                        new InputStreamReader(inputStream, Charset.forName("UTF-8")), callback);
+                PipelineMetrics.stop(PipelineMetrics.Stage.PARSE, parseStart);
+                if (cachingStream != null) {
+                    cachingStream.commit();
+                }
+            } else {
+                LOGGER.severe("Error response code: " + responseCode);
+            }
+        } catch (GuardianRateLimiter.RateLimitedException e) {
+            // The quota of the API key is used up for now, the caller shows the news it has.
+            LOGGER.severe("Request throttled for " + e.getRetryAfterMillis() + " ms: " + url);
+        } catch (IOException e) {
+            if (cancellation != null && cancellation.isCanceled()) {
+                // The request was aborted on purpose, there is nothing to report.
+                return null;
+            }
+            LOGGER.log(Level.SEVERE, "Problem retrieving the marvelNews JSON results.", e);
+        } finally {
+            if (cachingStream != null) {
+                // Drops the pending cache entry unless it has been committed
+                cachingStream.abort();
+            }
+            if (response != null) {
+                // Closing the response hands the connection back to the pool for the next request
+                response.close();
+            }
+        }
+        if (cachedBodyGone) {
+            // The entry was evicted or replaced since it was read, so the 304 has no body to
+            // serve: ask again for the whole response.
+            return makeHttpRequest(url, requestUrl, cache, null, callback, cancellation);
+        }
+        return pageInfo;
+    }
+
+    /**
+     * Opens the body of a cached response, or returns null if the entry is gone.
+     */
+    private static InputStream openCachedBody(DiskResponseCache.Entry entry) {
+        try {
+            return entry.openBody();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse the body of a cached response.
+     */
+    private static MarvelNewsParser.PageInfo parseCachedResponse(DiskResponseCache.Entry entry,
+                                                                 MarvelNewsParser.Callback callback)
+            throws IOException {
+        return parseCachedBody(entry.openBody(), callback);
+    }
+
+    /**
+     * Parse an opened body of a cached response, and close it.
+     */
+    private static MarvelNewsParser.PageInfo parseCachedBody(InputStream inputStream,
+                                                             MarvelNewsParser.Callback callback)
+            throws IOException {
+        long parseStart = PipelineMetrics.start();
+        try {
+            MarvelNewsParser.PageInfo pageInfo = new MarvelNewsParser().parse(
+                    new InputStreamReader(inputStream, Charset.forName("UTF-8")), callback);
+            PipelineMetrics.stop(PipelineMetrics.Stage.CACHE_PARSE, parseStart);
+            return pageInfo;
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.android.marvelnews;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares one in-flight request between every caller asking for the same URL at the same time.
+ * <p>
+ * The first caller for a URL performs the request on its own thread and gets each news
+ * through its callback as soon as it is parsed, like an unshared request. Callers for the same
+ * normalized URL join it until its first news is parsed; later ones start a request of their
+ * own, so no caller misses a news. Only once a caller has joined are the news parsed kept for
+ * it, each joined caller getting them on its own thread and through its own callback.
+ * <p>
+ * Each caller keeps its own {@link FetchCancellation}. Canceling it makes a joined caller
+ * return; the first caller stops getting news, but keeps reading the response while others
+ * wait for it. The shared request is aborted once every caller has gone. A finished fetch is
+ * never reused, so a later caller starts a new request.
+ */
+public final class RequestCoalescer {
+
+    /**
+     * Performs the request shared by the callers.
+     */
+    public interface Fetcher {
+        /**
+         * @return the paging information of the response, or null if the request failed or
+         * was canceled
+         */
+        MarvelNewsParser.PageInfo fetch(String requestUrl, MarvelNewsParser.Callback callback,
+                                        FetchCancellation cancellation);
+    }
+
+    private final Fetcher mFetcher;
+
+    /**
+     * Requests in flight that callers may still join, by normalized URL
+     */
+    private final Map<String, Flight> mFlights = new HashMap<>();
+
+    /**
+     * Number of callers that joined a request started by another caller
+     */
+    private final AtomicInteger mCoalescedCount = new AtomicInteger();
+
+    /**
+     * Constructs a new {@link RequestCoalescer}.
+     *
+     * @param fetcher performing the requests
+     */
+    public RequestCoalescer(Fetcher fetcher) {
+        mFetcher = fetcher;
+    }
+
+    /**
+     * Fetches the given URL, or joins the request already in flight for it, and hands each
+     * {@link MarvelNews} to the callback. This blocks, so call it on a background thread.
+     *
+     * @param cancellation token making this caller give up, may be null
+     * @return the paging information of the response, or null if the request failed or this
+     * caller canceled
+     */
+    public MarvelNewsParser.PageInfo fetch(String requestUrl, MarvelNewsParser.Callback callback,
+                                           FetchCancellation cancellation) {
+        if (cancellation != null && cancellation.isCanceled()) {
+            return null;
+        }
+
+        // Equivalent URLs, once normalized like the cache keys, share their request
+        String key = DiskResponseCache.normalize(requestUrl);
+        Flight flight;
+        boolean started = false;
+        synchronized (this) {
+            flight = mFlights.get(key);
+            if (flight == null) {
+                flight = new Flight(key);
+                mFlights.put(key, flight);
+                started = true;
+            } else {
+                mCoalescedCount.incrementAndGet();
+                flight.mJoined = true;
+            }
+            flight.mWaiters++;
+        }
+        if (started) {
+            return lead(flight, requestUrl, callback, cancellation);
+        }
+
+        final Flight joined = flight;
+        Runnable wakeUp = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (joined) {
+                    joined.notifyAll();
+                }
+            }
+        };
+        if (cancellation != null) {
+            cancellation.addListener(wakeUp);
+        }
+        try {
+            return await(joined, callback, cancellation);
+        } finally {
+            if (cancellation != null) {
+                cancellation.removeListener(wakeUp);
+            }
+            leave(joined);
+        }
+    }
+
+    /**
+     * Returns the number of requests in flight that callers may still join.
+     */
+    public synchronized int getInFlightCount() {
+        return mFlights.size();
+    }
+
+    /**
+     * Returns the number of callers that shared a request started by another caller.
+     */
+    public int getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    /**
+     * Performs the request of the flight on the calling thread, handing each news to the
+     * callback as it is parsed, and keeping it for the joined callers if there are any.
+     */
+    private MarvelNewsParser.PageInfo lead(final Flight flight, String requestUrl,
+                                           final MarvelNewsParser.Callback callback,
+                                           final FetchCancellation cancellation) {
+        // The caller leaves as soon as it cancels, which aborts the request unless others wait
+        final AtomicBoolean left = new AtomicBoolean();
+        Runnable leave = new Runnable() {
+            @Override
+            public void run() {
+                if (left.compareAndSet(false, true)) {
+                    leave(flight);
+                }
+            }
+        };
+        if (cancellation != null) {
+            cancellation.addListener(leave);
+        }
+
+        MarvelNewsParser.PageInfo pageInfo = null;
+        try {
+            pageInfo = mFetcher.fetch(requestUrl, new MarvelNewsParser.Callback() {
+                /**
+                 * True once callers can't join anymore, so the joined ones are known
+                 */
+                private boolean mClosed;
+
+                /**
+                 * True if the news are kept for joined callers
+                 */
+                private boolean mShared;
+
+                @Override
+                public void onMarvelNews(MarvelNews marvelNews) {
+                    if (!mClosed) {
+                        // A caller joining now would miss this news
+                        mClosed = true;
+                        mShared = close(flight);
+                    }
+                    if (mShared) {
+                        synchronized (flight) {
+                            flight.mNews.add(marvelNews);
+                            flight.notifyAll();
+                        }
+                    }
+                    if (callback != null && !left.get()) {
+                        callback.onMarvelNews(marvelNews);
+                    }
+                }
+            }, flight.mCancellation);
+        } finally {
+            close(flight);
+            synchronized (flight) {
+                flight.mPageInfo = pageInfo;
+                flight.mDone = true;
+                flight.notifyAll();
+            }
+            if (cancellation != null) {
+                cancellation.removeListener(leave);
+            }
+            leave.run();
+        }
+        return cancellation != null && cancellation.isCanceled() ? null : pageInfo;
+    }
+
+    /**
+     * Stops callers from joining the flight.
+     *
+     * @return true if a caller joined it
+     */
+    private synchronized boolean close(Flight flight) {
+        if (mFlights.get(flight.mKey) == flight) {
+            mFlights.remove(flight.mKey);
+        }
+        return flight.mJoined;
+    }
+
+    /**
+     * Hands the news of the flight to the callback as they arrive, until the flight is done or
+     * the caller cancels.
+     */
+    private MarvelNewsParser.PageInfo await(Flight flight, MarvelNewsParser.Callback callback,
+                                            FetchCancellation cancellation) {
+        int delivered = 0;
+        try {
+            while (true) {
+                MarvelNews[] batch;
+                boolean done;
+                MarvelNewsParser.PageInfo pageInfo;
+                synchronized (flight) {
+                    while (delivered == flight.mNews.size() && !flight.mDone
+                            && (cancellation == null || !cancellation.isCanceled())) {
+                        flight.wait();
+                    }
+                    if (cancellation != null && cancellation.isCanceled()) {
+                        return null;
+                    }
+                    List<MarvelNews> arrived = flight.mNews.subList(delivered, flight.mNews.size());
+                    batch = arrived.toArray(new MarvelNews[arrived.size()]);
+                    done = flight.mDone;
+                    pageInfo = flight.mPageInfo;
+                }
+                // Deliver outside of the lock, so a slow callback doesn't hold up the fetch
+                if (callback != null) {
+                    for (MarvelNews marvelNews : batch) {
+                        callback.onMarvelNews(marvelNews);
+                    }
+                }
+                delivered += batch.length;
+                if (done) {
+                    return pageInfo;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Forgets a caller of the flight, and aborts the flight if it was the last one.
+     */
+    private void leave(Flight flight) {
+        boolean abort;
+        synchronized (this) {
+            flight.mWaiters--;
+            abort = flight.mWaiters == 0;
+            if (abort && mFlights.get(flight.mKey) == flight) {
+                // Later callers must not join a request being aborted
+                mFlights.remove(flight.mKey);
+            }
+        }
+        if (abort) {
+            // Does nothing once the request is finished
+            flight.mCancellation.cancel();
+        }
+    }
+
+    /**
+     * A request shared by the callers of one URL.
+     */
+    private static final class Flight {
+
+        /**
+         * Normalized URL of the request
+         */
+        final String mKey;
+
+        /**
+         * Token aborting the shared request once every caller has gone
+         */
+        final FetchCancellation mCancellation = new FetchCancellation();
+
+        /**
+         * News parsed so far for the joined callers, guarded by the flight. Empty unless a
+         * caller joined.
+         */
+        final List<MarvelNews> mNews = new ArrayList<>();
+
+        /**
+         * Number of callers waiting for the request, guarded by the coalescer
+         */
+        int mWaiters;
+
+        /**
+         * True once a caller joined the request, guarded by the coalescer
+         */
+        boolean mJoined;
+
+        /**
+         * True once the request is finished, guarded by the flight
+         */
+        boolean mDone;
+
+        /**
+         * Paging information of the response, or null if the request failed
+         */
+        MarvelNewsParser.PageInfo mPageInfo;
+
+        Flight(String key) {
+            mKey = key;
+        }
+    }
+}
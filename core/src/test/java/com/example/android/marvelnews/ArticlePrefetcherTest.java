@@ -0,0 +1,102 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests {@link ArticlePrefetcher} against a local fake "/search" server.
+ */
+public class ArticlePrefetcherTest {
+
+    private static final long NO_LIMIT = Long.MAX_VALUE / 2;
+
+    private FakeGuardianServer mServer;
+    private File mDirectory;
+    private DiskResponseCache mStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(30);
+        mDirectory = File.createTempFile("articles", "");
+        mDirectory.delete();
+        mStore = new DiskResponseCache(mDirectory, 10 * 1024 * 1024, NO_LIMIT, 0);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+        mStore.clear();
+        mDirectory.delete();
+    }
+
+    @Test
+    public void prefetch_storesTheBodiesOfTheFirstNews() {
+        int stored = prefetcher(8, NO_LIMIT, NO_LIMIT).prefetch(news(12), null);
+
+        assertEquals(8, stored);
+        // One request per batch of articles
+        assertEquals(2, mServer.getRequestCount());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(mServer.body(i),
+                    ArticlePrefetcher.getBody(mStore, FakeGuardianServer.webUrl(i)));
+        }
+        assertNull(ArticlePrefetcher.getBody(mStore, FakeGuardianServer.webUrl(8)));
+    }
+
+    @Test
+    public void prefetch_skipsStoredBodies() {
+        prefetcher(8, NO_LIMIT, NO_LIMIT).prefetch(news(12), null);
+        int stored = prefetcher(10, NO_LIMIT, NO_LIMIT).prefetch(news(12), null);
+
+        assertEquals(2, stored);
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void prefetch_staysWithinTheByteBudget() {
+        mServer.setBodyLength(4000);
+
+        int stored = prefetcher(20, 30000, NO_LIMIT).prefetch(news(20), null);
+
+        // 5 articles take about 20 KB, only 2 more fit in the budget
+        assertEquals(7, stored);
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void prefetch_stopsOnceTheTimeIsUp() {
+        assertEquals(0, prefetcher(8, NO_LIMIT, 0).prefetch(news(12), null));
+        assertEquals(0, mServer.getRequestCount());
+    }
+
+    @Test
+    public void articleId_isThePathOfGuardianUrls() {
+        assertEquals("film/2018/may/15/some-review", ArticlePrefetcher.articleId(
+                "https://www.theguardian.com/film/2018/may/15/some-review"));
+        assertNull(ArticlePrefetcher.articleId("https://example.com/film/some-review"));
+        assertNull(ArticlePrefetcher.articleId("https://www.theguardian.com/"));
+        assertNull(ArticlePrefetcher.articleId(null));
+    }
+
+    private ArticlePrefetcher prefetcher(int maxArticles, long maxBytes, long maxMillis) {
+        return new ArticlePrefetcher(mServer.searchUrl(), mStore, new GuardianHttpClient(),
+                maxArticles, maxBytes, maxMillis);
+    }
+
+    private static List<MarvelNews> news(int count) {
+        List<MarvelNews> marvelNewss = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            marvelNewss.add(new MarvelNews("", "Marvel story " + i, "Film", null,
+                    FakeGuardianServer.webUrl(i)));
+        }
+        return marvelNewss;
+    }
+}
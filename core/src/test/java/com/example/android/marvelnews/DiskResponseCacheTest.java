@@ -0,0 +1,110 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link DiskResponseCache} in a temporary directory.
+ */
+public class DiskResponseCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final long NO_LIMIT = Long.MAX_VALUE / 2;
+
+    private static final String URL = "https://content.guardianapis.com/search?q=marvel";
+
+    private File mDirectory;
+    private DiskResponseCache mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = File.createTempFile("responses", "");
+        mDirectory.delete();
+        mCache = new DiskResponseCache(mDirectory, 10 * 1024 * 1024, NO_LIMIT, 0);
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+        mDirectory.delete();
+    }
+
+    @Test
+    public void openBody_readsTheBodyAfterAnyValidators() throws IOException {
+        // A NUL and a character outside the BMP are longer in modified UTF-8 than in UTF-8
+        String etag = "W/\"caf\u00e9\u0000\ud83d\udca5\"";
+        store(URL, "{\"response\":{}}", etag);
+
+        DiskResponseCache.Entry entry = mCache.get(URL);
+        assertEquals(etag, entry.getEtag());
+        assertEquals("{\"response\":{}}", read(entry.openBody()));
+    }
+
+    @Test
+    public void openBody_failsOnceTheEntryIsReplaced() throws IOException {
+        store(URL, "first", "\"1\"");
+        DiskResponseCache.Entry entry = mCache.get(URL);
+        store(URL, "second response", "\"2\"");
+
+        try {
+            read(entry.openBody());
+            fail("The entry holds another response");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals("second response", read(mCache.get(URL).openBody()));
+    }
+
+    @Test
+    public void openBody_survivesARevalidation() throws IOException {
+        store(URL, "body", "\"1\"");
+        DiskResponseCache.Entry entry = mCache.get(URL);
+        mCache.markValidated(URL);
+
+        assertEquals("body", read(entry.openBody()));
+    }
+
+    @Test
+    public void markValidated_leavesNoFileForAnEvictedEntry() throws IOException {
+        store(URL, "body", "\"1\"");
+        mCache.clear();
+
+        assertFalse(mCache.markValidated(URL));
+        assertEquals(0, mDirectory.listFiles().length);
+        assertNull(mCache.get(URL));
+    }
+
+    private void store(String url, String body, String etag) throws IOException {
+        DiskResponseCache.CachingInputStream in = mCache.cacheWhileReading(url,
+                new ByteArrayInputStream(body.getBytes(UTF_8)), etag, null);
+        in.commit();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, count);
+            }
+            return new String(bytes.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.android.marvelnews;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the Guardian "/search" endpoint, serving a fixed number of synthetic
+ * results split into pages of the requested "page-size".
+ * <p>
+ * Result n (counting from 0) is published n minutes before 2018-05-15T12:00:00Z, so results
+ * are served newest first, like "order-by=newest". A request with "ids" gets the results with
+ * those ids instead, with a synthetic body if it asks for "show-fields=body".
+ */
+class FakeGuardianServer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final HttpServer mServer;
+    private final int mTotal;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mFailuresLeft = new AtomicInteger();
+    private final AtomicInteger mThrottlesLeft = new AtomicInteger();
+    private volatile String mRetryAfter;
+    private final Set<InetSocketAddress> mClientAddresses =
+            Collections.synchronizedSet(new HashSet<InetSocketAddress>());
+    private volatile boolean mGzip;
+
+    /**
+     * Page answered with "503 Service Unavailable", or 0 for none
+     */
+    private volatile int mFailingPage;
+
+    /**
+     * Delay before answering, per page number; later pages answer first by default so that
+     * out-of-order arrival is exercised.
+     */
+    private volatile long mDelayPerRemainingPageMillis;
+
+    /**
+     * Number of characters of the body of every result
+     */
+    private volatile int mBodyLength = 2000;
+
+    /**
+     * Query string of the last search request, or null
+     */
+    private volatile String mLastQuery;
+
+    FakeGuardianServer(int total) throws IOException {
+        mTotal = total;
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serveSearch(exchange);
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    /**
+     * Makes page p wait (pages - p) * millis before answering.
+     */
+    void setDelayPerRemainingPage(long millis) {
+        mDelayPerRemainingPageMillis = millis;
+    }
+
+    /**
+     * Sets the number of characters of the body of every result.
+     */
+    void setBodyLength(int bodyLength) {
+        mBodyLength = bodyLength;
+    }
+
+    /**
+     * Compresses the responses of clients accepting gzip.
+     */
+    void setGzip(boolean gzip) {
+        mGzip = gzip;
+    }
+
+    /**
+     * Answers the next requests with "503 Service Unavailable".
+     */
+    void failNextRequests(int count) {
+        mFailuresLeft.set(count);
+    }
+
+    /**
+     * Answers every request of the given page with "503 Service Unavailable", none if 0.
+     */
+    void failPage(int page) {
+        mFailingPage = page;
+    }
+
+    /**
+     * Answers the next requests with "429 Too Many Requests" and the given "Retry-After"
+     * header, none if null.
+     */
+    void throttleNextRequests(int count, String retryAfter) {
+        mRetryAfter = retryAfter;
+        mThrottlesLeft.set(count);
+    }
+
+    /**
+     * Returns the number of distinct client connections seen so far.
+     */
+    int getConnectionCount() {
+        return mClientAddresses.size();
+    }
+
+    String searchUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search?q=Marvel&api-key=test";
+    }
+
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Returns the query string of the last request, or null if there was none.
+     */
+    String getLastQuery() {
+        return mLastQuery;
+    }
+
+    void stop() {
+        mServer.stop(0);
+    }
+
+    static String webUrl(int index) {
+        return "https://www.theguardian.com/film/marvel-" + index;
+    }
+
+    private void serveSearch(HttpExchange exchange) throws IOException {
+        mRequestCount.incrementAndGet();
+        mLastQuery = exchange.getRequestURI().getRawQuery();
+        mClientAddresses.add(exchange.getRemoteAddress());
+        if (mFailuresLeft.getAndDecrement() > 0) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        if (mThrottlesLeft.getAndDecrement() > 0) {
+            if (mRetryAfter != null) {
+                exchange.getResponseHeaders().set("Retry-After", mRetryAfter);
+            }
+            exchange.getResponseHeaders().set("X-RateLimit-Remaining-day", "42");
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int pageSize = query.containsKey("page-size") ? Integer.parseInt(query.get("page-size")) : 10;
+        int page = query.containsKey("page") ? Integer.parseInt(query.get("page")) : 1;
+        int pages = Math.max(1, (mTotal + pageSize - 1) / pageSize);
+        if (page == mFailingPage) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        long delay = mDelayPerRemainingPageMillis * (pages - page);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean withBody = String.valueOf(query.get("show-fields")).contains("body");
+        String json = query.containsKey("ids")
+                ? idsResponse(query.get("ids").split(","), withBody)
+                : searchResponse(page, pageSize, pages);
+        byte[] body = json.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (mGzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+    }
+
+    private String searchResponse(int page, int pageSize, int pages) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"response\":{\"status\":\"ok\",\"userTier\":\"developer\",\"total\":").append(mTotal)
+                .append(",\"startIndex\":").append((page - 1) * pageSize + 1)
+                .append(",\"pageSize\":").append(pageSize)
+                .append(",\"currentPage\":").append(page)
+                .append(",\"pages\":").append(pages)
+                .append(",\"orderBy\":\"newest\",\"results\":[");
+        int first = (page - 1) * pageSize;
+        int last = Math.min(mTotal, first + pageSize);
+        for (int i = first; i < last; i++) {
+            if (i > first) {
+                json.append(',');
+            }
+            int minutesAgo = i;
+            json.append("{\"id\":\"film/marvel-").append(i)
+                    .append("\",\"type\":\"article\",\"sectionId\":\"film\",\"sectionName\":\"Film\"")
+                    .append(",\"webPublicationDate\":\"").append(publicationDate(minutesAgo))
+                    .append("\",\"webTitle\":\"Marvel story ").append(i)
+                    .append("\",\"webUrl\":\"").append(webUrl(i))
+                    .append("\",\"apiUrl\":\"https://content.guardianapis.com/film/marvel-").append(i)
+                    .append("\",\"tags\":[{\"id\":\"profile/someone\",\"type\":\"contributor\"")
+                    .append(",\"firstName\":\"peter\",\"lastName\":\"PARKER\"}]")
+                    .append(",\"elements\":[{\"id\":\"gu-image\",\"relation\":\"thumbnail\",\"type\":\"image\",\"assets\":[]}]")
+                    .append(",\"isHosted\":false}");
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+
+    private String idsResponse(String[] ids, boolean withBody) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"response\":{\"status\":\"ok\",\"total\":").append(ids.length)
+                .append(",\"currentPage\":1,\"pages\":1,\"results\":[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            int index = Integer.parseInt(ids[i].substring(ids[i].lastIndexOf('-') + 1));
+            json.append("{\"id\":\"").append(ids[i])
+                    .append("\",\"webTitle\":\"Marvel story ").append(index)
+                    .append("\",\"webUrl\":\"").append(webUrl(index)).append('"');
+            if (withBody) {
+                json.append(",\"fields\":{\"body\":\"").append(body(index)).append("\"}");
+            }
+            json.append('}');
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+
+    /**
+     * Returns the synthetic HTML body of the result with the given index.
+     */
+    String body(int index) {
+        StringBuilder body = new StringBuilder("<p>Marvel story ").append(index).append("</p>");
+        while (body.length() < mBodyLength) {
+            body.append('.');
+        }
+        return body.toString();
+    }
+
+    private static String publicationDate(int minutesAgo) {
+        int minutes = 12 * 60 - minutesAgo;
+        int day = 15;
+        while (minutes < 0) {
+            minutes += 24 * 60;
+            day--;
+        }
+        return String.format("2018-05-%02dT%02d:%02d:00Z", day, minutes / 60, minutes % 60);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return query;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.android.marvelnews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the limits {@link FetchPolicy} sets on each network.
+ */
+public class FetchPolicyTest {
+
+    @Test
+    public void getLimits_dependOnTheLink() {
+        FetchPolicy policy = new FetchPolicy(FetchPolicy.Link.UNMETERED);
+        assertSame(FetchPolicy.UNMETERED_LIMITS, policy.getLimits());
+        assertEquals(50, policy.getLimits().pageSize(50));
+
+        policy.setLink(FetchPolicy.Link.METERED);
+        assertSame(FetchPolicy.METERED_LIMITS, policy.getLimits());
+        assertEquals(30, policy.getLimits().pageSize(50));
+        assertEquals(10, policy.getLimits().pageSize(10));
+        assertTrue(FetchPolicy.METERED_LIMITS.articlePrefetchCount
+                < FetchPolicy.UNMETERED_LIMITS.articlePrefetchCount);
+    }
+
+    @Test
+    public void onRequestFinished_slowsDownOnASlowNetworkUntilItIsClearlyFaster() {
+        FetchPolicy policy = new FetchPolicy(FetchPolicy.Link.UNMETERED);
+
+        policy.onRequestFinished(timing(64 * 1024, 4000));
+        assertSame(FetchPolicy.SLOW_LIMITS, policy.getLimits());
+
+        // Just over the slow threshold isn't enough to leave the slow limits
+        policy.onRequestFinished(timing(64 * 1024, 1000));
+        assertSame(FetchPolicy.SLOW_LIMITS, policy.getLimits());
+
+        for (int i = 0; i < 10; i++) {
+            policy.onRequestFinished(timing(1024 * 1024, 1000));
+        }
+        assertSame(FetchPolicy.UNMETERED_LIMITS, policy.getLimits());
+    }
+
+    @Test
+    public void onRequestFinished_ignoresSmallResponses() {
+        FetchPolicy policy = new FetchPolicy(FetchPolicy.Link.METERED);
+
+        policy.onRequestFinished(timing(1024, 10000));
+
+        assertSame(FetchPolicy.METERED_LIMITS, policy.getLimits());
+    }
+
+    @Test
+    public void setLink_startsMeasuringOverAndTellsTheListeners() {
+        FetchPolicy policy = new FetchPolicy(FetchPolicy.Link.METERED);
+        final List<String> changes = new ArrayList<>();
+        policy.addListener(new FetchPolicy.Listener() {
+            @Override
+            public void onPolicyChanged(FetchPolicy.Link previousLink, FetchPolicy.Link link,
+                                        FetchPolicy.Limits limits) {
+                changes.add(previousLink + ">" + link);
+            }
+        });
+
+        policy.onRequestFinished(timing(64 * 1024, 4000));
+        policy.setLink(FetchPolicy.Link.OFFLINE);
+        policy.setLink(FetchPolicy.Link.OFFLINE);
+        policy.setLink(FetchPolicy.Link.UNMETERED);
+
+        assertSame(FetchPolicy.UNMETERED_LIMITS, policy.getLimits());
+        assertEquals("[METERED>METERED, METERED>OFFLINE, OFFLINE>UNMETERED]",
+                changes.toString());
+    }
+
+    /**
+     * Returns the timing of a request whose body took the given time.
+     */
+    private static GuardianHttpClient.Timing timing(long bytes, long bodyMillis) {
+        GuardianHttpClient.Timing timing = new GuardianHttpClient.Timing();
+        timing.startNanos = 1;
+        timing.connectNanos = 2;
+        timing.firstByteNanos = 3;
+        timing.endNanos = timing.firstByteNanos + bodyMillis * 1000000;
+        timing.bytesReceived = bytes;
+        return timing;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link GuardianHttpClient} against a local fake "/search" server.
+ */
+public class GuardianHttpClientTest {
+
+    private FakeGuardianServer mServer;
+    private GuardianHttpClient mClient;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(40);
+        mClient = new GuardianHttpClient();
+        mClient.setRetryPolicy(2, 10, 50);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void get_decompressesGzipWhileReading() throws Exception {
+        mServer.setGzip(true);
+
+        GuardianHttpClient.Response response = mClient.get(mServer.searchUrl(), null, null);
+        long decompressed = 0;
+        try {
+            InputStream body = response.getBody();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = body.read(buffer)) >= 0) {
+                decompressed += count;
+            }
+        } finally {
+            response.close();
+        }
+
+        assertEquals(200, response.getResponseCode());
+        assertTrue(response.getTiming().bytesReceived > 0);
+        assertTrue(response.getTiming().bytesReceived < decompressed);
+    }
+
+    @Test
+    public void get_retriesTransientFailures() throws Exception {
+        mServer.failNextRequests(2);
+
+        GuardianHttpClient.Response response = mClient.get(mServer.searchUrl(), null, null);
+        response.close();
+
+        assertEquals(200, response.getResponseCode());
+        assertEquals(3, response.getTiming().attempts);
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void get_reusesConnections() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            List<MarvelNews> marvelNewss = QueryUtils.fetchMarvelNewsData(mServer.searchUrl());
+            assertNotNull(marvelNewss);
+        }
+
+        assertEquals(5, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.marvelnews;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link GuardianQuery}, and compares the payload of the minimal query with the old
+ * "show-elements=all" query on fixtures shaped like Guardian responses.
+ */
+public class GuardianQueryTest {
+
+    private static final String SEARCH_URL = "https://content.guardianapis.com/search";
+
+    /**
+     * Fixture of the old query, with "show-tags=contributor&show-elements=all"
+     */
+    private static final String ALL_ELEMENTS_FIXTURE = "/fixtures/search_show_elements_all.json";
+
+    /**
+     * Fixture of the minimal query for the list, with "show-tags=contributor"
+     */
+    private static final String MINIMAL_FIXTURE = "/fixtures/search_minimal.json";
+
+    /**
+     * Fields bound by the list of the app
+     */
+    private static final Set<GuardianQuery.Field> LIST_FIELDS = GuardianQuery.fields(
+            GuardianQuery.Field.TITLE,
+            GuardianQuery.Field.AUTHOR,
+            GuardianQuery.Field.SECTION,
+            GuardianQuery.Field.DATE,
+            GuardianQuery.Field.URL,
+            GuardianQuery.Field.THUMBNAIL);
+
+    @Test
+    public void build_requestsOnlyWhatTheListBinds() {
+        String url = new GuardianQuery.Builder(SEARCH_URL)
+                .section("film")
+                .query("Marvel")
+                .bind(LIST_FIELDS)
+                .build();
+
+        assertEquals(SEARCH_URL + "?section=film&q=Marvel&show-tags=contributor"
+                + "&show-fields=thumbnail", url);
+        assertFalse(url.contains("show-elements"));
+    }
+
+    @Test
+    public void build_addsOptInFields() {
+        String url = new GuardianQuery.Builder(SEARCH_URL)
+                .bind(GuardianQuery.fields(GuardianQuery.Field.TITLE, GuardianQuery.Field.BODY,
+                        GuardianQuery.Field.THUMBNAIL))
+                .build();
+
+        assertEquals(SEARCH_URL + "?show-fields=body%2Cthumbnail", url);
+    }
+
+    @Test
+    public void minimalQuery_hasSmallerPayloadAndSameNews() throws IOException {
+        byte[] allElements = readFixture(ALL_ELEMENTS_FIXTURE);
+        byte[] minimal = readFixture(MINIMAL_FIXTURE);
+
+        List<MarvelNews> allElementsNews = parse(allElements);
+        List<MarvelNews> minimalNews = parse(minimal);
+        assertEquals(allElementsNews.size(), minimalNews.size());
+        for (int i = 0; i < minimalNews.size(); i++) {
+            assertEquals(allElementsNews.get(i).getUrl(), minimalNews.get(i).getUrl());
+            assertEquals(allElementsNews.get(i).getTitle(), minimalNews.get(i).getTitle());
+            assertEquals(allElementsNews.get(i).getAuthor(), minimalNews.get(i).getAuthor());
+        }
+        assertTrue(minimal.length * 4 < allElements.length);
+    }
+
+    private static List<MarvelNews> parse(byte[] json) throws IOException {
+        final List<MarvelNews> marvelNewss = new ArrayList<>();
+        new MarvelNewsParser().parse(new InputStreamReader(
+                new ByteArrayInputStream(json), Charset.forName("UTF-8")),
+                new MarvelNewsParser.Callback() {
+                    @Override
+                    public void onMarvelNews(MarvelNews marvelNews) {
+                        marvelNewss.add(marvelNews);
+                    }
+                });
+        return marvelNewss;
+    }
+
+    private byte[] readFixture(String name) throws IOException {
+        InputStream in = getClass().getResourceAsStream(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
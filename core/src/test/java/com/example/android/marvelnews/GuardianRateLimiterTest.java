@@ -0,0 +1,103 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link GuardianRateLimiter}, alone and in a {@link GuardianHttpClient} against a local
+ * fake "/search" server.
+ */
+public class GuardianRateLimiterTest {
+
+    private static final long NOW = TimeUnit.DAYS.toMillis(17800) + TimeUnit.HOURS.toMillis(12);
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(10);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void tryAcquire_allowsABurstThenTheSteadyRate() {
+        GuardianRateLimiter limiter = new GuardianRateLimiter(2, 3, 1000);
+        // Empty the bucket, whatever the clock of the constructor
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(now));
+        }
+
+        assertEquals(500, limiter.tryAcquire(now));
+        assertEquals(0, limiter.tryAcquire(now + 500));
+        assertEquals(4, limiter.getQuota().requestsToday);
+    }
+
+    @Test
+    public void onResponse_honorsRetryAfter() {
+        GuardianRateLimiter limiter = new GuardianRateLimiter(10, 10, 1000);
+
+        limiter.onResponse(429, "120", null, null, NOW);
+
+        assertEquals(TimeUnit.SECONDS.toMillis(120), limiter.tryAcquire(NOW));
+        assertTrue(limiter.tryAcquire(NOW + TimeUnit.SECONDS.toMillis(120)) > 0);
+        assertEquals(0, limiter.tryAcquire(NOW + TimeUnit.SECONDS.toMillis(121)));
+    }
+
+    @Test
+    public void onResponse_waitsForTheNextDayOnceTheQuotaIsUsedUp() {
+        GuardianRateLimiter limiter = new GuardianRateLimiter(10, 10, 1000);
+
+        limiter.onResponse(200, null, "0", "500", NOW);
+
+        assertEquals(TimeUnit.HOURS.toMillis(12), limiter.tryAcquire(NOW));
+        GuardianRateLimiter.Quota quota = limiter.getQuota();
+        assertEquals(500, quota.limitPerDay);
+    }
+
+    @Test
+    public void parseRetryAfter_readsSecondsAndDates() {
+        assertEquals(30000, GuardianRateLimiter.parseRetryAfter(" 30 ", NOW));
+        assertEquals(90000, GuardianRateLimiter.parseRetryAfter(
+                "Thu, 27 Sep 2018 12:01:30 GMT", 1538049600000L));
+        assertEquals(-1, GuardianRateLimiter.parseRetryAfter("soon", NOW));
+        assertEquals(-1, GuardianRateLimiter.parseRetryAfter(null, NOW));
+    }
+
+    @Test
+    public void get_failsFastWhileThrottled() throws Exception {
+        GuardianHttpClient client = new GuardianHttpClient();
+        client.setRetryPolicy(2, 10, 50);
+        GuardianRateLimiter limiter = new GuardianRateLimiter(10, 10, 1000);
+        client.setRateLimiter(limiter);
+        mServer.throttleNextRequests(1, "60");
+
+        try {
+            client.get(mServer.searchUrl(), null, null).close();
+            fail("The retry must not wait for a minute");
+        } catch (GuardianRateLimiter.RateLimitedException e) {
+            assertTrue(e.getRetryAfterMillis() > TimeUnit.SECONDS.toMillis(50));
+        }
+        // Later requests don't reach the server either
+        try {
+            client.get(mServer.searchUrl(), null, null).close();
+            fail("The limiter must keep throttling");
+        } catch (GuardianRateLimiter.RateLimitedException e) {
+            // Expected
+        }
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(42, limiter.getQuota().remainingToday);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link MarvelNewsFanOut} with sources streaming fixed lists, and against local fake
+ * "/search" servers.
+ */
+public class MarvelNewsFanOutTest {
+
+    private FakeGuardianServer mFilmServer;
+    private FakeGuardianServer mCultureServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mFilmServer = new FakeGuardianServer(45);
+        mCultureServer = new FakeGuardianServer(30);
+    }
+
+    @After
+    public void tearDown() {
+        mFilmServer.stop();
+        mCultureServer.stop();
+    }
+
+    @Test
+    public void load_mergesByDateAndDropsRepeatedArticles() {
+        // Minutes since an epoch, newest first; 7 and 4 match both topics
+        MarvelNewsFanOut fanOut = new MarvelNewsFanOut(Arrays.asList(
+                streaming(9, 7, 4, 1), streaming(8, 7, 6, 4, 2), streaming(5, 3)), "newest");
+
+        assertEquals(Arrays.asList(9, 8, 7, 6, 5, 4, 3, 2, 1), minutes(fanOut.load(null)));
+    }
+
+    @Test
+    public void load_feedOnlyGrowsAtItsEnd() {
+        final List<List<MarvelNews>> feeds = new ArrayList<>();
+        MarvelNewsFanOut fanOut = new MarvelNewsFanOut(Arrays.asList(
+                streaming(1, 4, 6), streaming(2, 3, 5)), "oldest");
+
+        List<MarvelNews> merged = fanOut.load(new MarvelNewsFanOut.Listener() {
+            @Override
+            public void onMerged(List<MarvelNews> marvelNewss) {
+                synchronized (feeds) {
+                    feeds.add(marvelNewss);
+                }
+            }
+        });
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), minutes(merged));
+        for (List<MarvelNews> feed : feeds) {
+            assertEquals(minutes(merged).subList(0, feed.size()), minutes(feed));
+        }
+    }
+
+    @Test
+    public void load_relevanceInterleavesTheTopics() {
+        MarvelNewsFanOut fanOut = new MarvelNewsFanOut(Arrays.asList(
+                streaming(1, 2, 3), streaming(7, 8)), "relevance");
+
+        assertEquals(Arrays.asList(1, 7, 2, 8, 3), minutes(fanOut.load(null)));
+    }
+
+    @Test
+    public void load_keepsTheTopicsThatLoaded() {
+        MarvelNewsFanOut.Source failing = new MarvelNewsFanOut.Source() {
+            @Override
+            public List<MarvelNews> load(MarvelNewsPager.Listener listener) {
+                return null;
+            }
+        };
+
+        assertEquals(Arrays.asList(3, 2), minutes(new MarvelNewsFanOut(
+                Arrays.asList(failing, streaming(3, 2)), "newest").load(null)));
+        assertNull(new MarvelNewsFanOut(Collections.singletonList(failing), "newest").load(null));
+    }
+
+    @Test
+    public void load_pagersShareTheirRequestPermits() {
+        Semaphore requestPermits = new Semaphore(2);
+        List<MarvelNewsFanOut.Source> sources = Arrays.asList(
+                pager(mFilmServer, requestPermits), pager(mCultureServer, requestPermits));
+
+        List<MarvelNews> merged = new MarvelNewsFanOut(sources, "newest").load(null);
+
+        // Both servers publish the same first 30 articles, which only appear once
+        assertNotNull(merged);
+        assertEquals(45, merged.size());
+        for (int i = 0; i < merged.size(); i++) {
+            assertEquals(FakeGuardianServer.webUrl(i), merged.get(i).getUrl());
+        }
+        assertEquals(5, mFilmServer.getRequestCount());
+        assertEquals(3, mCultureServer.getRequestCount());
+        assertEquals(2, requestPermits.availablePermits());
+    }
+
+    @Test
+    public void load_runsTheSearchesAtTheCallersPriority() throws InterruptedException {
+        final List<Integer> priorities = Collections.synchronizedList(new ArrayList<Integer>());
+        MarvelNewsFanOut.Source recording = new MarvelNewsFanOut.Source() {
+            @Override
+            public List<MarvelNews> load(MarvelNewsPager.Listener listener) {
+                priorities.add(Thread.currentThread().getPriority());
+                return news(1);
+            }
+        };
+        final MarvelNewsFanOut fanOut = new MarvelNewsFanOut(
+                Arrays.asList(recording, recording), "newest");
+
+        Thread sync = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fanOut.load(null);
+            }
+        });
+        sync.setPriority(Thread.MIN_PRIORITY);
+        sync.start();
+        sync.join();
+
+        assertEquals(Arrays.asList(Thread.MIN_PRIORITY, Thread.MIN_PRIORITY), priorities);
+    }
+
+    @Test
+    public void merge_mergesSortedLists() {
+        List<List<MarvelNews>> lists = Arrays.asList(news(6, 3), news(5, 3, 1), news(4));
+
+        assertEquals(Arrays.asList(6, 5, 4, 3, 1), minutes(MarvelNewsFanOut.merge(lists, "newest")));
+        assertTrue(MarvelNewsFanOut.merge(new ArrayList<List<MarvelNews>>(), "newest").isEmpty());
+    }
+
+    /**
+     * Returns a source delivering the news of the given minutes one at a time.
+     */
+    private static MarvelNewsFanOut.Source streaming(final int... minutes) {
+        return new MarvelNewsFanOut.Source() {
+            @Override
+            public List<MarvelNews> load(MarvelNewsPager.Listener listener) {
+                List<MarvelNews> all = news(minutes);
+                for (int i = 1; i <= all.size(); i++) {
+                    listener.onPagesLoaded(new ArrayList<>(all.subList(0, i)), i, all.size());
+                    Thread.yield();
+                }
+                return all;
+            }
+        };
+    }
+
+    private static MarvelNewsFanOut.Source pager(FakeGuardianServer server,
+                                                 Semaphore requestPermits) {
+        final MarvelNewsPager pager = new MarvelNewsPager(server.searchUrl(), 10, 3, null,
+                requestPermits);
+        return new MarvelNewsFanOut.Source() {
+            @Override
+            public List<MarvelNews> load(MarvelNewsPager.Listener listener) {
+                return pager.load(listener);
+            }
+        };
+    }
+
+    private static List<MarvelNews> news(int... minutes) {
+        List<MarvelNews> marvelNewss = new ArrayList<>();
+        for (int minute : minutes) {
+            marvelNewss.add(new MarvelNews("", "News " + minute, "Film",
+                    new Date(minute * 60000L), "https://www.theguardian.com/film/" + minute));
+        }
+        return marvelNewss;
+    }
+
+    private static List<Integer> minutes(List<MarvelNews> marvelNewss) {
+        List<Integer> minutes = new ArrayList<>();
+        for (MarvelNews marvelNews : marvelNewss) {
+            minutes.add((int) (marvelNews.getTime().getTime() / 60000L));
+        }
+        return minutes;
+    }
+}
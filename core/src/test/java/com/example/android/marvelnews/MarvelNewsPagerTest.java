@@ -0,0 +1,84 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link MarvelNewsPager} against a local fake "/search" server.
+ */
+public class MarvelNewsPagerTest {
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(95);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void load_fetchesEveryPageInOrder() {
+        // Later pages answer first, so the pages arrive out of order.
+        mServer.setDelayPerRemainingPage(20);
+
+        MarvelNewsPager pager = new MarvelNewsPager(mServer.searchUrl(), 10, 3);
+        List<MarvelNews> marvelNewss = pager.load(null);
+
+        assertNotNull(marvelNewss);
+        assertEquals(95, marvelNewss.size());
+        for (int i = 0; i < marvelNewss.size(); i++) {
+            assertEquals(FakeGuardianServer.webUrl(i), marvelNewss.get(i).getUrl());
+        }
+        assertEquals(10, mServer.getRequestCount());
+    }
+
+    @Test
+    public void load_deliversGrowingPrefixes() {
+        final List<Integer> sizes = new ArrayList<>();
+        final List<Integer> loadedPages = new ArrayList<>();
+
+        MarvelNewsPager pager = new MarvelNewsPager(mServer.searchUrl(), 20, 2);
+        List<MarvelNews> marvelNewss = pager.load(new MarvelNewsPager.Listener() {
+            @Override
+            public void onPagesLoaded(List<MarvelNews> merged, int loaded, int totalPages) {
+                assertEquals(5, totalPages);
+                for (int i = 0; i < merged.size(); i++) {
+                    assertEquals(FakeGuardianServer.webUrl(i), merged.get(i).getUrl());
+                }
+                sizes.add(merged.size());
+                loadedPages.add(loaded);
+            }
+        });
+
+        assertEquals(95, marvelNewss.size());
+        assertEquals(Integer.valueOf(20), sizes.get(0));
+        assertEquals(Integer.valueOf(95), sizes.get(sizes.size() - 1));
+        assertEquals(Integer.valueOf(5), loadedPages.get(loadedPages.size() - 1));
+        for (int i = 1; i < sizes.size(); i++) {
+            assertTrue(sizes.get(i) > sizes.get(i - 1));
+        }
+    }
+
+    @Test
+    public void load_parsesArticleFields() {
+        List<MarvelNews> marvelNewss = new MarvelNewsPager(mServer.searchUrl(), 50, 1).load(null);
+
+        MarvelNews first = marvelNewss.get(0);
+        assertEquals("Marvel story 0", first.getTitle());
+        assertEquals("Film", first.getSectionName());
+        assertEquals("Author: Peter Parker", first.getAuthor());
+        assertNotNull(first.getTime());
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PipelineHistogram} and the stages recorded by {@link PipelineMetrics}.
+ */
+public class PipelineMetricsTest {
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(20);
+        PipelineMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        PipelineMetrics.setEnabled(false);
+        PipelineMetrics.reset();
+        mServer.stop();
+    }
+
+    @Test
+    public void histogram_percentilesWithinBucketPrecision() {
+        PipelineHistogram histogram = new PipelineHistogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertWithin(5000, histogram.getPercentile(50));
+        assertWithin(9900, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(10000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void histogram_bucketsCoverEveryValue() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = PipelineHistogram.bucketOf(value);
+            assertTrue(value <= PipelineHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value > PipelineHistogram.upperBoundOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void fetch_recordsNetworkAndParseStages() {
+        PipelineMetrics.setEnabled(true);
+
+        List<MarvelNews> marvelNewss = QueryUtils.fetchMarvelNewsData(mServer.searchUrl());
+
+        assertNotNull(marvelNewss);
+        assertEquals(1, PipelineMetrics.getHistogram(PipelineMetrics.Stage.CONNECT).getCount());
+        assertEquals(1, PipelineMetrics.getHistogram(PipelineMetrics.Stage.FIRST_BYTE).getCount());
+        assertEquals(1, PipelineMetrics.getHistogram(PipelineMetrics.Stage.PARSE).getCount());
+        assertTrue(PipelineMetrics.getHistogram(PipelineMetrics.Stage.BODY_BYTES).getMax() > 0);
+        assertTrue(PipelineMetrics.dump().contains("first_byte"));
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        assertEquals(0, PipelineMetrics.start());
+
+        QueryUtils.fetchMarvelNewsData(mServer.searchUrl());
+        PipelineMetrics.record(PipelineMetrics.Stage.LOAD, 5);
+
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            assertEquals(0, PipelineMetrics.getHistogram(stage).getCount());
+        }
+    }
+
+    /**
+     * Asserts that a percentile is within the 1/16 precision of the buckets.
+     */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 16 + 1);
+    }
+}
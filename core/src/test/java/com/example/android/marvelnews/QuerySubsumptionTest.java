@@ -0,0 +1,84 @@
+package com.example.android.marvelnews;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link QuerySubsumption}.
+ */
+public class QuerySubsumptionTest {
+
+    @Test
+    public void plan_resortIsAnsweredLocally() {
+        QuerySubsumption.Plan plan =
+                QuerySubsumption.plan("2018-01-01", "newest", "2018-01-01", "oldest");
+
+        assertTrue(plan.isComplete());
+    }
+
+    @Test
+    public void plan_laterMinDateIsAnsweredLocally() {
+        QuerySubsumption.Plan plan =
+                QuerySubsumption.plan("2018-01-01", "oldest", "2018-03-15", "newest");
+
+        assertTrue(plan.isComplete());
+        assertNull(plan.gapFromDate);
+    }
+
+    @Test
+    public void plan_earlierMinDateOnlyRequestsTheMissingDays() {
+        QuerySubsumption.Plan plan =
+                QuerySubsumption.plan("2018-03-15", "newest", "2018-01-01", "newest");
+
+        assertTrue(plan.local);
+        assertFalse(plan.isComplete());
+        assertEquals("2018-01-01", plan.gapFromDate);
+        assertEquals("2018-03-15", plan.gapToDate);
+    }
+
+    @Test
+    public void plan_relevanceIsNeverAnsweredLocally() {
+        assertFalse(QuerySubsumption.plan("2018-01-01", "relevance", "2018-02-01", "newest").local);
+        assertFalse(QuerySubsumption.plan("2018-01-01", "newest", "2018-02-01", "relevance").local);
+        assertFalse(QuerySubsumption.plan(null, "newest", "2018-02-01", "newest").local);
+    }
+
+    @Test
+    public void answer_filtersAndSortsTheHeldNews() throws Exception {
+        List<MarvelNews> held = Arrays.asList(
+                news("2018-04-01", 1), news("2018-03-01", 2), news("2018-02-01", 3),
+                new MarvelNews("", "Undated", "Film", null, "https://www.theguardian.com/film/4"),
+                news("2018-01-01", 5));
+
+        QuerySubsumption.Plan plan =
+                QuerySubsumption.plan("2018-01-01", "newest", "2018-02-01", "oldest");
+        List<MarvelNews> answer = QuerySubsumption.answer(plan, held);
+
+        assertEquals(Arrays.asList(3, 2, 1), ids(answer));
+        assertNull(QuerySubsumption.answer(
+                QuerySubsumption.plan("2018-01-01", "newest", "2018-02-01", "relevance"), held));
+    }
+
+    private static MarvelNews news(String day, int id) throws Exception {
+        return new MarvelNews("", "News " + id, "Film",
+                new SimpleDateFormat("yyyy-MM-dd").parse(day), "https://www.theguardian.com/film/" + id);
+    }
+
+    private static List<Integer> ids(List<MarvelNews> marvelNewss) {
+        List<Integer> ids = new ArrayList<>();
+        for (MarvelNews marvelNews : marvelNewss) {
+            String url = marvelNews.getUrl();
+            ids.add(Integer.valueOf(url.substring(url.lastIndexOf('/') + 1)));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.android.marvelnews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link RequestCoalescer}, with a fetcher blocking until it is released and against a
+ * local fake "/search" server.
+ */
+public class RequestCoalescerTest {
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(95);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void fetch_concurrentCallersShareOneRequest() throws Exception {
+        // The first page waits, so every caller joins while the request is in flight.
+        mServer.setDelayPerRemainingPage(30);
+        final String url = mServer.searchUrl();
+        final String reordered = url.replace("q=Marvel&api-key=test", "api-key=test&q=Marvel");
+
+        final int callers = 5;
+        final List<List<MarvelNews>> results = Collections.synchronizedList(
+                new ArrayList<List<MarvelNews>>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            final String callerUrl = i % 2 == 0 ? url : reordered;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results.add(QueryUtils.fetchMarvelNewsData(callerUrl));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(callers, results.size());
+        for (List<MarvelNews> result : results) {
+            assertNotNull(result);
+            assertEquals(10, result.size());
+            // Every caller gets the same parsed news
+            assertTrue(result.get(0) == results.get(0).get(0));
+        }
+        assertEquals(0, QueryUtils.getRequestCoalescer().getInFlightCount());
+    }
+
+    @Test
+    public void fetch_firstCallerGetsTheNewsOnItsOwnThread() {
+        final List<Thread> fetchThreads = new ArrayList<>();
+        RequestCoalescer coalescer = new RequestCoalescer(new RequestCoalescer.Fetcher() {
+            @Override
+            public MarvelNewsParser.PageInfo fetch(String requestUrl,
+                                                   MarvelNewsParser.Callback callback,
+                                                   FetchCancellation cancellation) {
+                fetchThreads.add(Thread.currentThread());
+                callback.onMarvelNews(news(0));
+                return null;
+            }
+        });
+
+        final List<Thread> callbackThreads = new ArrayList<>();
+        coalescer.fetch("http://example.com/search?q=Marvel", new MarvelNewsParser.Callback() {
+            @Override
+            public void onMarvelNews(MarvelNews marvelNews) {
+                callbackThreads.add(Thread.currentThread());
+            }
+        }, null);
+
+        assertEquals(Collections.singletonList(Thread.currentThread()), fetchThreads);
+        assertEquals(Collections.singletonList(Thread.currentThread()), callbackThreads);
+    }
+
+    @Test
+    public void fetch_callerAfterTheFirstNewsStartsItsOwnRequest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fetches = new AtomicInteger();
+        RequestCoalescer coalescer = new RequestCoalescer(new RequestCoalescer.Fetcher() {
+            @Override
+            public MarvelNewsParser.PageInfo fetch(String requestUrl,
+                                                   MarvelNewsParser.Callback callback,
+                                                   FetchCancellation cancellation) {
+                callback.onMarvelNews(news(0));
+                fetches.incrementAndGet();
+                await(release);
+                callback.onMarvelNews(news(1));
+                return null;
+            }
+        });
+
+        final List<MarvelNews> first = Collections.synchronizedList(new ArrayList<MarvelNews>());
+        Thread firstCaller = fetchInBackground(coalescer, first, null);
+        waitForFetches(fetches, 1);
+        // The news already handed to the first caller aren't kept for a late one
+        final List<MarvelNews> late = Collections.synchronizedList(new ArrayList<MarvelNews>());
+        Thread lateCaller = fetchInBackground(coalescer, late, null);
+        waitForFetches(fetches, 2);
+        release.countDown();
+        firstCaller.join();
+        lateCaller.join();
+
+        assertEquals(2, first.size());
+        assertEquals(2, late.size());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void cancel_abortsSharedRequestOnlyOnceEveryCallerHasGone() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger fetches = new AtomicInteger();
+        final FetchCancellation[] shared = new FetchCancellation[1];
+        RequestCoalescer coalescer = new RequestCoalescer(new RequestCoalescer.Fetcher() {
+            @Override
+            public MarvelNewsParser.PageInfo fetch(String requestUrl,
+                                                   MarvelNewsParser.Callback callback,
+                                                   FetchCancellation cancellation) {
+                fetches.incrementAndGet();
+                shared[0] = cancellation;
+                started.countDown();
+                while (!cancellation.isCanceled()) {
+                    sleep(5);
+                }
+                return null;
+            }
+        });
+
+        FetchCancellation firstToken = new FetchCancellation();
+        FetchCancellation secondToken = new FetchCancellation();
+        Thread first = fetchInBackground(coalescer, new ArrayList<MarvelNews>(), firstToken);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread second = fetchInBackground(coalescer, new ArrayList<MarvelNews>(), secondToken);
+        waitForCoalesced(coalescer, 1);
+
+        // The first caller reads the response for the second one
+        firstToken.cancel();
+        assertFalse(shared[0].isCanceled());
+
+        secondToken.cancel();
+        first.join(5000);
+        second.join(5000);
+        assertFalse(first.isAlive());
+        assertFalse(second.isAlive());
+        assertTrue(shared[0].isCanceled());
+        assertEquals(1, fetches.get());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void fetch_afterFinishedRequestStartsANewOne() {
+        assertNotNull(QueryUtils.fetchMarvelNewsData(mServer.searchUrl()));
+        assertNotNull(QueryUtils.fetchMarvelNewsData(mServer.searchUrl()));
+
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void fetch_withCanceledTokenReturnsRightAway() {
+        FetchCancellation cancellation = new FetchCancellation();
+        cancellation.cancel();
+
+        assertNull(QueryUtils.fetchMarvelNewsData(mServer.searchUrl(), null, cancellation));
+        assertEquals(0, mServer.getRequestCount());
+    }
+
+    private static Thread fetchInBackground(final RequestCoalescer coalescer,
+                                            final List<MarvelNews> into,
+                                            final FetchCancellation cancellation) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                coalescer.fetch("http://example.com/search?q=Marvel",
+                        new MarvelNewsParser.Callback() {
+                            @Override
+                            public void onMarvelNews(MarvelNews marvelNews) {
+                                into.add(marvelNews);
+                            }
+                        }, cancellation);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void waitForCoalesced(RequestCoalescer coalescer, int count) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coalescer.getCoalescedCount() < count && System.currentTimeMillis() < deadline) {
+            sleep(5);
+        }
+        assertEquals(count, coalescer.getCoalescedCount());
+    }
+
+    private static void waitForFetches(AtomicInteger fetches, int count) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fetches.get() < count && System.currentTimeMillis() < deadline) {
+            sleep(5);
+        }
+        assertEquals(count, fetches.get());
+    }
+
+    private static MarvelNews news(int i) {
+        return new MarvelNews("", "Marvel story " + i, "Film", null, FakeGuardianServer.webUrl(i));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
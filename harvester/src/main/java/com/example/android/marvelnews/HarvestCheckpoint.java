@@ -0,0 +1,126 @@
+package com.example.android.marvelnews;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a {@link MarvelNewsHarvester}, saved after every page it has written.
+ * <p>
+ * The checkpoint holds the length of the output once the page was written, so a harvest
+ * interrupted in the middle of a page drops the lines of that page and requests it again. It is
+ * written to a temporary file which then replaces the previous checkpoint, so an interruption
+ * never leaves a partial one behind.
+ */
+final class HarvestCheckpoint {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * URL of the harvested search, without paging parameters, identifying the harvest. It
+     * holds the latest publication date only if it was given explicitly.
+     */
+    final String query;
+
+    /**
+     * Latest publication date of the harvested news (yyyy-MM-dd), the day the harvest started
+     * unless it was given
+     */
+    final String toDate;
+
+    /**
+     * Next page to request, counting from 1
+     */
+    final int nextPage;
+
+    /**
+     * Articles written so far
+     */
+    final long articles;
+
+    /**
+     * Length of the output after the last page written, in bytes
+     */
+    final long outputBytes;
+
+    /**
+     * True once the last page has been written
+     */
+    final boolean complete;
+
+    HarvestCheckpoint(String query, String toDate, int nextPage, long articles, long outputBytes,
+                      boolean complete) {
+        this.query = query;
+        this.toDate = toDate;
+        this.nextPage = nextPage;
+        this.articles = articles;
+        this.outputBytes = outputBytes;
+        this.complete = complete;
+    }
+
+    /**
+     * Reads the checkpoint of a harvest of the given search, or returns the start of a new
+     * harvest if there is none. A harvest resumed keeps the latest publication date it started
+     * with.
+     *
+     * @param toDate latest publication date of a new harvest (yyyy-MM-dd)
+     * @throws IOException if the file can't be read or is the checkpoint of another search
+     */
+    static HarvestCheckpoint read(File file, String query, String toDate) throws IOException {
+        if (!file.exists()) {
+            return new HarvestCheckpoint(query, toDate, 1, 0, 0, false);
+        }
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        if (!query.equals(properties.getProperty("query"))) {
+            throw new IOException(file + " is the checkpoint of another harvest: "
+                    + properties.getProperty("query"));
+        }
+        String storedToDate = properties.getProperty("toDate");
+        if (storedToDate == null) {
+            throw new IOException("Corrupted checkpoint " + file);
+        }
+        try {
+            return new HarvestCheckpoint(query, storedToDate,
+                    Integer.parseInt(properties.getProperty("nextPage")),
+                    Long.parseLong(properties.getProperty("articles")),
+                    Long.parseLong(properties.getProperty("outputBytes")),
+                    Boolean.parseBoolean(properties.getProperty("complete")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupted checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Replaces the checkpoint in the given file with this one.
+     */
+    void write(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("query", query);
+        properties.setProperty("toDate", toDate);
+        properties.setProperty("nextPage", String.valueOf(nextPage));
+        properties.setProperty("articles", String.valueOf(articles));
+        properties.setProperty("outputBytes", String.valueOf(outputBytes));
+        properties.setProperty("complete", String.valueOf(complete));
+
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, "Marvel news harvest");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
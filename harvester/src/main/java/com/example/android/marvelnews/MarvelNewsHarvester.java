@@ -0,0 +1,284 @@
+package com.example.android.marvelnews;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Archives every Marvel news of a date range, without Android, as one JSON object per line
+ * (NDJSON).
+ * <p>
+ * The pages of the search are requested one after the other, oldest news first, so news
+ * published during the harvest land on the last pages instead of shifting the pages still to
+ * come. Each news is written out as soon as it is parsed, and only one page is ever held in
+ * memory, so the memory used is the same for 100 news as for 100,000. After every page, the
+ * output is synced to disk and a {@link HarvestCheckpoint} saved: a harvest stopped at any
+ * point, or failing on a page, resumes from the first page it hasn't completely written when it
+ * is started again with the same search. Without a latest publication date, a harvest gets the
+ * news published until the day it started, even when it is resumed days later.
+ * <p>
+ * Usage: MarvelNewsHarvester [--option=value...], the options and their defaults being in
+ * {@link #DEFAULT_OPTIONS}; "--from" and "--output" are required.
+ */
+public final class MarvelNewsHarvester {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Largest page size accepted by the Guardian API
+     */
+    public static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Fields of the harvested news
+     */
+    private static final Set<GuardianQuery.Field> FIELDS = GuardianQuery.fields(
+            GuardianQuery.Field.TITLE,
+            GuardianQuery.Field.AUTHOR,
+            GuardianQuery.Field.SECTION,
+            GuardianQuery.Field.DATE,
+            GuardianQuery.Field.URL,
+            GuardianQuery.Field.THUMBNAIL);
+
+    /**
+     * Longest wait for the rate limiter; a longer one, such as for the daily quota, ends the
+     * harvest, to be resumed later
+     */
+    private static final long MAX_RATE_LIMIT_WAIT_MILLIS = 60000;
+
+    /**
+     * Options of the command line and their default values
+     */
+    private static final Map<String, String> DEFAULT_OPTIONS = new LinkedHashMap<>();
+
+    static {
+        // "section" and "q" parameters of the search
+        DEFAULT_OPTIONS.put("topic", MarvelNewsSearch.DEFAULT_TOPIC);
+        // Publication dates of the news (yyyy-MM-dd), "to" defaults to the day the harvest started
+        DEFAULT_OPTIONS.put("from", "");
+        DEFAULT_OPTIONS.put("to", "");
+        // NDJSON file the news are appended to, and the checkpoint, next to it by default
+        DEFAULT_OPTIONS.put("output", "");
+        DEFAULT_OPTIONS.put("checkpoint", "");
+        DEFAULT_OPTIONS.put("page-size", String.valueOf(MAX_PAGE_SIZE));
+        // Key for the Guardian API, the one of the app by default
+        DEFAULT_OPTIONS.put("api-key", "");
+        // Steady rate of the requests, which the key of the app shares with its users
+        DEFAULT_OPTIONS.put("requests-per-second", "1");
+    }
+
+    /**
+     * URL of the search with its order and the dates given, without paging parameters
+     */
+    private final String mQuery;
+
+    /**
+     * Latest publication date of the news (yyyy-MM-dd), or null for the day the harvest starts
+     */
+    private final String mToDate;
+
+    private final int mPageSize;
+    private final File mOutput;
+    private final File mCheckpoint;
+
+    /**
+     * Format of the publication dates in the output
+     */
+    private final SimpleDateFormat mDateFormat =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+
+    /**
+     * Constructs a new {@link MarvelNewsHarvester}.
+     *
+     * @param searchUrl  of the search, without "from-date", "order-by" and paging parameters,
+     *                   see {@link MarvelNewsSearch#searchUrl(String, Set)}
+     * @param fromDate   earliest publication date of the news (yyyy-MM-dd)
+     * @param toDate     latest publication date of the news (yyyy-MM-dd), or null for the day
+     *                   the harvest starts
+     * @param pageSize   number of results requested per page
+     * @param output     file the news are appended to
+     * @param checkpoint file the progress is saved to
+     */
+    public MarvelNewsHarvester(String searchUrl, String fromDate, String toDate, int pageSize,
+                               File output, File checkpoint) {
+        // The checkpoint is keyed on the dates given, not on the day the harvest started
+        mQuery = searchUrl + (searchUrl.indexOf('?') >= 0 ? "&" : "?")
+                + "order-by=oldest&from-date=" + fromDate
+                + (toDate != null ? "&to-date=" + toDate : "");
+        mToDate = toDate;
+        mPageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, pageSize));
+        mOutput = output;
+        mCheckpoint = checkpoint;
+        mDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULT_OPTIONS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !options.containsKey(name)) {
+                usage();
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        if (options.get("from").isEmpty() || options.get("output").isEmpty()) {
+            usage();
+        }
+        String toDate = options.get("to").isEmpty() ? null : options.get("to");
+        File output = new File(options.get("output"));
+        File checkpoint = options.get("checkpoint").isEmpty()
+                ? new File(output.getPath() + ".checkpoint")
+                : new File(options.get("checkpoint"));
+        String apiKey = options.get("api-key");
+        String searchUrl = apiKey.isEmpty()
+                ? MarvelNewsSearch.searchUrl(options.get("topic"), FIELDS)
+                : MarvelNewsSearch.searchUrl(options.get("topic"), FIELDS, apiKey);
+
+        GuardianHttpClient.configureConnectionPool();
+        QueryUtils.getHttpClient().setRateLimiter(new GuardianRateLimiter(
+                Double.parseDouble(options.get("requests-per-second")), 1,
+                MAX_RATE_LIMIT_WAIT_MILLIS));
+        MarvelNewsHarvester harvester = new MarvelNewsHarvester(searchUrl, options.get("from"),
+                toDate, Integer.parseInt(options.get("page-size")), output, checkpoint);
+        try {
+            long articles = harvester.harvest(null);
+            System.out.println("Harvested " + articles + " news to " + output);
+        } catch (IOException e) {
+            System.err.println("Harvest stopped, run it again to resume: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: MarvelNewsHarvester --from=yyyy-MM-dd --output=<file> "
+                + "[--option=value...], options and defaults: " + DEFAULT_OPTIONS);
+        System.exit(2);
+    }
+
+    /**
+     * Requests the pages not harvested yet and writes their news. This blocks until the last
+     * page has been written.
+     *
+     * @param cancellation token aborting the harvest, may be null
+     * @return the number of news written by this harvest and the ones it resumes
+     * @throws IOException if a page can't be requested or written, or if the checkpoint is of
+     *                     another search; the pages written until then are kept
+     */
+    public long harvest(FetchCancellation cancellation) throws IOException {
+        HarvestCheckpoint checkpoint = HarvestCheckpoint.read(mCheckpoint, mQuery,
+                mToDate != null ? mToDate : today());
+        if (checkpoint.complete) {
+            return checkpoint.articles;
+        }
+        String pagesUrl = mToDate != null ? mQuery : mQuery + "&to-date=" + checkpoint.toDate;
+
+        // Drop whatever was written after the last complete page
+        RandomAccessFile truncated = new RandomAccessFile(mOutput, "rw");
+        try {
+            truncated.setLength(checkpoint.outputBytes);
+        } finally {
+            truncated.close();
+        }
+
+        FileOutputStream out = new FileOutputStream(mOutput, true);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        try {
+            long articles = checkpoint.articles;
+            for (int page = checkpoint.nextPage; ; page++) {
+                NdjsonCallback callback = new NdjsonCallback(writer);
+                MarvelNewsParser.PageInfo pageInfo = QueryUtils.fetchMarvelNewsData(
+                        pagesUrl + "&page-size=" + mPageSize + "&page=" + page, callback,
+                        cancellation);
+                if (pageInfo == null) {
+                    throw new IOException("Request of page " + page + " failed");
+                }
+                if (callback.mError != null) {
+                    throw callback.mError;
+                }
+                writer.flush();
+                out.getFD().sync();
+                articles += callback.mCount;
+
+                boolean complete = page >= pageInfo.pages;
+                new HarvestCheckpoint(mQuery, checkpoint.toDate, page + 1, articles,
+                        out.getChannel().size(), complete).write(mCheckpoint);
+                if (complete) {
+                    return articles;
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the current day in UTC (yyyy-MM-dd).
+     */
+    private static String today() {
+        SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        day.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return day.format(new Date());
+    }
+
+    /**
+     * Writes each news handed by the parser as a line of the output.
+     */
+    private final class NdjsonCallback implements MarvelNewsParser.Callback {
+
+        private final Writer mWriter;
+
+        /**
+         * Number of news written
+         */
+        int mCount;
+
+        /**
+         * First error writing the output, or null
+         */
+        IOException mError;
+
+        NdjsonCallback(Writer writer) {
+            mWriter = writer;
+        }
+
+        @Override
+        public void onMarvelNews(MarvelNews marvelNews) {
+            if (mError != null) {
+                return;
+            }
+            try {
+                // The JSON writer writes straight to the output, closing it would close the output
+                JsonWriter json = new JsonWriter(mWriter);
+                json.setSerializeNulls(false);
+                json.beginObject();
+                json.name("title").value(marvelNews.getTitle());
+                json.name("author").value(marvelNews.getAuthor());
+                json.name("section").value(marvelNews.getSectionName());
+                Date time = marvelNews.getTime();
+                json.name("published").value(time != null ? mDateFormat.format(time) : null);
+                json.name("url").value(marvelNews.getUrl());
+                json.name("thumbnail").value(marvelNews.getThumbnailUrl());
+                json.endObject();
+                mWriter.write('\n');
+                mCount++;
+            } catch (IOException e) {
+                mError = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.android.marvelnews;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link MarvelNewsHarvester} against a local fake "/search" server.
+ */
+public class MarvelNewsHarvesterTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private FakeGuardianServer mServer;
+    private File mOutput;
+    private File mCheckpoint;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(25);
+        mOutput = File.createTempFile("harvest", ".ndjson");
+        mCheckpoint = new File(mOutput.getPath() + ".checkpoint");
+        // Fail a page right away instead of backing off
+        QueryUtils.getHttpClient().setRetryPolicy(0, 0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+        mOutput.delete();
+        mCheckpoint.delete();
+    }
+
+    @Test
+    public void harvest_resumesAfterTheLastCompletePage() throws Exception {
+        mServer.failPage(2);
+        try {
+            harvester(mServer.searchUrl()).harvest(null);
+            fail("The second page must fail");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(10, readLines().size());
+        // A harvest killed in the middle of a page leaves part of it behind
+        FileOutputStream out = new FileOutputStream(mOutput, true);
+        out.write("{\"title\":\"Marvel sto".getBytes(UTF_8));
+        out.close();
+
+        mServer.failPage(0);
+        assertEquals(25, harvester(mServer.searchUrl()).harvest(null));
+
+        List<String> lines = readLines();
+        assertEquals(25, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JsonObject news = new JsonParser().parse(lines.get(i)).getAsJsonObject();
+            assertEquals(FakeGuardianServer.webUrl(i), news.get("url").getAsString());
+        }
+        JsonObject first = new JsonParser().parse(lines.get(0)).getAsJsonObject();
+        assertEquals("Marvel story 0", first.get("title").getAsString());
+        assertEquals("Film", first.get("section").getAsString());
+        assertEquals("2018-05-15T12:00:00Z", first.get("published").getAsString());
+        // Page 1, the failed page 2, then pages 2 and 3
+        assertEquals(4, mServer.getRequestCount());
+
+        // A complete harvest isn't requested again
+        assertEquals(25, harvester(mServer.searchUrl()).harvest(null));
+        assertEquals(4, mServer.getRequestCount());
+    }
+
+    @Test
+    public void harvest_refusesTheCheckpointOfAnotherSearch() throws Exception {
+        harvester(mServer.searchUrl()).harvest(null);
+
+        try {
+            harvester(mServer.searchUrl() + "&section=film").harvest(null);
+            fail("The checkpoint is of another search");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("another harvest"));
+        }
+        assertEquals(25, readLines().size());
+    }
+
+    @Test
+    public void harvest_resumedLaterKeepsTheDayItStarted() throws Exception {
+        mServer.failPage(2);
+        MarvelNewsHarvester untilToday = new MarvelNewsHarvester(mServer.searchUrl(),
+                "2018-05-01", null, 10, mOutput, mCheckpoint);
+        try {
+            untilToday.harvest(null);
+            fail("The second page must fail");
+        } catch (IOException e) {
+            // Expected
+        }
+        // As if the harvest had started on an earlier day
+        Properties checkpoint = new Properties();
+        FileInputStream in = new FileInputStream(mCheckpoint);
+        try {
+            checkpoint.load(in);
+        } finally {
+            in.close();
+        }
+        checkpoint.setProperty("toDate", "2018-05-31");
+        FileOutputStream out = new FileOutputStream(mCheckpoint);
+        try {
+            checkpoint.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        mServer.failPage(0);
+        assertEquals(25, untilToday.harvest(null));
+        assertTrue(mServer.getLastQuery().contains("to-date=2018-05-31"));
+    }
+
+    private MarvelNewsHarvester harvester(String searchUrl) {
+        return new MarvelNewsHarvester(searchUrl, "2018-05-01", "2018-05-31", 10, mOutput,
+                mCheckpoint);
+    }
+
+    private List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(mOutput), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}